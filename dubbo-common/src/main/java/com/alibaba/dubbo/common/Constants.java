@@ -138,6 +138,10 @@ public class Constants {
 
     public static final int     DEFAULT_REGISTRY_CONNECT_TIMEOUT   = 10000;
 
+    public static final int     DEFAULT_TIMEOUT_TICK               = 30;
+
+    public static final int     DEFAULT_TIMEOUT_WHEEL              = 512;
+
     public static final int     DEFAULT_RETRIES                    = 2;
 
     // default buffer size is 8k.
@@ -147,6 +151,12 @@ public class Constants {
 
     public static final int     MIN_BUFFER_SIZE                    = 1 * 1024;
 
+    public static final int     DEFAULT_FLUSH_BATCH_BYTES          = 32 * 1024;
+
+    public static final int     DEFAULT_REQUEST_BATCH_SIZE         = 32;
+
+    public static final int     DEFAULT_WRITE_BUFFER_HIGH          = 64 * 1024 * 1024;
+
     public static final String  REMOVE_VALUE_PREFIX                = "-";
 
     public static final String  HIDE_KEY_PREFIX                    = ".";
@@ -214,6 +224,27 @@ public class Constants {
 
     public static final String  IO_THREADS_KEY                     = "iothreads";
 
+    public static final String  EPOLL_KEY                          = "epoll";
+
+    // 与provider在同一主机时改用Unix domain socket连接，依赖epoll的native库，不可用时仍走TCP
+    public static final String  UNIX_SOCKET_KEY                    = "unix.socket";
+
+    // socket文件所在目录，默认java.io.tmpdir，文件名为dubbo-端口.sock
+    public static final String  UNIX_SOCKET_DIR_KEY                = "unix.socket.dir";
+
+    // 共享内存传输的映射文件目录，默认有/dev/shm时用/dev/shm，否则java.io.tmpdir
+    public static final String  SHM_DIR_KEY                        = "shm.dir";
+
+    // 共享内存传输每个方向环形缓冲区的字节数，向上取2的幂
+    public static final String  SHM_SIZE_KEY                       = "shm.size";
+
+    public static final int     DEFAULT_SHM_SIZE                   = 1024 * 1024;
+
+    // 共享内存没有数据时先忙等的轮数，之后让出CPU再逐步park
+    public static final String  SHM_SPINS_KEY                      = "shm.spins";
+
+    public static final int     DEFAULT_SHM_SPINS                  = 10000;
+
     public static final String  CORE_THREADS_KEY                   = "corethreads";
 
     public static final String  THREADS_KEY                        = "threads";
@@ -222,12 +253,75 @@ public class Constants {
 
     public static final String  ALIVE_KEY                          = "alive";
 
+    // codel线程池：任务排队时间的目标值，一个观察周期内最短排队时间都超过它即认为过载
+    public static final String  CODEL_TARGET_KEY                   = "codel.target";
+
+    public static final int     DEFAULT_CODEL_TARGET               = 5;
+
+    public static final String  CODEL_INTERVAL_KEY                 = "codel.interval";
+
+    public static final int     DEFAULT_CODEL_INTERVAL             = 100;
+
+    // fair线程池：各消费方应用的权重，fair.weight.<应用名>单独指定，fair.weight为默认权重
+    public static final String  FAIR_WEIGHT_KEY                    = "fair.weight";
+
+    public static final int     DEFAULT_FAIR_WEIGHT                = 1;
+
+    // priority线程池：低优先级任务排队超过这个时间（毫秒）后先于高优先级执行，防止饿死
+    public static final String  PRIORITY_AGING_KEY                 = "priority.aging";
+
+    public static final int     DEFAULT_PRIORITY_AGING             = 1000;
+
     public static final String  EXECUTES_KEY                       = "executes";
 
     public static final String  BUFFER_KEY                         = "buffer";
 
+    public static final String  BUFFER_FACTORY_KEY                 = "buffer.factory";
+
     public static final String  PAYLOAD_KEY                        = "payload";
 
+    // 消息体超过该大小时拆成多个分片帧发送，0为不分片，两端都需要配置
+    public static final String  CHUNK_SIZE_KEY                     = "chunk.size";
+
+    public static final int     DEFAULT_CHUNK_SIZE                 = 0;
+
+    // 分片消息重组后的总大小上限
+    public static final String  CHUNK_PAYLOAD_KEY                  = "chunk.payload";
+
+    public static final int     DEFAULT_CHUNK_PAYLOAD              = 1024 * 1024 * 1024;                   // 1G
+
+    // 每个通道同时在收的分片消息数上限，超过时该消息以失败结束
+    public static final String  CHUNK_STREAMS_KEY                  = "chunk.streams";
+
+    public static final int     DEFAULT_CHUNK_STREAMS              = 16;
+
+    // 每个通道已收到还没被读走的分片字节数上限，超过时该消息以失败结束
+    public static final String  CHUNK_BUFFER_KEY                   = "chunk.buffer";
+
+    public static final long    DEFAULT_CHUNK_BUFFER               = 1024L * 1024 * 1024;                  // 1G
+
+    // 消息体压缩算法，如lz4、deflate，不配置不压缩
+    public static final String  COMPRESSOR_KEY                     = "compressor";
+
+    // 消息体不小于该大小才压缩
+    public static final String  COMPRESS_THRESHOLD_KEY             = "compress.threshold";
+
+    public static final int     DEFAULT_COMPRESS_THRESHOLD         = 4 * 1024;
+
+    public static final String  FLUSH_BATCH_KEY                    = "flush.batch";
+
+    public static final String  FLUSH_BATCH_BYTES_KEY              = "flush.batch.bytes";
+
+    public static final String  REQUEST_BATCH_KEY                  = "request.batch";
+
+    public static final String  REQUEST_BATCH_SIZE_KEY             = "request.batch.size";
+
+    public static final String  WRITE_BUFFER_HIGH_KEY              = "write.buffer.high";
+
+    public static final String  WRITE_BUFFER_LOW_KEY               = "write.buffer.low";
+
+    public static final String  WRITE_BLOCK_TIMEOUT_KEY            = "write.block.timeout";
+
     public static final String  REFERENCE_FILTER_KEY               = "reference.filter";
 
     public static final String  INVOKER_LISTENER_KEY               = "invoker.listener";
@@ -254,6 +348,13 @@ public class Constants {
 
     public static final String  TIMEOUT_KEY                        = "timeout";
 
+    // 调用方还愿意等待的毫秒数，随请求的attachment传给服务端，嵌套调用时扣除已用掉的时间
+    public static final String  TIMEOUT_REMAINING_KEY              = "timeout.remaining";
+
+    public static final String  TIMEOUT_TICK_KEY                   = "timeout.tick";
+
+    public static final String  TIMEOUT_WHEEL_KEY                  = "timeout.wheel";
+
     public static final String  RETRIES_KEY                        = "retries";
 
     public static final String  PROMPT_KEY                         = "prompt";
@@ -302,6 +403,17 @@ public class Constants {
 
     public static final int     DEFAULT_RECONNECT_PERIOD           = 2000;
 
+    public static final String  RECONNECT_MAX_PERIOD_KEY           = "reconnect.max.period";
+
+    public static final int     DEFAULT_RECONNECT_MAX_PERIOD       = 60 * 1000;
+
+    /**
+     * 进程内同时进行的重连数上限，在dubbo.properties中配置.
+     */
+    public static final String  RECONNECT_CONCURRENCY_KEY          = "dubbo.reconnect.concurrency";
+
+    public static final int     DEFAULT_RECONNECT_CONCURRENCY      = 8;
+
     public static final String  SHUTDOWN_TIMEOUT_KEY               = "shutdown.timeout";
 
     public static final int     DEFAULT_SHUTDOWN_TIMEOUT           = 1000 * 60 * 15;
@@ -344,6 +456,26 @@ public class Constants {
 
     public static final String  DISPATCHER_KEY                     = "dispatcher";
 
+    // adaptive分发：平均耗时低于此值（微秒）的方法直接在IO线程执行
+    public static final String  ADAPTIVE_THRESHOLD_KEY             = "adaptive.threshold";
+
+    public static final int     DEFAULT_ADAPTIVE_THRESHOLD         = 100;
+
+    // adaptive分发：在IO线程上单次执行超过此值（微秒）的方法不再在IO线程执行
+    public static final String  ADAPTIVE_BLOCKING_KEY              = "adaptive.blocking";
+
+    public static final int     DEFAULT_ADAPTIVE_BLOCKING          = 2000;
+
+    // adaptive分发：阻塞过IO线程的方法至少过这么久（毫秒）才重新评估，再次阻塞时加倍
+    public static final String  ADAPTIVE_RETRY_KEY                 = "adaptive.retry";
+
+    public static final int     DEFAULT_ADAPTIVE_RETRY             = 60 * 1000;
+
+    // bulkhead分发：没有配置executes的服务的线程数，所有服务的线程数之和不超过端口的threads
+    public static final String  BULKHEAD_THREADS_KEY               = "bulkhead.threads";
+
+    public static final int     DEFAULT_BULKHEAD_THREADS           = 20;
+
     public static final String  CHANNEL_HANDLER_KEY                = "channel.handler";
 
     public static final String  DEFAULT_CHANNEL_HANDLER            = "default";
@@ -445,6 +577,18 @@ public class Constants {
      */
     public static final boolean DEFAULT_LAZY_CONNECT_INITIAL_STATE = true;
 
+    /**
+     * 创建client时是否在后台线程中建立连接，连接完成前invoker不可用。
+     */
+    public static final String  CONNECT_ASYNC_KEY                  = "connect.async";
+
+    /**
+     * 后台建立连接的最大并发数.
+     */
+    public static final String  CONNECT_ASYNC_THREADS_KEY          = "connect.async.threads";
+
+    public static final int     DEFAULT_CONNECT_ASYNC_THREADS      = 16;
+
     /**
      * 注册中心是否同步存储文件，默认异步
      */
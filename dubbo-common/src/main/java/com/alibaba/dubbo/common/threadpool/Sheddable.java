@@ -0,0 +1,28 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool;
+
+/**
+ * 线程池过载时可以被放弃执行的任务。
+ */
+public interface Sheddable extends Runnable {
+
+    /**
+     * 代替run()调用，任务应尽快给出失败的结果（如直接回复服务端过载）；不能丢弃的任务可以直接执行run()。
+     */
+    void shed();
+
+}
\ No newline at end of file
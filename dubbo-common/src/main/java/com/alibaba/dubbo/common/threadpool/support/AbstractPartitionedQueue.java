@@ -0,0 +1,250 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分成多个子队列、每个子队列单独限长的阻塞队列，子类只实现子队列的入队、出队策略，都在持有lock时调用。
+ * 一个子队列满时put和带超时的offer等这个子队列有空位，其它子队列照常入队。
+ */
+public abstract class AbstractPartitionedQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    protected final ReentrantLock lock     = new ReentrantLock();
+
+    private final Condition       notEmpty = lock.newCondition();
+
+    // 不知道空出来的是哪个子队列，出队时唤醒所有等待的生产者
+    private final Condition       notFull  = lock.newCondition();
+
+    private int                   count;
+
+    /**
+     * 放入任务所属的子队列
+     *
+     * @return 子队列满时返回false
+     */
+    protected abstract boolean enqueue(Runnable task);
+
+    /**
+     * 按策略取出下一个任务
+     *
+     * @return 没有任务时返回null
+     */
+    protected abstract Runnable dequeue();
+
+    /**
+     * @return 下一个要取出的任务，没有时返回null
+     */
+    protected abstract Runnable first();
+
+    /**
+     * 删除指定的任务
+     *
+     * @return 没有这个任务时返回false
+     */
+    protected abstract boolean delete(Object task);
+
+    /**
+     * 把所有任务加到tasks中
+     */
+    protected abstract void collect(List<Runnable> tasks);
+
+    private boolean insert(Runnable task) {
+        if (! enqueue(task)) {
+            return false;
+        }
+        count ++;
+        notEmpty.signal();
+        return true;
+    }
+
+    private Runnable extract() {
+        Runnable task = dequeue();
+        if (task != null) {
+            count --;
+            notFull.signalAll();
+        }
+        return task;
+    }
+
+    public boolean offer(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        lock.lock();
+        try {
+            return insert(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (! insert(task)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(Runnable task) throws InterruptedException {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        lock.lockInterruptibly();
+        try {
+            while (! insert(task)) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return first();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 容量按子队列限制，总的剩余容量没有意义
+     */
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = 0;
+            Runnable task;
+            while (n < maxElements && (task = extract()) != null) {
+                c.add(task);
+                n ++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回快照，通过它删除元素不影响队列
+     */
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> tasks = new ArrayList<Runnable>(count);
+            collect(tasks);
+            return tasks.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            if (! delete(o)) {
+                return false;
+            }
+            count --;
+            notFull.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
\ No newline at end of file
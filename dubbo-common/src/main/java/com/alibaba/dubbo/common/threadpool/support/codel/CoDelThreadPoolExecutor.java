@@ -0,0 +1,177 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.codel;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.threadpool.Sheddable;
+
+/**
+ * 记录每个任务排队时间的线程池，用CoDel（Controlled Delay）判断过载：
+ * 一个观察周期(interval)内最短的排队时间仍超过目标值(target)，说明队列是积压而不是突发，
+ * 下一个周期里排队超过2倍目标值的{@link Sheddable}任务不再执行，改为调用shed()快速失败。
+ * 队列恢复到目标值以下后自动停止丢弃。
+ *
+ * @see Sheddable
+ */
+public class CoDelThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoDelThreadPoolExecutor.class);
+
+    private final long       target;
+
+    private final long       interval;
+
+    // 以下CoDel状态都在this上同步
+    private long             intervalEnd;
+
+    private long             minDelay;
+
+    private volatile long    lastMinDelay;
+
+    private volatile boolean overloaded;
+
+    private final AtomicLong queueTime = new AtomicLong();
+
+    private final AtomicLong dequeued  = new AtomicLong();
+
+    private final AtomicLong shed      = new AtomicLong();
+
+    private volatile long    maxDelay;
+
+    /**
+     * @param threads 线程数
+     * @param target 排队时间目标值，毫秒
+     * @param interval 观察周期，毫秒
+     */
+    public CoDelThreadPoolExecutor(int threads, long target, long interval, BlockingQueue<Runnable> queue,
+                                   ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, queue, threadFactory, handler);
+        if (target <= 0 || interval <= 0) {
+            throw new IllegalArgumentException("codel target and interval must be positive, target: " + target + ", interval: " + interval);
+        }
+        this.target = TimeUnit.MILLISECONDS.toNanos(target);
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+        this.intervalEnd = System.nanoTime();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new QueuedTask(command, System.nanoTime()));
+    }
+
+    /**
+     * @param delay 任务的排队时间，纳秒
+     * @return 是否应当丢弃
+     */
+    private boolean shouldShed(long delay) {
+        queueTime.addAndGet(delay);
+        dequeued.incrementAndGet();
+        if (delay > maxDelay) {
+            maxDelay = delay;
+        }
+        boolean current;
+        boolean changed = false;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - intervalEnd >= 0) {
+                boolean o = minDelay > target;
+                changed = o != overloaded;
+                overloaded = o;
+                lastMinDelay = minDelay;
+                minDelay = delay;
+                intervalEnd = now + interval;
+            } else if (delay < minDelay) {
+                minDelay = delay;
+            }
+            current = overloaded;
+        }
+        if (changed && logger.isWarnEnabled()) {
+            logger.warn(current ? "Thread pool is overloaded, min queue time "
+                    + TimeUnit.NANOSECONDS.toMillis(lastMinDelay) + "ms in the last interval, start shedding tasks queued over "
+                    + TimeUnit.NANOSECONDS.toMillis(2 * target) + "ms. " + this
+                    : "Thread pool recovered from overload, " + shed.get() + " tasks shed in total. " + this);
+        }
+        return current && delay > 2 * target;
+    }
+
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    /**
+     * @return 上一个观察周期内最短的排队时间，毫秒
+     */
+    public long getMinQueueTime() {
+        return TimeUnit.NANOSECONDS.toMillis(lastMinDelay);
+    }
+
+    /**
+     * @return 平均排队时间，毫秒
+     */
+    public double getAverageQueueTime() {
+        long count = dequeued.get();
+        return count == 0 ? 0 : queueTime.get() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return 最长排队时间，毫秒
+     */
+    public long getMaxQueueTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxDelay);
+    }
+
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    private class QueuedTask implements Runnable {
+
+        private final Runnable task;
+
+        private final long     queued;
+
+        QueuedTask(Runnable task, long queued) {
+            this.task = task;
+            this.queued = queued;
+        }
+
+        public void run() {
+            if (shouldShed(System.nanoTime() - queued) && task instanceof Sheddable) {
+                shed.incrementAndGet();
+                ((Sheddable) task).shed();
+            } else {
+                task.run();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.eager;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThreadPoolExecutor只有在offer失败时才会创建超过core的线程，
+ * 这里在线程数没到上限、又没有空闲线程时拒绝入队，让线程池先加线程。
+ */
+public class TaskQueue extends LinkedBlockingQueue<Runnable> {
+
+    private static final long serialVersionUID = -2635853580887179627L;
+
+    private EagerThreadPoolExecutor executor;
+
+    public TaskQueue(int capacity) {
+        super(capacity);
+    }
+
+    public void setExecutor(EagerThreadPoolExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+        if (executor == null) {
+            throw new RejectedExecutionException("The task queue does not have executor!");
+        }
+        int poolSize = executor.getPoolSize();
+        // 已提交数包含了当前任务，不超过线程数说明有空闲线程，直接入队由它取走
+        if (executor.getSubmittedTaskCount() <= poolSize) {
+            return super.offer(runnable);
+        }
+        if (poolSize < executor.getMaximumPoolSize()) {
+            return false;
+        }
+        return super.offer(runnable);
+    }
+
+    /**
+     * 线程池已到上限而被拒绝时，再尝试放入队列
+     */
+    public boolean retryOffer(Runnable runnable, long timeout, TimeUnit unit) throws InterruptedException {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor is shutdown!");
+        }
+        return super.offer(runnable, timeout, unit);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,171 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.fair;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.alibaba.dubbo.common.threadpool.support.AbstractPartitionedQueue;
+
+/**
+ * 按key（消费方应用）分成多个子队列，用加权公平排队（Start-time Fair Queuing）出队：
+ * 每个任务入队时打上开始标签 max(虚拟时间, 同key上一个任务的结束标签)，结束标签 = 开始标签 + 1/权重，
+ * 总是取开始标签最小的任务，虚拟时间推进到该任务的开始标签。
+ * 积压的key按权重比例分到线程，空闲后再来的key不会因为之前没用而多分。
+ * 每个子队列的长度单独限制，一个key塞满只会拒绝它自己的任务。
+ */
+public class FairQueue extends AbstractPartitionedQueue {
+
+    private final PriorityQueue<Entry>   queue    = new PriorityQueue<Entry>();
+
+    private final Map<String, Flow>      flows    = new HashMap<String, Flow>();
+
+    // 子队列容量，小于等于0不限制
+    private final int                    capacity;
+
+    private volatile Map<String, Integer> weights = Collections.emptyMap();
+
+    private volatile int                 defaultWeight;
+
+    private double                       virtualTime;
+
+    private long                         sequence;
+
+    public FairQueue(int capacity, int defaultWeight) {
+        this.capacity = capacity;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public void setWeights(Map<String, Integer> weights, int defaultWeight) {
+        this.weights = weights;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public int getWeight(String key) {
+        Integer weight = weights.get(key);
+        return weight != null && weight > 0 ? weight : Math.max(defaultWeight, 1);
+    }
+
+    /**
+     * @return 各key排队的任务数
+     */
+    public Map<String, Integer> getQueueSizes() {
+        lock.lock();
+        try {
+            Map<String, Integer> sizes = new HashMap<String, Integer>();
+            for (Map.Entry<String, Flow> entry : flows.entrySet()) {
+                sizes.put(entry.getKey(), entry.getValue().size);
+            }
+            return sizes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected boolean enqueue(Runnable task) {
+        String key = task instanceof FairTask ? ((FairTask) task).getKey() : "";
+        Flow flow = flows.get(key);
+        if (flow == null) {
+            flow = new Flow();
+            flows.put(key, flow);
+        } else if (capacity > 0 && flow.size >= capacity) {
+            return false;
+        }
+        double start = Math.max(virtualTime, flow.finish);
+        flow.finish = start + 1.0 / getWeight(key);
+        flow.size ++;
+        queue.add(new Entry(task, key, start, sequence ++));
+        return true;
+    }
+
+    protected Runnable dequeue() {
+        Entry entry = queue.poll();
+        if (entry == null) {
+            return null;
+        }
+        virtualTime = entry.start;
+        release(entry.key);
+        return entry.task;
+    }
+
+    private void release(String key) {
+        Flow flow = flows.get(key);
+        if (-- flow.size == 0) {
+            // 空闲的key不保留标签，再来时从当前虚拟时间开始
+            flows.remove(key);
+        }
+    }
+
+    protected Runnable first() {
+        Entry entry = queue.peek();
+        return entry == null ? null : entry.task;
+    }
+
+    protected boolean delete(Object task) {
+        for (Iterator<Entry> it = queue.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.task.equals(task)) {
+                it.remove();
+                release(entry.key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void collect(List<Runnable> tasks) {
+        for (Entry entry : queue) {
+            tasks.add(entry.task);
+        }
+    }
+
+    private static class Flow {
+
+        double finish;
+
+        int    size;
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        final Runnable task;
+
+        final String   key;
+
+        final double   start;
+
+        final long     sequence;
+
+        Entry(Runnable task, String key, double start, long sequence) {
+            this.task = task;
+            this.key = key;
+            this.start = start;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(Entry o) {
+            if (start != o.start) {
+                return start < o.start ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.fair;
+
+/**
+ * 带key的任务，{@link FairQueue}按key分队列
+ */
+class FairTask implements Runnable {
+
+    private final String   key;
+
+    private final Runnable task;
+
+    FairTask(String key, Runnable task) {
+        this.key = key == null ? "" : key;
+        this.task = task;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void run() {
+        task.run();
+    }
+
+}
\ No newline at end of file
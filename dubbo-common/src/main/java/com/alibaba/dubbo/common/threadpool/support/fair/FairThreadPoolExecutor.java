@@ -0,0 +1,118 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.fair;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * 按key加权公平调度的线程池，用{@link #execute(String, Runnable)}提交带key的任务，
+ * 积压时各key按权重比例分到线程，每个key的排队数单独限制。
+ * 某个key排满时只拒绝它自己的任务，抛出带key的{@link RejectedExecutionException}，不交给拒绝策略报告线程池耗尽。
+ *
+ * @see FairQueue
+ */
+public class FairThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FairThreadPoolExecutor.class);
+
+    private static final String WEIGHT_PREFIX = Constants.FAIR_WEIGHT_KEY + ".";
+
+    private final FairQueue     queue;
+
+    /**
+     * @param threads 线程数
+     * @param queues 每个key的排队数，小于等于0不限制
+     */
+    public FairThreadPoolExecutor(int threads, int queues, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        this(threads, queues, new FairQueue(queues, Constants.DEFAULT_FAIR_WEIGHT), threadFactory, handler);
+    }
+
+    private FairThreadPoolExecutor(int threads, int queues, FairQueue queue, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, queue, threadFactory, new KeyRejectedHandler(queues, handler));
+        this.queue = queue;
+    }
+
+    /**
+     * 以key排队执行任务
+     */
+    public void execute(String key, Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        execute(new FairTask(key, command));
+    }
+
+    /**
+     * 从URL参数更新权重：fair.weight.&lt;key&gt;为单个key的权重，fair.weight为默认权重
+     */
+    public void setWeights(URL url) {
+        Map<String, Integer> weights = new HashMap<String, Integer>();
+        for (Map.Entry<String, String> entry : url.getParameters().entrySet()) {
+            if (entry.getKey().startsWith(WEIGHT_PREFIX)) {
+                String key = entry.getKey().substring(WEIGHT_PREFIX.length());
+                try {
+                    weights.put(key, Integer.parseInt(entry.getValue().trim()));
+                } catch (NumberFormatException e) {
+                    logger.warn("Illegal fair weight " + entry.getValue() + " of " + key + ", use default weight");
+                }
+            }
+        }
+        queue.setWeights(weights, url.getParameter(Constants.FAIR_WEIGHT_KEY, Constants.DEFAULT_FAIR_WEIGHT));
+    }
+
+    public int getWeight(String key) {
+        return queue.getWeight(key);
+    }
+
+    /**
+     * @return 各key排队的任务数，没有排队的key不在其中
+     */
+    public Map<String, Integer> getQueueSizes() {
+        return queue.getQueueSizes();
+    }
+
+    private static class KeyRejectedHandler implements RejectedExecutionHandler {
+
+        private final int                      queues;
+
+        private final RejectedExecutionHandler handler;
+
+        KeyRejectedHandler(int queues, RejectedExecutionHandler handler) {
+            this.queues = queues;
+            this.handler = handler;
+        }
+
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            if (r instanceof FairTask && ! e.isShutdown()) {
+                // 线程都在用、只是这个key排满了，不是整个线程池耗尽
+                throw new RejectedExecutionException("Queue of " + ((FairTask) r).getKey() + " is full, queues: " + queues);
+            }
+            handler.rejectedExecution(r, e);
+        }
+    }
+
+}
\ No newline at end of file
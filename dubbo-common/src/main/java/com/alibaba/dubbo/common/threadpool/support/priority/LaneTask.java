@@ -0,0 +1,43 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.priority;
+
+/**
+ * 带优先级的任务，{@link PriorityLaneQueue}按优先级分队列
+ */
+class LaneTask implements Runnable {
+
+    private final int      lane;
+
+    private final Runnable task;
+
+    // 入队时间，纳秒
+    long                   queuedAt;
+
+    LaneTask(int lane, Runnable task) {
+        this.lane = lane;
+        this.task = task;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+
+    public void run() {
+        task.run();
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.priority;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.threadpool.support.AbstractPartitionedQueue;
+
+/**
+ * 按优先级分成多个队列（下标越小优先级越高），总是先取优先级高的队列，
+ * 但低优先级队列的队头排队超过aging时先取它（多个队列都超过时取排得最久的），高优先级持续繁忙也不会饿死低优先级。
+ * 每个队列的长度单独限制，低优先级塞满不影响高优先级入队。
+ */
+public class PriorityLaneQueue extends AbstractPartitionedQueue {
+
+    private final LinkedList<LaneTask>[] lanes;
+
+    // 不带优先级的任务排的队列
+    private final int                    defaultLane;
+
+    // 每个队列的容量，小于等于0不限制
+    private final int                    capacity;
+
+    private final long                   aging;
+
+    private long                         aged;
+
+    /**
+     * @param lanes 队列数
+     * @param defaultLane 不带优先级的任务排的队列
+     * @param capacity 每个队列的容量，小于等于0不限制
+     * @param aging 防饿死的排队时间，毫秒，小于等于0为严格按优先级
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityLaneQueue(int lanes, int defaultLane, int capacity, long aging) {
+        if (defaultLane < 0 || defaultLane >= lanes) {
+            throw new IllegalArgumentException("default lane " + defaultLane + " out of " + lanes + " lanes");
+        }
+        this.lanes = new LinkedList[lanes];
+        for (int i = 0; i < lanes; i ++) {
+            this.lanes[i] = new LinkedList<LaneTask>();
+        }
+        this.defaultLane = defaultLane;
+        this.capacity = capacity;
+        this.aging = TimeUnit.MILLISECONDS.toNanos(aging);
+    }
+
+    /**
+     * @return 各队列排队的任务数
+     */
+    public int[] getLaneSizes() {
+        lock.lock();
+        try {
+            int[] sizes = new int[lanes.length];
+            for (int i = 0; i < lanes.length; i ++) {
+                sizes[i] = lanes[i].size();
+            }
+            return sizes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 因为排队过久而提前执行的低优先级任务数
+     */
+    public long getAgedCount() {
+        lock.lock();
+        try {
+            return aged;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected boolean enqueue(Runnable task) {
+        LaneTask laneTask = task instanceof LaneTask ? (LaneTask) task : new LaneTask(defaultLane, task);
+        int lane = Math.min(Math.max(laneTask.getLane(), 0), lanes.length - 1);
+        if (capacity > 0 && lanes[lane].size() >= capacity) {
+            return false;
+        }
+        laneTask.queuedAt = System.nanoTime();
+        lanes[lane].add(laneTask);
+        return true;
+    }
+
+    protected Runnable dequeue() {
+        int highest = 0;
+        while (highest < lanes.length && lanes[highest].isEmpty()) {
+            highest ++;
+        }
+        if (highest == lanes.length) {
+            return null;
+        }
+        int lane = highest;
+        if (aging > 0) {
+            long oldest = System.nanoTime() - aging;
+            for (int i = highest + 1; i < lanes.length; i ++) {
+                LaneTask head = lanes[i].peek();
+                if (head != null && head.queuedAt - oldest <= 0) {
+                    lane = i;
+                    oldest = head.queuedAt;
+                }
+            }
+            if (lane != highest) {
+                aged ++;
+            }
+        }
+        return lanes[lane].poll();
+    }
+
+    protected Runnable first() {
+        for (LinkedList<LaneTask> lane : lanes) {
+            if (! lane.isEmpty()) {
+                return lane.peek();
+            }
+        }
+        return null;
+    }
+
+    protected boolean delete(Object task) {
+        for (LinkedList<LaneTask> lane : lanes) {
+            if (lane.remove(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void collect(List<Runnable> tasks) {
+        for (LinkedList<LaneTask> lane : lanes) {
+            tasks.addAll(lane);
+        }
+    }
+
+}
\ No newline at end of file
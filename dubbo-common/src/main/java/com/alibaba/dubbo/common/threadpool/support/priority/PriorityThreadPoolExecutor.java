@@ -0,0 +1,101 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.priority;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按优先级调度的线程池，用{@link #execute(int, Runnable)}提交指定优先级的任务，
+ * 空闲线程先取高优先级的任务，低优先级任务排队超过aging后提前执行。
+ *
+ * @see PriorityLaneQueue
+ */
+public class PriorityThreadPoolExecutor extends ThreadPoolExecutor {
+
+    public static final int       HIGH   = 0;
+
+    public static final int       NORMAL = 1;
+
+    public static final int       LOW    = 2;
+
+    private static final String[] LANES  = {"high", "normal", "low"};
+
+    private final PriorityLaneQueue queue;
+
+    /**
+     * @param threads 线程数
+     * @param queues 每个优先级的排队数，小于等于0不限制
+     * @param aging 低优先级任务排队超过这个时间（毫秒）后提前执行，小于等于0为严格按优先级
+     */
+    public PriorityThreadPoolExecutor(int threads, int queues, long aging, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        this(threads, new PriorityLaneQueue(LANES.length, NORMAL, queues, aging), threadFactory, handler);
+    }
+
+    private PriorityThreadPoolExecutor(int threads, PriorityLaneQueue queue, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, queue, threadFactory, handler);
+        this.queue = queue;
+    }
+
+    /**
+     * @param priority high、normal、low，不区分大小写，其它值都为normal
+     * @return 优先级对应的队列
+     */
+    public static int getLane(String priority) {
+        if (priority != null) {
+            for (int i = 0; i < LANES.length; i ++) {
+                if (LANES[i].equalsIgnoreCase(priority.trim())) {
+                    return i;
+                }
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * 以指定优先级执行任务
+     */
+    public void execute(int lane, Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        execute(new LaneTask(lane, command));
+    }
+
+    /**
+     * @return 各优先级排队的任务数，按优先级从高到低
+     */
+    public Map<String, Integer> getQueueSizes() {
+        int[] sizes = queue.getLaneSizes();
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < LANES.length; i ++) {
+            map.put(LANES[i], sizes[i]);
+        }
+        return map;
+    }
+
+    /**
+     * @return 因为排队过久而提前执行的低优先级任务数
+     */
+    public long getAgedCount() {
+        return queue.getAgedCount();
+    }
+
+}
\ No newline at end of file
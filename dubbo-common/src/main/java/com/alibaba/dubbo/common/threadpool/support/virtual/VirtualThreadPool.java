@@ -0,0 +1,95 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.virtual;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import com.alibaba.dubbo.common.threadpool.support.fixed.FixedThreadPool;
+
+/**
+ * 每个任务一个虚拟线程，适合阻塞在JDBC、下游调用上的服务，不再需要几百个平台线程。
+ * 没有线程数上限，并发需要用&lt;dubbo:service executes="..." /&gt;限制。
+ * JDK不支持虚拟线程（21以前）时退回为fixed线程池。
+ *
+ * @see com.alibaba.dubbo.rpc.filter.ExecuteLimitFilter
+ */
+public class VirtualThreadPool implements ThreadPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+    // 编译目标是老版本JDK，只能反射调用
+    private static final Method OF_VIRTUAL;
+
+    private static final Method BUILDER_NAME;
+
+    private static final Method BUILDER_FACTORY;
+
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builder.getMethod("name", String.class, long.class);
+            builderFactory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (Exception e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    public Executor getExecutor(URL url) {
+        String name = url.getParameter(Constants.THREAD_NAME_KEY, Constants.DEFAULT_THREAD_NAME);
+        if (OF_VIRTUAL != null) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name + "-virtual-", 1L);
+                ThreadFactory threadFactory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+                return (Executor) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+            } catch (Exception e) {
+                // JDK 19/20的虚拟线程是预览特性，未开启时会抛异常
+                logger.warn("Failed to create virtual thread executor, fallback to fixed thread pool, cause: " + e.getMessage(), e);
+            }
+        } else {
+            logger.warn("Virtual threads are not supported by java " + System.getProperty("java.version")
+                    + ", fallback to fixed thread pool");
+        }
+        return new FixedThreadPool().getExecutor(url);
+    }
+
+    /**
+     * @return 当前JDK是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,504 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.timer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * 时间轮定时器。
+ * <p>
+ * 任务按到期时间散列到环形数组的槽中，工作线程每个tick只处理当前槽，
+ * 新增和取消都是O(1)，不需要扫描全部任务。超时精度为一个tick，
+ * 适合大量短时、多数会被提前取消的超时任务，如请求超时、心跳。
+ * <p>
+ * 实现参考Netty的HashedWheelTimer。
+ */
+public class HashedWheelTimer implements Timer {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private static final int WORKER_STATE_INIT = 0;
+
+    private static final int WORKER_STATE_STARTED = 1;
+
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_STATE_INIT);
+
+    private final Worker worker = new Worker();
+
+    private final Thread workerThread;
+
+    private final long tickDuration;
+
+    private final HashedWheelBucket[] wheel;
+
+    private final int mask;
+
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+
+    private final Queue<HashedWheelTimeout> timeouts = new ConcurrentLinkedQueue<HashedWheelTimeout>();
+
+    private final Queue<HashedWheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<HashedWheelTimeout>();
+
+    private final AtomicLong pendingTimeouts = new AtomicLong(0);
+
+    private volatile long startTime;
+
+    /**
+     * @param threadFactory 创建工作线程
+     * @param tickDuration  每个tick的时长
+     * @param unit          tickDuration的单位
+     * @param ticksPerWheel 每轮的槽数，会向上取整为2的幂
+     */
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory == null");
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("unit == null");
+        }
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("ticksPerWheel must be greater than 0: " + ticksPerWheel);
+        }
+        if (ticksPerWheel > 1073741824) {
+            throw new IllegalArgumentException("ticksPerWheel may not be greater than 2^30: " + ticksPerWheel);
+        }
+        this.wheel = createWheel(ticksPerWheel);
+        this.mask = wheel.length - 1;
+        this.tickDuration = unit.toNanos(tickDuration);
+        if (this.tickDuration >= Long.MAX_VALUE / wheel.length) {
+            throw new IllegalArgumentException(String.format(
+                    "tickDuration: %d (expected: 0 < tickDuration in nanos < %d",
+                    tickDuration, Long.MAX_VALUE / wheel.length));
+        }
+        this.workerThread = threadFactory.newThread(worker);
+    }
+
+    private static HashedWheelBucket[] createWheel(int ticksPerWheel) {
+        int normalizedTicksPerWheel = 1;
+        while (normalizedTicksPerWheel < ticksPerWheel) {
+            normalizedTicksPerWheel <<= 1;
+        }
+        HashedWheelBucket[] wheel = new HashedWheelBucket[normalizedTicksPerWheel];
+        for (int i = 0; i < wheel.length; i ++) {
+            wheel[i] = new HashedWheelBucket();
+        }
+        return wheel;
+    }
+
+    /**
+     * 启动工作线程，{@link #newTimeout}会自动调用，无需显式启动。
+     */
+    public void start() {
+        switch (workerState.get()) {
+            case WORKER_STATE_INIT:
+                if (workerState.compareAndSet(WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+        // 等待工作线程初始化startTime
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException ignore) {
+                // Ignore - it will be ready very soon.
+            }
+        }
+    }
+
+    public Set<Timeout> stop() {
+        if (Thread.currentThread() == workerThread) {
+            throw new IllegalStateException(HashedWheelTimer.class.getSimpleName()
+                    + ".stop() cannot be called from " + TimerTask.class.getSimpleName());
+        }
+        if (! workerState.compareAndSet(WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            workerState.set(WORKER_STATE_SHUTDOWN);
+            return Collections.emptySet();
+        }
+        boolean interrupted = false;
+        while (workerThread.isAlive()) {
+            workerThread.interrupt();
+            try {
+                workerThread.join(100);
+            } catch (InterruptedException ignored) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return worker.unprocessedTimeouts();
+    }
+
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new IllegalArgumentException("task == null");
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("unit == null");
+        }
+        start();
+        pendingTimeouts.incrementAndGet();
+        // 先放入队列，由工作线程在下一个tick放入对应的槽
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        HashedWheelTimeout timeout = new HashedWheelTimeout(this, task, deadline);
+        timeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 尚未执行也未取消的任务数。
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    private final class Worker implements Runnable {
+
+        private final Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+
+        private long tick;
+
+        public void run() {
+            startTime = System.nanoTime();
+            if (startTime == 0) {
+                // 0作为未初始化的标记
+                startTime = 1;
+            }
+            startTimeInitialized.countDown();
+
+            do {
+                final long deadline = waitForNextTick();
+                if (deadline > 0) {
+                    int idx = (int) (tick & mask);
+                    processCancelledTasks();
+                    HashedWheelBucket bucket = wheel[idx];
+                    transferTimeoutsToBuckets();
+                    bucket.expireTimeouts(deadline);
+                    tick ++;
+                }
+            } while (workerState.get() == WORKER_STATE_STARTED);
+
+            // 停止后收集未执行的任务，由stop()返回
+            for (HashedWheelBucket bucket : wheel) {
+                bucket.clearTimeouts(unprocessedTimeouts);
+            }
+            for (;;) {
+                HashedWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (! timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
+            processCancelledTasks();
+        }
+
+        private void transferTimeoutsToBuckets() {
+            // 每个tick最多转移100000个，避免新增过多时工作线程长时间不能推进
+            for (int i = 0; i < 100000; i ++) {
+                HashedWheelTimeout timeout = timeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.state() == HashedWheelTimeout.ST_CANCELLED) {
+                    continue;
+                }
+                long calculated = timeout.deadline / tickDuration;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                // 已经过期的放入当前槽，本tick立即执行
+                final long ticks = Math.max(calculated, tick);
+                int stopIndex = (int) (ticks & mask);
+                HashedWheelBucket bucket = wheel[stopIndex];
+                bucket.addTimeout(timeout);
+            }
+        }
+
+        private void processCancelledTasks() {
+            for (;;) {
+                HashedWheelTimeout timeout = cancelledTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                try {
+                    timeout.remove();
+                } catch (Throwable t) {
+                    logger.warn("An exception was thrown while process a cancellation task", t);
+                }
+            }
+        }
+
+        /**
+         * @return 当前tick的到期时间（相对startTime），停止时返回Long.MIN_VALUE
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+            for (;;) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+                if (sleepTimeMs <= 0) {
+                    if (currentTime == Long.MIN_VALUE) {
+                        return - Long.MAX_VALUE;
+                    } else {
+                        return currentTime;
+                    }
+                }
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (workerState.get() == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+
+        Set<Timeout> unprocessedTimeouts() {
+            return Collections.unmodifiableSet(unprocessedTimeouts);
+        }
+    }
+
+    private static final class HashedWheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+
+        private static final int ST_CANCELLED = 1;
+
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+
+        private final TimerTask task;
+
+        private final long deadline;
+
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        // 剩余轮数，由工作线程在放入槽时计算
+        long remainingRounds;
+
+        // 槽内的双向链表，只由工作线程访问
+        HashedWheelTimeout next;
+
+        HashedWheelTimeout prev;
+
+        HashedWheelBucket bucket;
+
+        HashedWheelTimeout(HashedWheelTimer timer, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public Timer timer() {
+            return timer;
+        }
+
+        public TimerTask task() {
+            return task;
+        }
+
+        public boolean cancel() {
+            if (! state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // 只入队，由工作线程从槽中移除，避免并发修改链表
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        void remove() {
+            HashedWheelBucket bucket = this.bucket;
+            if (bucket != null) {
+                bucket.remove(this);
+            } else {
+                timer.pendingTimeouts.decrementAndGet();
+            }
+        }
+
+        int state() {
+            return state.get();
+        }
+
+        public boolean isCancelled() {
+            return state() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state() == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (! state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long currentTime = System.nanoTime();
+            long remaining = deadline - currentTime + timer.startTime;
+            StringBuilder buf = new StringBuilder(192)
+                    .append(getClass().getSimpleName())
+                    .append('(')
+                    .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining).append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining).append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+            return buf.append(", task: ").append(task).append(')').toString();
+        }
+    }
+
+    /**
+     * 时间轮的槽，只由工作线程访问。
+     */
+    private static final class HashedWheelBucket {
+
+        private HashedWheelTimeout head;
+
+        private HashedWheelTimeout tail;
+
+        void addTimeout(HashedWheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expireTimeouts(long deadline) {
+            HashedWheelTimeout timeout = head;
+            while (timeout != null) {
+                HashedWheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    next = remove(timeout);
+                    if (timeout.deadline <= deadline) {
+                        timeout.expire();
+                    } else {
+                        // The timeout was placed into a wrong slot. This should never happen.
+                        throw new IllegalStateException(String.format(
+                                "timeout.deadline (%d) > deadline (%d)", timeout.deadline, deadline));
+                    }
+                } else if (timeout.isCancelled()) {
+                    next = remove(timeout);
+                } else {
+                    timeout.remainingRounds --;
+                }
+                timeout = next;
+            }
+        }
+
+        HashedWheelTimeout remove(HashedWheelTimeout timeout) {
+            HashedWheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            timeout.timer.pendingTimeouts.decrementAndGet();
+            return next;
+        }
+
+        void clearTimeouts(Set<Timeout> set) {
+            for (;;) {
+                HashedWheelTimeout timeout = pollTimeout();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.isExpired() || timeout.isCancelled()) {
+                    continue;
+                }
+                set.add(timeout);
+            }
+        }
+
+        private HashedWheelTimeout pollTimeout() {
+            HashedWheelTimeout head = this.head;
+            if (head == null) {
+                return null;
+            }
+            HashedWheelTimeout next = head.next;
+            if (next == null) {
+                tail = this.head = null;
+            } else {
+                this.head = next;
+                next.prev = null;
+            }
+            head.next = null;
+            head.prev = null;
+            head.bucket = null;
+            return head;
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.timer;
+
+/**
+ * {@link Timer#newTimeout}返回的句柄，可用于取消任务。
+ */
+public interface Timeout {
+
+    Timer timer();
+
+    TimerTask task();
+
+    boolean isExpired();
+
+    boolean isCancelled();
+
+    /**
+     * Attempts to cancel the {@link TimerTask} associated with this handle.
+     * If the task has been executed or canceled already, it will return with no side effect.
+     *
+     * @return true if the cancellation completed successfully, otherwise false
+     */
+    boolean cancel();
+
+}
\ No newline at end of file
@@ -0,0 +1,191 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以原始long为key的开放寻址哈希表，线性探测，删除时回移后继元素，不使用墓碑。
+ * <p>
+ * 避免Long装箱和Entry对象，适合请求ID这类高频短生命周期的映射。非线程安全，由调用方加锁。
+ */
+public class LongObjectHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    private int mask;
+
+    private int maxSize;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectHashMap(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity must be greater than 0: " + initialCapacity);
+        }
+        int capacity = 2;
+        while (capacity < initialCapacity / LOAD_FACTOR) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        maxSize = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int indexOf(long key) {
+        // 打散连续的请求ID
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int i = indexOf(key); ; i = (i + 1) & mask) {
+            Object value = values[i];
+            if (value == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @param value 不能为null
+     * @return 原来的值
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value == null");
+        }
+        for (int i = indexOf(key); ; i = (i + 1) & mask) {
+            Object old = values[i];
+            if (old == null) {
+                keys[i] = key;
+                values[i] = value;
+                if (++ size > maxSize) {
+                    rehash(keys.length << 1);
+                }
+                return null;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) old;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        for (int i = indexOf(key); ; i = (i + 1) & mask) {
+            Object value = values[i];
+            if (value == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                size --;
+                shiftBack(i);
+                return (V) value;
+            }
+        }
+    }
+
+    // 删除后把探测链上的后继元素前移，保证查找不会在空槽处提前终止
+    private void shiftBack(int slot) {
+        int free = slot;
+        int i = (slot + 1) & mask;
+        while (values[i] != null) {
+            int home = indexOf(keys[i]);
+            // home不在(free, i]区间内时，元素可以移到free
+            if (free <= i ? (home <= free || home > i) : (home <= free && home > i)) {
+                keys[free] = keys[i];
+                values[free] = values[i];
+                free = i;
+            }
+            i = (i + 1) & mask;
+        }
+        values[free] = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i ++) {
+            Object value = oldValues[i];
+            if (value != null) {
+                for (int j = indexOf(oldKeys[i]); ; j = (j + 1) & mask) {
+                    if (values[j] == null) {
+                        keys[j] = oldKeys[i];
+                        values[j] = value;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> list = new ArrayList<V>(size);
+        for (Object value : values) {
+            if (value != null) {
+                list.add((V) value);
+            }
+        }
+        return list;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            for (int i = 0; i < values.length; i ++) {
+                values[i] = null;
+            }
+            size = 0;
+        }
+    }
+
+}
\ No newline at end of file
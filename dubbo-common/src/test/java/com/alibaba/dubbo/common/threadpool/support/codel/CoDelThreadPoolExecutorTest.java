@@ -0,0 +1,148 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.codel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.threadpool.Sheddable;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+public class CoDelThreadPoolExecutorTest {
+
+    private CoDelThreadPoolExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Task implements Sheddable {
+
+        private final long          sleep;
+
+        private final AtomicInteger ran;
+
+        private final AtomicInteger shed;
+
+        private final CountDownLatch done;
+
+        Task(long sleep, AtomicInteger ran, AtomicInteger shed, CountDownLatch done) {
+            this.sleep = sleep;
+            this.ran = ran;
+            this.shed = shed;
+            this.done = done;
+        }
+
+        public void run() {
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ran.incrementAndGet();
+            done.countDown();
+        }
+
+        public void shed() {
+            shed.incrementAndGet();
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void testShedStandingQueue() throws Exception {
+        executor = new CoDelThreadPoolExecutor(1, 5, 50, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("CoDelTest", true), new ThreadPoolExecutor.AbortPolicy());
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(40);
+        for (int i = 0; i < 40; i ++) {
+            executor.execute(new Task(10, ran, shed, done));
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(shed.get() > 0);
+        assertTrue(ran.get() > 0);
+        assertEquals(shed.get(), executor.getShedCount());
+        assertTrue(executor.isOverloaded());
+        assertTrue(executor.getMaxQueueTime() >= 50);
+        assertTrue(executor.getAverageQueueTime() > 0);
+    }
+
+    @Test
+    public void testNoShedWithoutStandingQueue() throws Exception {
+        executor = new CoDelThreadPoolExecutor(2, 5, 20, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("CoDelTest", true), new ThreadPoolExecutor.AbortPolicy());
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i ++) {
+            executor.execute(new Task(1, ran, shed, done));
+            Thread.sleep(5);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(20, ran.get());
+        assertEquals(0, executor.getShedCount());
+        assertFalse(executor.isOverloaded());
+    }
+
+    @Test
+    public void testPlainRunnableNeverShed() throws Exception {
+        executor = new CoDelThreadPoolExecutor(1, 1, 10, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("CoDelTest", true), new ThreadPoolExecutor.AbortPolicy());
+        final AtomicInteger ran = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(30);
+        for (int i = 0; i < 30; i ++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    ran.incrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(30, ran.get());
+        assertEquals(0, executor.getShedCount());
+    }
+
+    @Test
+    public void testExtension() {
+        ThreadPool threadPool = ExtensionLoader.getExtensionLoader(ThreadPool.class).getExtension("codel");
+        executor = (CoDelThreadPoolExecutor) threadPool.getExecutor(URL.valueOf("dubbo://127.0.0.1:20880/demo?threads=3"));
+        assertEquals(3, executor.getMaximumPoolSize());
+    }
+
+}
\ No newline at end of file
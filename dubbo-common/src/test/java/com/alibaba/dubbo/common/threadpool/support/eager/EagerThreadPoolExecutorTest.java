@@ -0,0 +1,125 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.eager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+
+public class EagerThreadPoolExecutorTest {
+
+    private EagerThreadPoolExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private EagerThreadPoolExecutor getExecutor(String parameters) {
+        ThreadPool threadPool = ExtensionLoader.getExtensionLoader(ThreadPool.class).getExtension("eager");
+        return (EagerThreadPoolExecutor) threadPool.getExecutor(URL.valueOf("dubbo://127.0.0.1:20880/demo?" + parameters));
+    }
+
+    private static Runnable await(final CountDownLatch latch) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testThreadsBeforeQueue() throws Exception {
+        executor = getExecutor("threads=5&queues=3");
+        CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < 5; i ++) {
+            executor.execute(await(latch));
+            assertEquals(i + 1, executor.getPoolSize());
+            assertEquals(0, executor.getQueue().size());
+        }
+        for (int i = 0; i < 3; i ++) {
+            executor.execute(await(latch));
+            assertEquals(5, executor.getPoolSize());
+            assertEquals(i + 1, executor.getQueue().size());
+        }
+        try {
+            executor.execute(await(latch));
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(8, executor.getSubmittedTaskCount());
+        latch.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getSubmittedTaskCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.getSubmittedTaskCount());
+    }
+
+    @Test
+    public void testIdleThreadReused() throws Exception {
+        executor = getExecutor("threads=5&queues=3");
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getSubmittedTaskCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(await(latch));
+        assertEquals(1, executor.getPoolSize());
+        latch.countDown();
+    }
+
+    @Test
+    public void testShrinkAfterAlive() throws Exception {
+        executor = getExecutor("threads=4&queues=2&alive=100");
+        CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < 4; i ++) {
+            executor.execute(await(latch));
+        }
+        assertEquals(4, executor.getPoolSize());
+        latch.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getPoolSize() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, executor.getPoolSize());
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,171 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.fair;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+
+public class FairThreadPoolExecutorTest {
+
+    private FairThreadPoolExecutor executor;
+
+    private final List<String>     executed = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private FairThreadPoolExecutor getExecutor(String parameters) {
+        ThreadPool threadPool = ExtensionLoader.getExtensionLoader(ThreadPool.class).getExtension("fair");
+        return (FairThreadPoolExecutor) threadPool.getExecutor(URL.valueOf("dubbo://127.0.0.1:20880/demo?" + parameters));
+    }
+
+    private static Runnable await(final CountDownLatch latch) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            public void run() {
+                executed.add(name);
+            }
+        };
+    }
+
+    private void awaitExecuted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, executed.size());
+    }
+
+    @Test
+    public void testWeightedOrder() throws Exception {
+        executor = getExecutor("threads=1&queues=0&fair.weight.a=2");
+        assertEquals(2, executor.getWeight("a"));
+        assertEquals(1, executor.getWeight("b"));
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(await(latch));
+        for (int i = 0; i < 6; i ++) {
+            executor.execute("a", record("a" + i));
+        }
+        for (int i = 0; i < 3; i ++) {
+            executor.execute("b", record("b" + i));
+        }
+        assertEquals(Integer.valueOf(6), executor.getQueueSizes().get("a"));
+        assertEquals(Integer.valueOf(3), executor.getQueueSizes().get("b"));
+        latch.countDown();
+        awaitExecuted(9);
+        // a的权重是b的两倍，b排在a的突发请求后面也能按比例执行
+        assertEquals(Arrays.asList("a0", "b0", "a1", "a2", "b1", "a3", "a4", "b2", "a5"), executed);
+        assertTrue(executor.getQueueSizes().isEmpty());
+    }
+
+    @Test
+    public void testQueuesPerKey() throws Exception {
+        executor = getExecutor("threads=1&queues=2");
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(await(latch));
+        executor.execute("a", record("a0"));
+        executor.execute("a", record("a1"));
+        try {
+            executor.execute("a", record("a2"));
+            fail();
+        } catch (RejectedExecutionException expected) {
+            assertEquals("Queue of a is full, queues: 2", expected.getMessage());
+        }
+        executor.execute("b", record("b0"));
+        executor.execute("b", record("b1"));
+        latch.countDown();
+        awaitExecuted(4);
+        assertEquals(Arrays.asList("a0", "b0", "a1", "b1"), executed);
+    }
+
+    @Test
+    public void testResetWeights() throws Exception {
+        executor = getExecutor("threads=1&queues=0&fair.weight.a=3");
+        executor.setWeights(URL.valueOf("dubbo://127.0.0.1:20880/demo?fair.weight=2&fair.weight.b=4&fair.weight.c=x"));
+        assertEquals(2, executor.getWeight("a"));
+        assertEquals(4, executor.getWeight("b"));
+        assertEquals(2, executor.getWeight("c"));
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute("a", new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBlockingOfferAndPut() throws Exception {
+        final FairQueue queue = new FairQueue(1, 1);
+        assertTrue(queue.offer(new FairTask("a", record("a0"))));
+        long start = System.nanoTime();
+        assertFalse(queue.offer(new FairTask("a", record("a1")), 50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        // 其它key不用等
+        assertTrue(queue.offer(new FairTask("b", record("b0")), 0, TimeUnit.MILLISECONDS));
+
+        final CountDownLatch put = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    queue.put(new FairTask("a", record("a2")));
+                    put.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+        assertFalse(put.await(50, TimeUnit.MILLISECONDS));
+        queue.take().run();
+        assertTrue(put.await(5, TimeUnit.SECONDS));
+        assertEquals(2, queue.size());
+        assertEquals(Arrays.asList("a0"), executed);
+    }
+
+}
\ No newline at end of file
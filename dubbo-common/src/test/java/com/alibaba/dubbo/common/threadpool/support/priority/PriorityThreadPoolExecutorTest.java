@@ -0,0 +1,161 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.priority;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+
+public class PriorityThreadPoolExecutorTest {
+
+    private PriorityThreadPoolExecutor executor;
+
+    private final List<String>         executed = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private PriorityThreadPoolExecutor getExecutor(String parameters) {
+        ThreadPool threadPool = ExtensionLoader.getExtensionLoader(ThreadPool.class).getExtension("priority");
+        return (PriorityThreadPoolExecutor) threadPool.getExecutor(URL.valueOf("dubbo://127.0.0.1:20880/demo?" + parameters));
+    }
+
+    private static Runnable await(final CountDownLatch latch) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            public void run() {
+                executed.add(name);
+            }
+        };
+    }
+
+    private void awaitExecuted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, executed.size());
+    }
+
+    @Test
+    public void testGetLane() {
+        assertEquals(PriorityThreadPoolExecutor.HIGH, PriorityThreadPoolExecutor.getLane("HIGH"));
+        assertEquals(PriorityThreadPoolExecutor.LOW, PriorityThreadPoolExecutor.getLane(" low"));
+        assertEquals(PriorityThreadPoolExecutor.NORMAL, PriorityThreadPoolExecutor.getLane("urgent"));
+        assertEquals(PriorityThreadPoolExecutor.NORMAL, PriorityThreadPoolExecutor.getLane(null));
+    }
+
+    @Test
+    public void testHighLaneFirst() throws Exception {
+        executor = getExecutor("threads=1&queues=0&priority.aging=0");
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(await(latch));
+        executor.execute(PriorityThreadPoolExecutor.LOW, record("low"));
+        executor.execute(record("normal"));
+        executor.execute(PriorityThreadPoolExecutor.HIGH, record("high0"));
+        executor.execute(PriorityThreadPoolExecutor.HIGH, record("high1"));
+        assertEquals("{high=2, normal=1, low=1}", executor.getQueueSizes().toString());
+        latch.countDown();
+        awaitExecuted(4);
+        assertEquals(Arrays.asList("high0", "high1", "normal", "low"), executed);
+        assertEquals(0, executor.getAgedCount());
+    }
+
+    @Test
+    public void testAgedLowLane() throws Exception {
+        executor = getExecutor("threads=1&queues=0&priority.aging=50");
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(await(latch));
+        executor.execute(PriorityThreadPoolExecutor.LOW, record("low"));
+        Thread.sleep(100);
+        executor.execute(PriorityThreadPoolExecutor.HIGH, record("high"));
+        latch.countDown();
+        awaitExecuted(2);
+        // 低优先级排队超过aging，先于后来的高优先级执行
+        assertEquals(Arrays.asList("low", "high"), executed);
+        assertEquals(1, executor.getAgedCount());
+    }
+
+    @Test
+    public void testQueuesPerLane() throws Exception {
+        executor = getExecutor("threads=1&queues=1");
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(await(latch));
+        executor.execute(PriorityThreadPoolExecutor.LOW, record("low0"));
+        try {
+            executor.execute(PriorityThreadPoolExecutor.LOW, record("low1"));
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+        executor.execute(PriorityThreadPoolExecutor.HIGH, record("high"));
+        latch.countDown();
+        awaitExecuted(2);
+        assertEquals(Arrays.asList("high", "low0"), executed);
+    }
+
+    @Test
+    public void testTimedOffer() throws Exception {
+        final PriorityLaneQueue queue = new PriorityLaneQueue(3, 1, 1, 0);
+        assertTrue(queue.offer(new LaneTask(PriorityThreadPoolExecutor.LOW, record("low0"))));
+        assertFalse(queue.offer(new LaneTask(PriorityThreadPoolExecutor.LOW, record("low1")), 50, TimeUnit.MILLISECONDS));
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    queue.take().run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).start();
+        // 队列空出位置后入队
+        assertTrue(queue.offer(new LaneTask(PriorityThreadPoolExecutor.LOW, record("low2")), 5, TimeUnit.SECONDS));
+        assertEquals(1, queue.size());
+        assertEquals(Arrays.asList("low0"), executed);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.threadpool.support.virtual;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+
+public class VirtualThreadPoolTest {
+
+    @Test
+    public void testExecute() throws Exception {
+        ThreadPool threadPool = ExtensionLoader.getExtensionLoader(ThreadPool.class).getExtension("virtual");
+        ExecutorService executor = (ExecutorService) threadPool.getExecutor(
+                URL.valueOf("dubbo://127.0.0.1:20880/demo?threadname=VirtualTest&threads=3"));
+        try {
+            final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+            final CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                public void run() {
+                    thread.set(Thread.currentThread());
+                    latch.countDown();
+                }
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(thread.get().getName().startsWith("VirtualTest"));
+            if (VirtualThreadPool.isSupported()) {
+                assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread.get()));
+            } else {
+                assertEquals(3, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(new NamedThreadFactory("TimerTest", true), 10, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void test_expire() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        TimerTask task = new TimerTask() {
+            public void run(Timeout timeout) {
+                latch.countDown();
+            }
+        };
+        // 跨越多轮的任务也要按时触发
+        timer.newTimeout(task, 5, TimeUnit.MILLISECONDS);
+        timer.newTimeout(task, 50, TimeUnit.MILLISECONDS);
+        Timeout t = timer.newTimeout(task, 200, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(3, TimeUnit.SECONDS));
+        assertTrue(t.isExpired());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void test_cancel() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        Timeout t = timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+                counter.incrementAndGet();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        assertTrue(t.cancel());
+        assertFalse(t.cancel());
+        assertTrue(t.isCancelled());
+        Thread.sleep(200);
+        assertEquals(0, counter.get());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void test_stop() throws Exception {
+        timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+            }
+        }, 10, TimeUnit.SECONDS);
+        assertEquals(1, timer.stop().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_newTimeoutAfterStop() throws Exception {
+        timer.start();
+        timer.stop();
+        timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+    }
+
+}
\ No newline at end of file
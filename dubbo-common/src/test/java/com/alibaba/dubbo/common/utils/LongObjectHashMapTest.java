@@ -0,0 +1,73 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void test_putGetRemove() throws Exception {
+        LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "a"));
+        assertEquals("a", map.put(1L, "b"));
+        assertEquals("b", map.get(1L));
+        assertNull(map.get(2L));
+        assertEquals(1, map.size());
+        assertEquals("b", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_putNull() throws Exception {
+        new LongObjectHashMap<String>().put(1L, null);
+    }
+
+    @Test
+    public void test_randomAgainstHashMap() throws Exception {
+        // 覆盖扩容和删除时的回移
+        LongObjectHashMap<Long> map = new LongObjectHashMap<Long>(2);
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i ++) {
+            long key = random.nextInt(2000) - 1000;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, key), map.put(key, key));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = -1000; key < 1000; key ++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(expected.size(), map.values().size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0L));
+    }
+
+}
\ No newline at end of file
@@ -51,6 +51,9 @@ public class MethodConfig extends AbstractMethodConfig {
     // 是否需要开启stiky策略
     private Boolean           sticky;
 
+    // 执行优先级：high、normal、low，需要服务端使用priority派发
+    private String            priority;
+
     // 是否需要返回
     private Boolean           isReturn;
     
@@ -149,6 +152,14 @@ public class MethodConfig extends AbstractMethodConfig {
         this.sticky = sticky;
     }
 
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
     @Parameter(key = Constants.ON_RETURN_INSTANCE_KEY, excluded = true, attribute = true)
     public Object getOnreturn() {
         return onreturn;
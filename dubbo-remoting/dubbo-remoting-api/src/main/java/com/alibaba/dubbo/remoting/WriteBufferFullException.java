@@ -0,0 +1,39 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting;
+
+/**
+ * 通道待写出的字节数超过高水位时抛出，发送方应稍后重试或换一个连接。
+ * 
+ * @see com.alibaba.dubbo.remoting.transport.PendingWriteCounter
+ * @export
+ */
+public class WriteBufferFullException extends RemotingException {
+
+    private static final long serialVersionUID = -4862197631053470158L;
+
+    private final long        pendingBytes;
+
+    public WriteBufferFullException(Channel channel, String message, long pendingBytes){
+        super(channel, message);
+        this.pendingBytes = pendingBytes;
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+
+}
\ No newline at end of file
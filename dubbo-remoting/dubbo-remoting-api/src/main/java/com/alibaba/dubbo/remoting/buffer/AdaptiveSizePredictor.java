@@ -0,0 +1,91 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.buffer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按key（如服务方法）预测编码后的消息大小，用来决定第一次分配的缓冲区容量。
+ * <p>
+ * 实际大小超过预测时立即放大到对应级别；连续多次明显偏小时才缩小一级，避免来回抖动。
+ * 并发更新时允许丢失个别样本。
+ */
+public class AdaptiveSizePredictor {
+
+    private static final int MAX_KEYS = 4096;
+
+    // 连续多少次小于预测的一半才缩小
+    private static final int SHRINK_THRESHOLD = 8;
+
+    private final int defaultSize;
+
+    private final ConcurrentMap<String, Prediction> predictions = new ConcurrentHashMap<String, Prediction>();
+
+    public AdaptiveSizePredictor(int defaultSize) {
+        this.defaultSize = ByteArrayPool.sizeClass(defaultSize);
+    }
+
+    public int predict(String key) {
+        Prediction prediction = key == null ? null : predictions.get(key);
+        return prediction == null ? defaultSize : prediction.size;
+    }
+
+    public void record(String key, int actualSize) {
+        if (key == null) {
+            return;
+        }
+        Prediction prediction = predictions.get(key);
+        if (prediction == null) {
+            if (predictions.size() >= MAX_KEYS) {
+                return;
+            }
+            prediction = new Prediction(defaultSize);
+            Prediction old = predictions.putIfAbsent(key, prediction);
+            if (old != null) {
+                prediction = old;
+            }
+        }
+        prediction.record(ByteArrayPool.sizeClass(actualSize));
+    }
+
+    private static final class Prediction {
+
+        volatile int size;
+
+        private int smaller;
+
+        Prediction(int size) {
+            this.size = size;
+        }
+
+        void record(int actual) {
+            int current = size;
+            if (actual > current) {
+                size = actual;
+                smaller = 0;
+            } else if (actual <= current >> 1) {
+                if (++ smaller >= SHRINK_THRESHOLD) {
+                    size = Math.max(actual, current >> 1);
+                    smaller = 0;
+                }
+            } else {
+                smaller = 0;
+            }
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.buffer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 按2的幂分级的byte[]池，最小256字节，最大1M，超过最大级别的数组不入池。
+ * <p>
+ * 每级最多缓存1M字节，总量有上限，池满时归还的数组直接丢弃交给GC。
+ */
+public class ByteArrayPool {
+
+    private static final int MIN_SHIFT = 8;
+
+    private static final int MAX_SHIFT = 20;
+
+    public static final int MIN_SIZE = 1 << MIN_SHIFT;
+
+    public static final int MAX_SIZE = 1 << MAX_SHIFT;
+
+    private static final int BYTES_PER_CLASS = 1 << 20;
+
+    private static final ByteArrayPool INSTANCE = new ByteArrayPool();
+
+    public static ByteArrayPool getInstance() {
+        return INSTANCE;
+    }
+
+    private final ArrayBlockingQueue<byte[]>[] classes;
+
+    @SuppressWarnings("unchecked")
+    public ByteArrayPool() {
+        classes = new ArrayBlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < classes.length; i ++) {
+            classes[i] = new ArrayBlockingQueue<byte[]>(Math.max(1, BYTES_PER_CLASS >> (i + MIN_SHIFT)));
+        }
+    }
+
+    /**
+     * @return 不小于minCapacity的所在级别大小
+     */
+    public static int sizeClass(int minCapacity) {
+        if (minCapacity <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        if (minCapacity > MAX_SIZE) {
+            return minCapacity;
+        }
+        return Integer.highestOneBit(minCapacity - 1) << 1;
+    }
+
+    private static int indexOf(int size) {
+        return Integer.numberOfTrailingZeros(size) - MIN_SHIFT;
+    }
+
+    /**
+     * 取一个长度不小于minCapacity的数组，内容未清零。
+     */
+    public byte[] acquire(int minCapacity) {
+        int size = sizeClass(minCapacity);
+        if (size > MAX_SIZE) {
+            return new byte[size];
+        }
+        byte[] array = classes[indexOf(size)].poll();
+        return array != null ? array : new byte[size];
+    }
+
+    /**
+     * 归还数组，不是池中级别大小的数组直接丢弃。
+     */
+    public void release(byte[] array) {
+        if (array == null) {
+            return;
+        }
+        int size = array.length;
+        if (size < MIN_SIZE || size > MAX_SIZE || (size & (size - 1)) != 0) {
+            return;
+        }
+        classes[indexOf(size)].offer(array);
+    }
+
+}
\ No newline at end of file
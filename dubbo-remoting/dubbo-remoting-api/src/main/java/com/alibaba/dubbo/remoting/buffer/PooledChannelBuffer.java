@@ -0,0 +1,253 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 底层数组取自{@link ByteArrayPool}的可扩容缓冲区。
+ * <p>
+ * 扩容时从池中取更大一级的数组并归还旧数组，用完后须调用{@link #release()}归还，
+ * 归还后不能再访问。读写非线程安全，引用计数可以在其他线程中释放。
+ */
+public class PooledChannelBuffer extends AbstractChannelBuffer {
+
+    private final ByteArrayPool pool;
+
+    private HeapChannelBuffer buffer;
+
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+
+    // 由PooledChannelBufferFactory抽样设置，用于泄漏检测
+    PooledChannelBufferFactory.Leak leak;
+
+    public PooledChannelBuffer() {
+        this(0);
+    }
+
+    public PooledChannelBuffer(int estimatedLength) {
+        this(estimatedLength, ByteArrayPool.getInstance());
+    }
+
+    public PooledChannelBuffer(int estimatedLength, ByteArrayPool pool) {
+        if (estimatedLength < 0) {
+            throw new IllegalArgumentException("estimatedLength: " + estimatedLength);
+        }
+        if (pool == null) {
+            throw new NullPointerException("pool");
+        }
+        this.pool = pool;
+        // 容量为0时推迟到第一次写入再从池中取
+        buffer = estimatedLength == 0 ? (HeapChannelBuffer) ChannelBuffers.EMPTY_BUFFER
+                : new HeapChannelBuffer(pool.acquire(estimatedLength));
+    }
+
+    private PooledChannelBuffer(ByteArrayPool pool, HeapChannelBuffer buffer, int readerIndex, int writerIndex) {
+        this.pool = pool;
+        this.buffer = buffer;
+        setIndex(readerIndex, writerIndex);
+    }
+
+    /**
+     * 把已写入的数据连同底层数组转给一个新的缓冲区，本缓冲区清空后可以继续写入，
+     * 用于编码中途先发出已写完的部分。返回的缓冲区须单独release.
+     */
+    public PooledChannelBuffer detach() {
+        PooledChannelBuffer detached = new PooledChannelBuffer(pool, buffer, readerIndex(), writerIndex());
+        buffer = (HeapChannelBuffer) ChannelBuffers.EMPTY_BUFFER;
+        setIndex(0, 0);
+        return detached;
+    }
+
+    @Override
+    public void ensureWritableBytes(int minWritableBytes) {
+        if (minWritableBytes <= writableBytes()) {
+            return;
+        }
+        byte[] array = pool.acquire(writerIndex() + minWritableBytes);
+        HeapChannelBuffer newBuffer = new HeapChannelBuffer(array);
+        newBuffer.setBytes(0, buffer, 0, writerIndex());
+        pool.release(buffer.array());
+        buffer = newBuffer;
+    }
+
+    /**
+     * 增加一次引用，每次retain都要对应一次release。
+     */
+    public PooledChannelBuffer retain() {
+        for (;;) {
+            int count = refCnt.get();
+            if (count <= 0) {
+                throw new IllegalStateException("buffer already released");
+            }
+            if (refCnt.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    /**
+     * 减少一次引用，减到0时把底层数组还给池。
+     *
+     * @return 是否已归还
+     */
+    public boolean release() {
+        int count = refCnt.decrementAndGet();
+        if (count > 0) {
+            return false;
+        }
+        if (count < 0) {
+            refCnt.incrementAndGet();
+            throw new IllegalStateException("buffer already released");
+        }
+        byte[] array = buffer.array();
+        buffer = (HeapChannelBuffer) ChannelBuffers.EMPTY_BUFFER;
+        setIndex(0, 0);
+        pool.release(array);
+        if (leak != null) {
+            leak.close();
+        }
+        return true;
+    }
+
+    @Override
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public ChannelBuffer copy(int index, int length) {
+        return buffer.copy(index, length);
+    }
+
+    @Override
+    public ChannelBufferFactory factory() {
+        return HeapChannelBufferFactory.getInstance();
+    }
+
+    @Override
+    public byte getByte(int index) {
+        return buffer.getByte(index);
+    }
+
+    @Override
+    public void getBytes(int index, byte[] dst, int dstIndex, int length) {
+        buffer.getBytes(index, dst, dstIndex, length);
+    }
+
+    @Override
+    public void getBytes(int index, ByteBuffer dst) {
+        buffer.getBytes(index, dst);
+    }
+
+    @Override
+    public void getBytes(int index, ChannelBuffer dst, int dstIndex, int length) {
+        buffer.getBytes(index, dst, dstIndex, length);
+    }
+
+    @Override
+    public void getBytes(int index, OutputStream dst, int length) throws IOException {
+        buffer.getBytes(index, dst, length);
+    }
+
+    @Override
+    public boolean isDirect() {
+        return false;
+    }
+
+    @Override
+    public void setByte(int index, int value) {
+        buffer.setByte(index, value);
+    }
+
+    @Override
+    public void setBytes(int index, byte[] src, int srcIndex, int length) {
+        buffer.setBytes(index, src, srcIndex, length);
+    }
+
+    @Override
+    public void setBytes(int index, ByteBuffer src) {
+        buffer.setBytes(index, src);
+    }
+
+    @Override
+    public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
+        buffer.setBytes(index, src, srcIndex, length);
+    }
+
+    @Override
+    public int setBytes(int index, InputStream src, int length) throws IOException {
+        return buffer.setBytes(index, src, length);
+    }
+
+    @Override
+    public ByteBuffer toByteBuffer(int index, int length) {
+        return buffer.toByteBuffer(index, length);
+    }
+
+    @Override
+    public void writeByte(int value) {
+        ensureWritableBytes(1);
+        super.writeByte(value);
+    }
+
+    @Override
+    public void writeBytes(byte[] src, int srcIndex, int length) {
+        ensureWritableBytes(length);
+        super.writeBytes(src, srcIndex, length);
+    }
+
+    @Override
+    public void writeBytes(ChannelBuffer src, int srcIndex, int length) {
+        ensureWritableBytes(length);
+        super.writeBytes(src, srcIndex, length);
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer src) {
+        ensureWritableBytes(src.remaining());
+        super.writeBytes(src);
+    }
+
+    @Override
+    public int writeBytes(InputStream in, int length) throws IOException {
+        ensureWritableBytes(length);
+        return super.writeBytes(in, length);
+    }
+
+    @Override
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    @Override
+    public boolean hasArray() {
+        return true;
+    }
+
+    @Override
+    public int arrayOffset() {
+        return 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,149 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.buffer;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
+
+/**
+ * 分配{@link PooledChannelBuffer}的工厂，URL上配置buffer.factory=pooled时由各传输层的codec适配器使用。
+ * <p>
+ * 数组按{@link ByteArrayPool}的2的幂分级，所有线程共用一个有总量上限的池，不按线程缓存：
+ * 线程缓存要给每个IO线程和业务线程都留一份，线程数多时占用的内存没有上限。
+ * 每隔若干个缓冲区抽样记录分配位置，被GC时还没有release的打印泄漏日志。
+ * <p>
+ * 池化的是堆内byte[]而不是堆外内存：mina和grizzly都要把编码结果拷贝到自己的缓冲区，
+ * 堆外内存在这条路径上省不掉拷贝，堆内数组的分配和回收也更便宜。
+ */
+public class PooledChannelBufferFactory implements ChannelBufferFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledChannelBufferFactory.class);
+
+    public static final String NAME = "pooled";
+
+    private static final int DEFAULT_LEAK_SAMPLING = 128;
+
+    private static final PooledChannelBufferFactory INSTANCE = new PooledChannelBufferFactory();
+
+    public static PooledChannelBufferFactory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * url是否配置了池化缓冲区.
+     */
+    public static boolean isPooled(URL url) {
+        return NAME.equals(url.getParameter(Constants.BUFFER_FACTORY_KEY));
+    }
+
+    private final ByteArrayPool pool = new ByteArrayPool();
+
+    private final int leakSampling;
+
+    private final AtomicInteger allocations = new AtomicInteger();
+
+    private final AtomicLong leaks = new AtomicLong();
+
+    private final ReferenceQueue<PooledChannelBuffer> collected = new ReferenceQueue<PooledChannelBuffer>();
+
+    private final Set<Leak> tracked = new ConcurrentHashSet<Leak>();
+
+    public PooledChannelBufferFactory() {
+        this(DEFAULT_LEAK_SAMPLING);
+    }
+
+    /**
+     * @param leakSampling 每多少个缓冲区抽样一个做泄漏检测，不大于0表示不检测
+     */
+    public PooledChannelBufferFactory(int leakSampling) {
+        this.leakSampling = leakSampling;
+    }
+
+    public PooledChannelBuffer getBuffer(int capacity) {
+        PooledChannelBuffer buffer = new PooledChannelBuffer(capacity, pool);
+        if (leakSampling > 0 && allocations.getAndIncrement() % leakSampling == 0) {
+            reportLeaks();
+            buffer.leak = new Leak(buffer);
+        }
+        return buffer;
+    }
+
+    public ChannelBuffer getBuffer(byte[] array, int offset, int length) {
+        PooledChannelBuffer buffer = getBuffer(length);
+        buffer.writeBytes(array, offset, length);
+        return buffer;
+    }
+
+    public ChannelBuffer getBuffer(ByteBuffer nioBuffer) {
+        PooledChannelBuffer buffer = getBuffer(nioBuffer.remaining());
+        int pos = nioBuffer.position();
+        buffer.writeBytes(nioBuffer);
+        nioBuffer.position(pos);
+        return buffer;
+    }
+
+    /**
+     * 释放buffer，不是池化缓冲区的忽略.
+     */
+    public static void release(ChannelBuffer buffer) {
+        if (buffer instanceof PooledChannelBuffer) {
+            ((PooledChannelBuffer) buffer).release();
+        }
+    }
+
+    /**
+     * 检测到的泄漏数.
+     */
+    public long getLeakCount() {
+        return leaks.get();
+    }
+
+    private void reportLeaks() {
+        Leak leak;
+        while ((leak = (Leak) collected.poll()) != null) {
+            if (tracked.remove(leak)) {
+                leaks.incrementAndGet();
+                logger.error("LEAK: PooledChannelBuffer was garbage-collected before release() was called, "
+                        + "the pooled array is lost. Allocated at:", leak.allocation);
+            }
+        }
+    }
+
+    final class Leak extends PhantomReference<PooledChannelBuffer> {
+
+        private final Throwable allocation = new Throwable("buffer allocation");
+
+        Leak(PooledChannelBuffer buffer) {
+            super(buffer, collected);
+            tracked.add(this);
+        }
+
+        void close() {
+            tracked.remove(this);
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.compress;
+
+import java.io.IOException;
+
+import com.alibaba.dubbo.common.extension.SPI;
+
+/**
+ * 消息体压缩 (SPI, Singleton, ThreadSafe)
+ */
+@SPI(Lz4Compressor.NAME)
+public interface Compressor {
+
+    /**
+     * 写在压缩后的消息体前面，解码时据此选择实现，不同实现不能重复.
+     *
+     * @return compressor id
+     */
+    byte getId();
+
+    /**
+     * 压缩src中的length个字节.
+     *
+     * @return 压缩后的数据
+     */
+    byte[] compress(byte[] src, int offset, int length) throws IOException;
+
+    /**
+     * 解压src中的length个字节，结果正好填满dst.
+     *
+     * @param dst 长度为原始数据的长度
+     * @throws IOException 数据损坏或解压后长度与dst不符
+     */
+    void decompress(byte[] src, int offset, int length, byte[] dst) throws IOException;
+
+}
\ No newline at end of file
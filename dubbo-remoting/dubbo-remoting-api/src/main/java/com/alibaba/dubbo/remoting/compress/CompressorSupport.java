@@ -0,0 +1,122 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.compress;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.StringUtils;
+
+/**
+ * 按url或id查找Compressor，并统计进程内所有通道的压缩率和压缩耗时.
+ */
+public class CompressorSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompressorSupport.class);
+
+    private static final Map<Byte, Compressor> ID_COMPRESSOR_MAP = new HashMap<Byte, Compressor>();
+
+    private static final AtomicLong compressCount    = new AtomicLong();
+
+    private static final AtomicLong compressInBytes  = new AtomicLong();
+
+    private static final AtomicLong compressOutBytes = new AtomicLong();
+
+    private static final AtomicLong compressNanos    = new AtomicLong();
+
+    private static final AtomicLong decompressCount  = new AtomicLong();
+
+    private static final AtomicLong decompressNanos  = new AtomicLong();
+
+    static {
+        ExtensionLoader<Compressor> loader = ExtensionLoader.getExtensionLoader(Compressor.class);
+        Set<String> supportedExtensions = loader.getSupportedExtensions();
+        for (String name : supportedExtensions) {
+            Compressor compressor = loader.getExtension(name);
+            byte idByte = compressor.getId();
+            if (ID_COMPRESSOR_MAP.containsKey(idByte)) {
+                logger.error("Compressor extension " + compressor.getClass().getName()
+                                 + " has duplicate id to Compressor extension "
+                                 + ID_COMPRESSOR_MAP.get(idByte).getClass().getName()
+                                 + ", ignore this Compressor extension");
+                continue;
+            }
+            ID_COMPRESSOR_MAP.put(idByte, compressor);
+        }
+    }
+
+    private CompressorSupport() {
+    }
+
+    public static Compressor getCompressorById(byte id) {
+        return ID_COMPRESSOR_MAP.get(id);
+    }
+
+    /**
+     * @return url上配置的压缩算法，没有配置返回null
+     */
+    public static Compressor getCompressor(URL url) {
+        String name = url == null ? null : url.getParameter(Constants.COMPRESSOR_KEY);
+        if (StringUtils.isEmpty(name)) {
+            return null;
+        }
+        return ExtensionLoader.getExtensionLoader(Compressor.class).getExtension(name);
+    }
+
+    public static void recordCompress(int inBytes, int outBytes, long nanos) {
+        compressCount.incrementAndGet();
+        compressInBytes.addAndGet(inBytes);
+        compressOutBytes.addAndGet(outBytes);
+        compressNanos.addAndGet(nanos);
+    }
+
+    public static void recordDecompress(long nanos) {
+        decompressCount.incrementAndGet();
+        decompressNanos.addAndGet(nanos);
+    }
+
+    public static long getCompressCount() {
+        return compressCount.get();
+    }
+
+    /**
+     * 压缩后与压缩前的字节数之比，包括压缩后没有变小、按原样发送的消息.
+     */
+    public static double getCompressRatio() {
+        long in = compressInBytes.get();
+        return in == 0 ? 1.0 : (double) compressOutBytes.get() / in;
+    }
+
+    public static long getCompressMillis() {
+        return compressNanos.get() / 1000000;
+    }
+
+    public static long getDecompressCount() {
+        return decompressCount.get();
+    }
+
+    public static long getDecompressMillis() {
+        return decompressNanos.get() / 1000000;
+    }
+
+}
\ No newline at end of file
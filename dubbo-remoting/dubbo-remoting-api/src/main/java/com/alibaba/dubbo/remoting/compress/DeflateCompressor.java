@@ -0,0 +1,75 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.compress;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
+
+/**
+ * JDK自带的deflate，压缩率比lz4高，CPU开销也大得多，适合带宽比CPU贵的跨机房调用.
+ */
+public class DeflateCompressor implements Compressor {
+
+    public static final String NAME = "deflate";
+
+    public byte getId() {
+        return 2;
+    }
+
+    public byte[] compress(byte[] src, int offset, int length) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(src, offset, length);
+            deflater.finish();
+            UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] buf = new byte[8192];
+            while (! deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public void decompress(byte[] src, int offset, int length, byte[] dst) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(src, offset, length);
+            int n = 0;
+            while (n < dst.length) {
+                int count = inflater.inflate(dst, n, dst.length - n);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n != dst.length) {
+                throw new IOException("Malformed deflate data, expect " + dst.length + " bytes but got " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Malformed deflate data: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
\ No newline at end of file
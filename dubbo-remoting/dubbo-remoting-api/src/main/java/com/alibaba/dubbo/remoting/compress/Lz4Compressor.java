@@ -0,0 +1,195 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.compress;
+
+import java.io.IOException;
+
+import com.alibaba.dubbo.common.io.Bytes;
+
+/**
+ * LZ4块格式的纯Java实现，不依赖第三方包：单次贪心匹配，4096项的哈希表.
+ * <p>
+ * 每个序列为：token（高4位字面量长度，低4位匹配长度减4），字面量长度扩展字节，字面量，
+ * 2字节小端偏移，匹配长度扩展字节。最后一个序列只有字面量。
+ */
+public class Lz4Compressor implements Compressor {
+
+    public static final String NAME          = "lz4";
+
+    private static final int   MIN_MATCH     = 4;
+
+    private static final int   HASH_LOG      = 12;
+
+    // 最后5个字节必须是字面量，最后一个匹配必须在结尾12字节之前开始
+    private static final int   LAST_LITERALS = 5;
+
+    private static final int   MF_LIMIT      = 12;
+
+    private static final int   MAX_DISTANCE  = 0xffff;
+
+    // 连续未匹配时逐渐加大步长，不可压缩的数据很快扫完
+    private static final int   SKIP_SHIFT    = 6;
+
+    public byte getId() {
+        return 1;
+    }
+
+    public byte[] compress(byte[] src, int offset, int length) throws IOException {
+        byte[] dst = new byte[length + length / 255 + 16];
+        int end = offset + length, anchor = offset, dp = 0;
+        if (length >= MF_LIMIT + 1) {
+            int[] table = new int[1 << HASH_LOG];
+            int matchLimit = end - LAST_LITERALS, mfLimit = end - MF_LIMIT;
+            int sp = offset;
+            while (sp <= mfLimit) {
+                int h = hash(readInt(src, sp));
+                int ref = table[h];
+                table[h] = sp;
+                if (ref < offset || ref >= sp || sp - ref > MAX_DISTANCE || readInt(src, ref) != readInt(src, sp)) {
+                    sp += 1 + ((sp - anchor) >>> SKIP_SHIFT);
+                    continue;
+                }
+                while (sp > anchor && ref > offset && src[sp - 1] == src[ref - 1]) {
+                    sp --;
+                    ref --;
+                }
+                int matchLength = MIN_MATCH;
+                while (sp + matchLength < matchLimit && src[sp + matchLength] == src[ref + matchLength]) {
+                    matchLength ++;
+                }
+                dp = writeSequence(dst, dp, src, anchor, sp - anchor, sp - ref, matchLength);
+                sp += matchLength;
+                anchor = sp;
+                if (sp <= mfLimit) {
+                    table[hash(readInt(src, sp - 2))] = sp - 2;
+                }
+            }
+        }
+        dp = writeLiterals(dst, dp, src, anchor, end - anchor);
+        return Bytes.copyOf(dst, dp);
+    }
+
+    public void decompress(byte[] src, int offset, int length, byte[] dst) throws IOException {
+        int sp = offset, end = offset + length, dp = 0;
+        try {
+            while (true) {
+                if (sp >= end) {
+                    throw new IOException("Malformed lz4 data, unexpected end of input");
+                }
+                int token = src[sp ++] & 0xff;
+                int literalLength = token >>> 4;
+                if (literalLength == 0xf) {
+                    int b;
+                    do {
+                        b = src[sp ++] & 0xff;
+                        literalLength += b;
+                    } while (b == 0xff);
+                }
+                if (literalLength > end - sp || literalLength > dst.length - dp) {
+                    throw new IOException("Malformed lz4 data, literal out of range at " + (sp - offset));
+                }
+                System.arraycopy(src, sp, dst, dp, literalLength);
+                sp += literalLength;
+                dp += literalLength;
+                if (sp == end) {
+                    break;
+                }
+                int distance = (src[sp ++] & 0xff) | ((src[sp ++] & 0xff) << 8);
+                int matchLength = token & 0xf;
+                if (matchLength == 0xf) {
+                    int b;
+                    do {
+                        b = src[sp ++] & 0xff;
+                        matchLength += b;
+                    } while (b == 0xff);
+                }
+                matchLength += MIN_MATCH;
+                int ref = dp - distance;
+                if (distance == 0 || ref < 0 || matchLength > dst.length - dp) {
+                    throw new IOException("Malformed lz4 data, match out of range at " + (sp - offset));
+                }
+                if (distance >= matchLength) {
+                    System.arraycopy(dst, ref, dst, dp, matchLength);
+                    dp += matchLength;
+                } else {
+                    // 重叠的匹配只能逐字节复制
+                    for (int i = 0; i < matchLength; i ++) {
+                        dst[dp ++] = dst[ref ++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed lz4 data, unexpected end of input");
+        }
+        if (dp != dst.length) {
+            throw new IOException("Malformed lz4 data, expect " + dst.length + " bytes but got " + dp);
+        }
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | (b[i + 3] << 24);
+    }
+
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int writeSequence(byte[] dst, int dp, byte[] src, int literalOffset, int literalLength,
+                                     int distance, int matchLength) {
+        int tokenIndex = dp ++;
+        int token;
+        if (literalLength >= 0xf) {
+            token = 0xf << 4;
+            dp = writeLength(dst, dp, literalLength - 0xf);
+        } else {
+            token = literalLength << 4;
+        }
+        System.arraycopy(src, literalOffset, dst, dp, literalLength);
+        dp += literalLength;
+        dst[dp ++] = (byte) distance;
+        dst[dp ++] = (byte) (distance >>> 8);
+        int length = matchLength - MIN_MATCH;
+        if (length >= 0xf) {
+            token |= 0xf;
+            dp = writeLength(dst, dp, length - 0xf);
+        } else {
+            token |= length;
+        }
+        dst[tokenIndex] = (byte) token;
+        return dp;
+    }
+
+    private static int writeLiterals(byte[] dst, int dp, byte[] src, int literalOffset, int literalLength) {
+        if (literalLength >= 0xf) {
+            dst[dp ++] = (byte) (0xf << 4);
+            dp = writeLength(dst, dp, literalLength - 0xf);
+        } else {
+            dst[dp ++] = (byte) (literalLength << 4);
+        }
+        System.arraycopy(src, literalOffset, dst, dp, literalLength);
+        return dp + literalLength;
+    }
+
+    private static int writeLength(byte[] dst, int dp, int length) {
+        while (length >= 0xff) {
+            dst[dp ++] = (byte) 0xff;
+            length -= 0xff;
+        }
+        dst[dp ++] = (byte) length;
+        return dp;
+    }
+
+}
\ No newline at end of file
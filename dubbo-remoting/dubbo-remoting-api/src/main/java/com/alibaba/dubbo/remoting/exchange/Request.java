@@ -45,6 +45,9 @@ public class Request {
 
     private Object  mData;
 
+    // 按本地时钟的截止时间，0为没有截止时间
+    private long    mDeadline;
+
     public Request() {
         mId = newId();
     }
@@ -98,6 +101,21 @@ public class Request {
         mData = msg;
     }
 
+    public long getDeadline() {
+        return mDeadline;
+    }
+
+    public void setDeadline(long deadline) {
+        mDeadline = deadline;
+    }
+
+    /**
+     * 已过截止时间，调用方不会再等待结果.
+     */
+    public boolean isExpired() {
+        return mDeadline > 0 && System.currentTimeMillis() > mDeadline;
+    }
+
     public boolean isHeartbeat() {
         return mEvent && HEARTBEAT_EVENT == mData;
     }
@@ -42,6 +42,11 @@ public class Response {
      */
     public static final byte SERVER_TIMEOUT    = 31;
 
+    /**
+     * channel inactive, directly return the unfinished requests.
+     */
+    public static final byte CHANNEL_INACTIVE  = 35;
+
     /**
      * request format error.
      */
@@ -72,6 +77,11 @@ public class Response {
      */
     public static final byte CLIENT_ERROR      = 90;
 
+    /**
+     * server overloaded, the request is shed without being executed.
+     */
+    public static final byte SERVER_OVERLOADED = 100;
+
     private long             mId               = 0;
 
     private String           mVersion;
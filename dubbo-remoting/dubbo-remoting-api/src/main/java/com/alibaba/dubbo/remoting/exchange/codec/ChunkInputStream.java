@@ -0,0 +1,327 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.io.Bytes;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+
+/**
+ * 分片消息的消息体，按到达顺序保存各分片的拷贝，与通道的读缓冲区无关。
+ * 读完一个分片就丢掉它的引用，已读的部分即可回收.
+ * <p>
+ * 反序列化在业务线程进行时，收到第一个分片就把消息交出去，业务线程边收边读，
+ * 没有数据时等待下一个分片，最多等待timeout毫秒。
+ * 每个通道同时在收的消息数和还没读走的字节数都有上限，超过时该消息以失败结束.
+ */
+public final class ChunkInputStream extends InputStream {
+
+    private static final String PENDING_KEY = ChunkInputStream.class.getName();
+
+    private final Pending            pending;
+
+    private final int                timeout;
+
+    private final boolean            streaming;
+
+    private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+
+    private byte[]                   current;
+
+    private int                      position;
+
+    // 已收到的字节数，只在解码线程中访问
+    private long                     size;
+
+    private long                     available;
+
+    private boolean                  finished;
+
+    private boolean                  closed;
+
+    private IOException              failure;
+
+    private ChunkInputStream(Pending pending, int timeout, boolean streaming) {
+        this.pending = pending;
+        this.timeout = timeout;
+        this.streaming = streaming;
+    }
+
+    /**
+     * 取出帧所属消息未收完的分片流，没有则返回null.
+     * <p>
+     * 只在通道的解码线程中调用，下同.
+     */
+    static ChunkInputStream lookup(Channel channel, byte[] header) {
+        Pending pending = (Pending) channel.getAttribute(PENDING_KEY);
+        return pending == null ? null : pending.get(header).get(Bytes.bytes2long(header, 4));
+    }
+
+    /**
+     * 为消息的第一个分片创建分片流。同时在收的消息数超过上限时，流仍然登记在通道上以跳过后续分片，
+     * 但已经失败并抛出异常.
+     *
+     * @param streaming 消息是否在收完前交给业务线程读取
+     */
+    static ChunkInputStream open(Channel channel, byte[] header, boolean streaming) throws IOException {
+        Pending pending = (Pending) channel.getAttribute(PENDING_KEY);
+        if (pending == null) {
+            pending = new Pending(channel.getUrl());
+            channel.setAttribute(PENDING_KEY, pending);
+        }
+        URL url = channel.getUrl();
+        int timeout = url == null ? Constants.DEFAULT_TIMEOUT
+                : url.getPositiveParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+        ChunkInputStream chunks = new ChunkInputStream(pending, timeout, streaming);
+        pending.get(header).put(Bytes.bytes2long(header, 4), chunks);
+        if (pending.maxStreams > 0 && pending.size() > pending.maxStreams) {
+            IOException e = new IOException("Too many chunked messages in progress: " + pending.size()
+                    + ", max " + Constants.CHUNK_STREAMS_KEY + ": " + pending.maxStreams + ", channel: " + channel);
+            chunks.fail(e);
+            throw e;
+        }
+        return chunks;
+    }
+
+    /**
+     * 收到最后一帧后从通道上移除.
+     */
+    static void remove(Channel channel, byte[] header) {
+        Pending pending = (Pending) channel.getAttribute(PENDING_KEY);
+        if (pending != null) {
+            pending.get(header).remove(Bytes.bytes2long(header, 4));
+        }
+    }
+
+    /**
+     * 读入一个分片。消息已失败或读取方已关闭时直接跳过；
+     * 通道上还没读走的字节数超过上限时不读入并抛出异常.
+     */
+    void append(ChannelBuffer buffer, int length) throws IOException {
+        size += length;
+        synchronized (this) {
+            if (failure != null || closed) {
+                buffer.skipBytes(length);
+                return;
+            }
+            long bytes = pending.bytes.addAndGet(length);
+            if (pending.maxBytes > 0 && bytes > pending.maxBytes) {
+                pending.bytes.addAndGet(- length);
+                throw new IOException("Chunked data pending on the channel too large: " + bytes
+                        + ", max " + Constants.CHUNK_BUFFER_KEY + ": " + pending.maxBytes);
+            }
+            byte[] chunk = new byte[length];
+            buffer.readBytes(chunk);
+            chunks.add(chunk);
+            available += length;
+            notifyAll();
+        }
+    }
+
+    /**
+     * 已收到最后一个分片.
+     */
+    synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * 消息以失败结束，丢弃已收到的分片，读取方收到该异常.
+     */
+    synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            discardChunks();
+            notifyAll();
+        }
+    }
+
+    synchronized boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * 消息是否在收完前已交给业务线程.
+     */
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * 是否已收到最后一个分片，之后读取不会再等待.
+     */
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 已收到的消息体总字节数.
+     */
+    long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (! nextChunk()) {
+            return -1;
+        }
+        available --;
+        return current[position ++] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (! nextChunk()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        available -= n;
+        return n;
+    }
+
+    @Override
+    public synchronized long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && nextChunk()) {
+            int step = (int) Math.min(n - skipped, current.length - position);
+            position += step;
+            skipped += step;
+        }
+        available -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public synchronized int available() {
+        return (int) Math.min(available, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 不再读取，丢弃已收到的分片，后续分片到达时直接跳过.
+     */
+    @Override
+    public synchronized void close() {
+        if (! closed) {
+            closed = true;
+            discardChunks();
+            notifyAll();
+        }
+    }
+
+    private boolean nextChunk() throws IOException {
+        while (current == null || position == current.length) {
+            if (current != null) {
+                pending.bytes.addAndGet(- current.length);
+                current = null;
+            }
+            if (failure != null) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            if (closed) {
+                return false;
+            }
+            if (chunks.isEmpty()) {
+                if (finished) {
+                    return false;
+                }
+                awaitChunk();
+                continue;
+            }
+            current = chunks.removeFirst();
+            position = 0;
+        }
+        return true;
+    }
+
+    private void awaitChunk() throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (chunks.isEmpty() && ! finished && ! closed && failure == null) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                // 读取方放弃，后续分片直接跳过
+                close();
+                throw new IOException("Waiting for the next chunk timed out after " + timeout + "ms");
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the next chunk");
+            }
+        }
+    }
+
+    private void discardChunks() {
+        long bytes = current == null ? 0 : current.length;
+        for (byte[] chunk : chunks) {
+            bytes += chunk.length;
+        }
+        pending.bytes.addAndGet(- bytes);
+        chunks.clear();
+        current = null;
+        available = 0;
+    }
+
+    /**
+     * 一个通道上未收完的分片消息，请求和响应的id各自独立.
+     */
+    private static final class Pending {
+
+        final Map<Long, ChunkInputStream> requests  = new HashMap<Long, ChunkInputStream>();
+
+        final Map<Long, ChunkInputStream> responses = new HashMap<Long, ChunkInputStream>();
+
+        // 还没读走的字节数，解码线程增加，业务线程读完分片后减少
+        final AtomicLong                  bytes     = new AtomicLong();
+
+        final int                         maxStreams;
+
+        final long                        maxBytes;
+
+        Pending(URL url) {
+            maxStreams = url == null ? Constants.DEFAULT_CHUNK_STREAMS
+                    : url.getParameter(Constants.CHUNK_STREAMS_KEY, Constants.DEFAULT_CHUNK_STREAMS);
+            maxBytes = url == null ? Constants.DEFAULT_CHUNK_BUFFER
+                    : url.getParameter(Constants.CHUNK_BUFFER_KEY, Constants.DEFAULT_CHUNK_BUFFER);
+        }
+
+        Map<Long, ChunkInputStream> get(byte[] header) {
+            return (header[2] & ExchangeCodec.FLAG_REQUEST) != 0 ? requests : responses;
+        }
+
+        int size() {
+            return requests.size() + responses.size();
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,171 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.codec;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.io.Bytes;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+
+/**
+ * 把消息体直接写成帧：每写满chunkSize字节就补上当前帧头（长度带CHUNK_MORE_MASK）并预留下一个帧头，
+ * close时写入最后一帧的帧头。消息体不超过chunkSize时与普通帧完全相同.
+ * <p>
+ * buffer实现了{@link Flushable}时，每写完一个分片就flush，由传输层把已写完的分片发出去并清空buffer，
+ * 大消息不必整条留在内存中。不支持的传输层仍在encode结束后一次写出.
+ */
+final class ChunkOutputStream extends OutputStream {
+
+    private final ChannelBuffer buffer;
+
+    private final byte[]        header;
+
+    private final int           chunkSize;
+
+    // 分片消息体的总大小上限，小于等于0不限制
+    private final int           payload;
+
+    // 消息在buffer中的起始位置
+    private final int           startIndex;
+
+    // 当前帧头在buffer中的位置
+    private int                 headerIndex;
+
+    // 当前帧已写入的消息体字节数
+    private int                 chunkLength;
+
+    private int                 writtenBytes;
+
+    private int                 chunks = 1;
+
+    // 是否已有分片发出
+    private boolean             flushed;
+
+    private boolean             closed;
+
+    /**
+     * @param header 帧头模板，除长度外每个分片都相同
+     * @param chunkSize 分片大小，小于等于0不分片
+     * @param payload 分片消息体的总大小上限，小于等于0不限制
+     */
+    ChunkOutputStream(ChannelBuffer buffer, byte[] header, int chunkSize, int payload) {
+        this.buffer = buffer;
+        this.header = header;
+        this.chunkSize = chunkSize > 0 ? chunkSize : Integer.MAX_VALUE;
+        this.payload = payload;
+        this.startIndex = buffer.writerIndex();
+        this.headerIndex = startIndex;
+        buffer.ensureWritableBytes(ExchangeCodec.HEADER_LENGTH);
+        buffer.writerIndex(headerIndex + ExchangeCodec.HEADER_LENGTH);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (chunkLength == chunkSize) {
+            nextChunk();
+        }
+        buffer.writeByte((byte) b);
+        chunkLength ++;
+        writtenBytes ++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (chunkLength == chunkSize) {
+                nextChunk();
+            }
+            int n = Math.min(len, chunkSize - chunkLength);
+            buffer.writeBytes(b, off, n);
+            off += n;
+            len -= n;
+            chunkLength += n;
+            writtenBytes += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (! closed) {
+            closed = true;
+            writeHeader(chunkLength);
+        }
+    }
+
+    /**
+     * 编码失败时调用。还没有分片发出时撤回已写入的数据；已经发出过分片时，
+     * 改为写出一个长度为0、带中止标记的最后一帧，对端据此丢弃这条消息.
+     */
+    void abort() {
+        closed = true;
+        if (! flushed) {
+            buffer.writerIndex(startIndex);
+            return;
+        }
+        buffer.writerIndex(headerIndex + ExchangeCodec.HEADER_LENGTH);
+        ExchangeCodec.setChunkAborted(header);
+        writeHeader(0);
+        try {
+            ((Flushable) buffer).flush();
+        } catch (IOException e) {
+            // 通道已经出错，以编码失败的原因为准
+        }
+    }
+
+    /**
+     * 所有分片的消息体总字节数，不含帧头.
+     */
+    int writtenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * 最大一帧的字节数，含帧头.
+     */
+    int maxFrameBytes() {
+        return ExchangeCodec.HEADER_LENGTH + Math.min(writtenBytes, chunkSize);
+    }
+
+    boolean isChunked() {
+        return chunks > 1;
+    }
+
+    private void nextChunk() throws IOException {
+        // 后面还有数据，已写满上限就不必等编码完再检查
+        if (payload > 0 && writtenBytes >= payload) {
+            throw new IOException("Chunked data length exceeds max " + Constants.CHUNK_PAYLOAD_KEY + ": " + payload);
+        }
+        writeHeader(chunkLength | ExchangeCodec.CHUNK_MORE_MASK);
+        if (buffer instanceof Flushable) {
+            ((Flushable) buffer).flush();
+            flushed = true;
+        }
+        headerIndex = buffer.writerIndex();
+        buffer.ensureWritableBytes(ExchangeCodec.HEADER_LENGTH);
+        buffer.writerIndex(headerIndex + ExchangeCodec.HEADER_LENGTH);
+        chunkLength = 0;
+        chunks ++;
+    }
+
+    private void writeHeader(int length) {
+        Bytes.int2bytes(length, header, 12);
+        buffer.setBytes(headerIndex, header);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,183 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.LongObjectHashMap;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+
+/**
+ * 单个传输层通道上未完成请求的登记表，挂在通道属性上。
+ * <p>
+ * 按请求ID分段加锁，每段是一个以原始long为key的开放寻址表，请求和响应都不需要装箱，
+ * 也不再竞争全局Map。通道关闭时只遍历本通道的未完成请求。
+ * 客户端重连后换了传输层通道，也就换了一张表，旧连接迟到的断开事件不会影响新连接上的请求。
+ */
+public class InFlightTable {
+
+    /**
+     * 通道属性的key
+     */
+    public static final String KEY = InFlightTable.class.getName();
+
+    private static final Logger logger = LoggerFactory.getLogger(InFlightTable.class);
+
+    private static final int STRIPES = 8;
+
+    // 创建登记表时的锁，不锁通道对象本身
+    private static final Object CREATE_LOCK = new Object();
+
+    private final LongObjectHashMap<DefaultFuture>[] stripes;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    public InFlightTable() {
+        stripes = new LongObjectHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i ++) {
+            stripes[i] = new LongObjectHashMap<DefaultFuture>();
+        }
+    }
+
+    /**
+     * @return 通道上的登记表，没有时返回null
+     */
+    public static InFlightTable get(Channel channel) {
+        return (InFlightTable) channel.getAttribute(KEY);
+    }
+
+    /**
+     * 取通道上的登记表，没有时创建。客户端取的是当前连接上的表。
+     *
+     * @throws RemotingException 客户端没有连接，属性设置不上，登记的请求收不到响应
+     */
+    public static InFlightTable getOrAdd(Channel channel) throws RemotingException {
+        InFlightTable table = get(channel);
+        if (table != null) {
+            return table;
+        }
+        synchronized (CREATE_LOCK) {
+            table = get(channel);
+            if (table == null) {
+                table = new InFlightTable();
+                channel.setAttribute(KEY, table);
+                if (get(channel) != table) {
+                    throw new RemotingException(channel, "Failed to send request to " + channel.getRemoteAddress()
+                            + ", cause: channel " + channel + " is not connected");
+                }
+            }
+            return table;
+        }
+    }
+
+    private LongObjectHashMap<DefaultFuture> stripe(long id) {
+        // 请求ID连续递增，取低位即可均匀分布
+        return stripes[(int) id & (STRIPES - 1)];
+    }
+
+    void put(long id, DefaultFuture future) {
+        LongObjectHashMap<DefaultFuture> stripe = stripe(id);
+        synchronized (stripe) {
+            if (stripe.put(id, future) == null) {
+                size.incrementAndGet();
+            }
+        }
+    }
+
+    DefaultFuture get(long id) {
+        LongObjectHashMap<DefaultFuture> stripe = stripe(id);
+        synchronized (stripe) {
+            return stripe.get(id);
+        }
+    }
+
+    DefaultFuture remove(long id) {
+        LongObjectHashMap<DefaultFuture> stripe = stripe(id);
+        DefaultFuture future;
+        synchronized (stripe) {
+            future = stripe.remove(id);
+        }
+        if (future != null) {
+            size.decrementAndGet();
+        }
+        return future;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public void sent(Request request) {
+        DefaultFuture future = get(request.getId());
+        if (future != null) {
+            future.doSent();
+        }
+    }
+
+    public void received(Channel channel, Response response) {
+        DefaultFuture future = remove(response.getId());
+        if (future != null) {
+            future.doReceived(response);
+        } else {
+            logger.warn("The timeout response finally returned at " 
+                        + (new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date())) 
+                        + ", response " + response 
+                        + (channel == null ? "" : ", channel: " + channel.getLocalAddress() 
+                            + " -> " + channel.getRemoteAddress()));
+        }
+    }
+
+    /**
+     * 通道关闭时直接结束所有未完成请求，不必等待超时。
+     */
+    public void close(Channel channel) {
+        if (isEmpty()) {
+            return;
+        }
+        List<DefaultFuture> futures = new ArrayList<DefaultFuture>();
+        for (LongObjectHashMap<DefaultFuture> stripe : stripes) {
+            synchronized (stripe) {
+                if (! stripe.isEmpty()) {
+                    futures.addAll(stripe.values());
+                    size.addAndGet(- stripe.size());
+                    stripe.clear();
+                }
+            }
+        }
+        for (DefaultFuture future : futures) {
+            Response disconnectResponse = new Response(future.getId());
+            disconnectResponse.setStatus(Response.CHANNEL_INACTIVE);
+            disconnectResponse.setErrorMessage("Channel " + channel 
+                    + " is inactive. Directly return the unFinished request : " + future.getRequest());
+            future.doReceived(disconnectResponse);
+        }
+    }
+
+}
\ No newline at end of file
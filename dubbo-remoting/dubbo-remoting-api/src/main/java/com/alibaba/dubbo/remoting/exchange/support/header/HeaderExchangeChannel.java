@@ -30,6 +30,8 @@ import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
 import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
 import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.remoting.exchange.support.InFlightTable;
+import com.alibaba.dubbo.remoting.transport.AbstractClient;
 
 /**
  * ExchangeReceiver
@@ -46,11 +48,20 @@ final class HeaderExchangeChannel implements ExchangeChannel {
 
     private volatile boolean    closed      = false;
 
+    // request.batch=true时合并并发请求，否则为null
+    private final RequestBatcher batcher;
+
     HeaderExchangeChannel(Channel channel){
         if (channel == null) {
             throw new IllegalArgumentException("channel == null");
         }
         this.channel = channel;
+        URL url = channel.getUrl();
+        if (url != null && url.getParameter(Constants.REQUEST_BATCH_KEY, false)) {
+            this.batcher = new RequestBatcher(channel, url.getPositiveParameter(Constants.REQUEST_BATCH_SIZE_KEY, Constants.DEFAULT_REQUEST_BATCH_SIZE));
+        } else {
+            this.batcher = null;
+        }
     }
 
     static HeaderExchangeChannel getOrAddChannel(Channel ch) {
@@ -61,7 +72,7 @@ final class HeaderExchangeChannel implements ExchangeChannel {
         if (ret == null) {
             ret = new HeaderExchangeChannel(ch);
             if (ch.isConnected()) {
-                ch.setAttribute(CHANNEL_KEY, ret);
+                ret.bind();
             }
         }
         return ret;
@@ -72,6 +83,16 @@ final class HeaderExchangeChannel implements ExchangeChannel {
             ch.removeAttribute(CHANNEL_KEY);
         }
     }
+
+    /**
+     * 挂到传输层通道上，使HeaderExchangeHandler收到事件时能找到本通道。
+     * 客户端的传输层通道在重连后会更换，所以每次发请求前都检查一次。
+     */
+    private void bind() {
+        if (channel.getAttribute(CHANNEL_KEY) != this) {
+            channel.setAttribute(CHANNEL_KEY, this);
+        }
+    }
     
     public void send(Object message) throws RemotingException {
         send(message, getUrl().getParameter(Constants.SENT_KEY, false));
@@ -107,7 +128,15 @@ final class HeaderExchangeChannel implements ExchangeChannel {
         req.setVersion("2.0.0");
         req.setTwoWay(true);
         req.setData(request);
+        bind();
+        if (channel instanceof AbstractClient) {
+            ((AbstractClient) channel).reconnectBeforeSend();
+        }
         DefaultFuture future = new DefaultFuture(channel, req, timeout);
+        if (batcher != null) {
+            batcher.send(req, future);
+            return future;
+        }
         try{
             channel.send(req);
         }catch (RemotingException e) {
@@ -122,11 +151,16 @@ final class HeaderExchangeChannel implements ExchangeChannel {
     }
 
     public void close() {
+        // 关闭后客户端取不到当前连接，先取出登记表
+        InFlightTable inFlight = InFlightTable.get(channel);
         try {
             channel.close();
         } catch (Throwable e) {
             logger.warn(e.getMessage(), e);
         }
+        if (inFlight != null) {
+            inFlight.close(channel);
+        }
     }
 
     // graceful close
@@ -137,7 +171,7 @@ final class HeaderExchangeChannel implements ExchangeChannel {
         closed = true;
         if (timeout > 0) {
             long start = System.currentTimeMillis();
-            while (DefaultFuture.hasFuture(HeaderExchangeChannel.this) 
+            while (DefaultFuture.hasFuture(channel)
                     && System.currentTimeMillis() - start < timeout) {
                 try {
                     Thread.sleep(10);
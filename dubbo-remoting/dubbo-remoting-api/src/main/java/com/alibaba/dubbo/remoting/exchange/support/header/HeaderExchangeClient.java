@@ -16,18 +16,11 @@
 package com.alibaba.dubbo.remoting.exchange.support.header;
 
 import java.net.InetSocketAddress;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
-import com.alibaba.dubbo.common.utils.NamedThreadFactory;
-import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.Client;
 import com.alibaba.dubbo.remoting.RemotingException;
@@ -46,10 +39,8 @@ public class HeaderExchangeClient implements ExchangeClient {
 
     private static final Logger logger = LoggerFactory.getLogger( HeaderExchangeClient.class );
 
-    private static final ScheduledThreadPoolExecutor scheduled = new ScheduledThreadPoolExecutor(2, new NamedThreadFactory("dubbo-remoting-client-heartbeat", true));
-
-    // 心跳定时器
-    private ScheduledFuture<?> heatbeatTimer;
+    // 心跳定时器，所有客户端共用一个时间轮
+    private HeartbeatTimerTask heatbeatTimer;
 
     // 心跳超时，毫秒。缺省0，不会执行心跳。
     private int heartbeat;
@@ -161,21 +152,14 @@ public class HeaderExchangeClient implements ExchangeClient {
     private void startHeatbeatTimer() {
         stopHeartbeatTimer();
         if ( heartbeat > 0 ) {
-            heatbeatTimer = scheduled.scheduleWithFixedDelay(
-                    new HeartBeatTask( new HeartBeatTask.ChannelProvider() {
-                        public Collection<Channel> getChannels() {
-                            return Collections.<Channel>singletonList( HeaderExchangeClient.this );
-                        }
-                    }, heartbeat, heartbeatTimeout),
-                    heartbeat, heartbeat, TimeUnit.MILLISECONDS );
+            heatbeatTimer = HeartbeatTimerTask.start( this, heartbeat, heartbeatTimeout );
         }
     }
 
     private void stopHeartbeatTimer() {
         if (heatbeatTimer != null && ! heatbeatTimer.isCancelled()) {
             try {
-                heatbeatTimer.cancel(true);
-                scheduled.purge();
+                heatbeatTimer.cancel();
             } catch ( Throwable e ) {
                 if (logger.isWarnEnabled()) {
                     logger.warn(e.getMessage(), e);
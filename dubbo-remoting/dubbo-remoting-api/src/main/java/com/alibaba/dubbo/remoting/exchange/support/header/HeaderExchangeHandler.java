@@ -31,7 +31,8 @@ import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
 import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
-import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.remoting.exchange.support.InFlightTable;
+import com.alibaba.dubbo.remoting.exchange.support.MultiMessage;
 import com.alibaba.dubbo.remoting.transport.ChannelHandlerDelegate;
 
 /**
@@ -93,13 +94,21 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
 
     static void handleResponse(Channel channel, Response response) throws RemotingException {
         if (response != null && !response.isHeartbeat()) {
-            DefaultFuture.received(channel, response);
+            InFlightTable inFlight = InFlightTable.get(channel);
+            if (inFlight != null) {
+                inFlight.received(channel, response);
+            } else {
+                // 连接断开时请求都已结束
+                logger.warn("The response returned after channel " + channel.getLocalAddress() + " -> "
+                        + channel.getRemoteAddress() + " is closed, response " + response);
+            }
         }
     }
 
     public void connected(Channel channel) throws RemotingException {
         channel.setAttribute(KEY_READ_TIMESTAMP, System.currentTimeMillis());
         channel.setAttribute(KEY_WRITE_TIMESTAMP, System.currentTimeMillis());
+        startHeartbeatIfServerSide(channel);
         ExchangeChannel exchangeChannel = HeaderExchangeChannel.getOrAddChannel(channel);
         try {
             handler.connected(exchangeChannel);
@@ -111,15 +120,27 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
     public void disconnected(Channel channel) throws RemotingException {
         channel.setAttribute(KEY_READ_TIMESTAMP, System.currentTimeMillis());
         channel.setAttribute(KEY_WRITE_TIMESTAMP, System.currentTimeMillis());
-        ExchangeChannel exchangeChannel = HeaderExchangeChannel.getOrAddChannel(channel);
+        HeaderExchangeChannel exchangeChannel = HeaderExchangeChannel.getOrAddChannel(channel);
         try {
             handler.disconnected(exchangeChannel);
         } finally {
+            // 连接已断开，不必等到超时，只结束在这个连接上发出的请求
+            InFlightTable inFlight = InFlightTable.get(channel);
+            if (inFlight != null) {
+                inFlight.close(channel);
+                channel.removeAttribute(InFlightTable.KEY);
+            }
             HeaderExchangeChannel.removeChannelIfDisconnected(channel);
         }
     }
 
     public void sent(Channel channel, Object message) throws RemotingException {
+        if (message instanceof MultiMessage) {
+            for (Object obj : (MultiMessage) message) {
+                sent(channel, obj);
+            }
+            return;
+        }
         Throwable exception = null;
         try {
             channel.setAttribute(KEY_WRITE_TIMESTAMP, System.currentTimeMillis());
@@ -134,7 +155,10 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
         }
         if (message instanceof Request) {
             Request request = (Request) message;
-            DefaultFuture.sent(channel, request);
+            InFlightTable inFlight = InFlightTable.get(channel);
+            if (inFlight != null) {
+                inFlight.sent(request);
+            }
         }
         if (exception != null) {
             if (exception instanceof RuntimeException) {
@@ -148,6 +172,18 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
         }
     }
 
+    // 服务端每个连接各自挂到心跳时间轮上，客户端的心跳由HeaderExchangeClient负责
+    private static void startHeartbeatIfServerSide(Channel channel) {
+        URL url = channel.getUrl();
+        if (url == null || channel.getRemoteAddress() == null || isClientSide(channel)) {
+            return;
+        }
+        int heartbeat = url.getParameter(Constants.HEARTBEAT_KEY, 0);
+        if (heartbeat > 0) {
+            HeartbeatTimerTask.restart(channel, heartbeat, url.getParameter(Constants.HEARTBEAT_TIMEOUT_KEY, heartbeat * 3));
+        }
+    }
+
     private static boolean isClientSide(Channel channel) {
         InetSocketAddress address = channel.getRemoteAddress();
         URL url = channel.getUrl();
@@ -165,6 +201,13 @@ public class HeaderExchangeHandler implements ChannelHandlerDelegate {
                 Request request = (Request) message;
                 if (request.isEvent()) {
                     handlerEvent(channel, request);
+                } else if (request.isExpired()) {
+                    // 解码或排队耗尽了调用方的超时时间，执行了也没人读结果
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("Discard expired request " + request.getId() + ", "
+                                + (System.currentTimeMillis() - request.getDeadline())
+                                + "ms past the deadline, channel: " + channel);
+                    }
                 } else {
                     if (request.isTwoWay()) {
                         Response response = handleRequest(exchangeChannel, request);
@@ -0,0 +1,119 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support.header;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.timer.HashedWheelTimer;
+import com.alibaba.dubbo.common.timer.Timeout;
+import com.alibaba.dubbo.common.timer.Timer;
+import com.alibaba.dubbo.common.timer.TimerTask;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.Client;
+
+/**
+ * 单个通道的心跳。进程内所有客户端和服务端通道共用一个时间轮，
+ * 每个通道按自己最后的读写时间安排下一次检查，不需要定时扫描全部通道。
+ */
+final class HeartbeatTimerTask implements TimerTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeartbeatTimerTask.class);
+
+    /** 服务端通道上保存本任务的属性名，修改心跳参数时用于取消 */
+    static final String         KEY    = HeartbeatTimerTask.class.getName();
+
+    private static final Timer  TIMER  = new HashedWheelTimer(
+            new NamedThreadFactory("dubbo-remoting-heartbeat", true), 100, TimeUnit.MILLISECONDS, 512);
+
+    private final Channel       channel;
+
+    private final int           heartbeat;
+
+    private final int           heartbeatTimeout;
+
+    private volatile Timeout    timeout;
+
+    private volatile boolean    cancelled;
+
+    private HeartbeatTimerTask(Channel channel, int heartbeat, int heartbeatTimeout) {
+        this.channel = channel;
+        this.heartbeat = heartbeat;
+        this.heartbeatTimeout = heartbeatTimeout;
+    }
+
+    static HeartbeatTimerTask start(Channel channel, int heartbeat, int heartbeatTimeout) {
+        HeartbeatTimerTask t = new HeartbeatTimerTask(channel, heartbeat, heartbeatTimeout);
+        t.schedule(heartbeat);
+        return t;
+    }
+
+    /**
+     * 服务端通道的心跳任务保存在通道属性上，重新开始时先取消旧的，heartbeat不大于0则只取消。
+     */
+    static void restart(Channel channel, int heartbeat, int heartbeatTimeout) {
+        HeartbeatTimerTask old = (HeartbeatTimerTask) channel.getAttribute(KEY);
+        if (old != null) {
+            old.cancel();
+        }
+        if (heartbeat > 0) {
+            channel.setAttribute(KEY, start(channel, heartbeat, heartbeatTimeout));
+        } else {
+            channel.removeAttribute(KEY);
+        }
+    }
+
+    public void run(Timeout timeout) {
+        if (cancelled || channel.isClosed()) {
+            return;
+        }
+        // 服务端通道断开后不再检查，客户端由心跳触发重连
+        if (! (channel instanceof Client) && ! channel.isConnected()) {
+            return;
+        }
+        long next = HeartBeatTask.check(channel, heartbeat, heartbeatTimeout, System.currentTimeMillis());
+        schedule(next);
+    }
+
+    private void schedule(long delay) {
+        if (cancelled) {
+            return;
+        }
+        try {
+            timeout = TIMER.newTimeout(this, delay, TimeUnit.MILLISECONDS);
+        } catch (Throwable t) {
+            logger.warn("Failed to schedule heartbeat for channel " + channel + ", cause: " + t.getMessage(), t);
+        }
+        if (cancelled) {
+            cancel();
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        Timeout t = timeout;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support.header;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.remoting.exchange.support.MultiMessage;
+
+/**
+ * 客户端请求合并发送：并发的请求先入队，由抢到发送权的线程一次取出多个，
+ * 以MultiMessage写出，一次网络写包含多个请求帧。
+ * 没有并发时队列里只有自己的请求，直接发送，不会增加延迟。
+ * <p>
+ * 抢到发送权的线程只发到自己的请求为止，之后把发送权交给队头请求的线程，
+ * 没抢到的线程等自己的请求被别人发出或者轮到自己发送，每个调用的耗时都有上限。
+ */
+final class RequestBatcher {
+
+    private static final Logger  logger  = LoggerFactory.getLogger(RequestBatcher.class);
+
+    private final Channel        channel;
+
+    private final int            maxBatch;
+
+    private final Queue<Pending> queue   = new ConcurrentLinkedQueue<Pending>();
+
+    private final AtomicBoolean  writing = new AtomicBoolean(false);
+
+    RequestBatcher(Channel channel, int maxBatch) {
+        this.channel = channel;
+        this.maxBatch = maxBatch > 0 ? maxBatch : 1;
+    }
+
+    void send(Request request, DefaultFuture future) throws RemotingException {
+        Pending self = new Pending(request, future);
+        queue.offer(self);
+        while (! self.flushed) {
+            if (writing.compareAndSet(false, true)) {
+                try {
+                    // 自己前面的请求有限，最多发几批就轮到自己
+                    while (! self.flushed) {
+                        flush();
+                    }
+                } finally {
+                    writing.set(false);
+                }
+                // 还在排队的请求交给它自己的线程发送
+                Pending next = queue.peek();
+                if (next != null) {
+                    LockSupport.unpark(next.thread);
+                }
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        if (self.failure != null) {
+            throw self.failure;
+        }
+    }
+
+    private void flush() {
+        List<Pending> batch = new ArrayList<Pending>(maxBatch);
+        Pending p;
+        while (batch.size() < maxBatch && (p = queue.poll()) != null) {
+            batch.add(p);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (batch.size() == 1) {
+                channel.send(batch.get(0).request);
+            } else {
+                MultiMessage message = MultiMessage.create();
+                for (Pending pending : batch) {
+                    message.addMessage(pending.request);
+                }
+                channel.send(message);
+            }
+        } catch (Throwable t) {
+            // 失败交给各自的调用方抛出
+            RemotingException e = t instanceof RemotingException ? (RemotingException) t : new RemotingException(channel, t);
+            for (Pending pending : batch) {
+                pending.future.cancel();
+                pending.failure = e;
+            }
+            if (batch.size() > 1) {
+                logger.warn("Failed to send " + batch.size() + " batched requests to " + channel.getRemoteAddress() + ", cause: " + e.getMessage(), e);
+            }
+        } finally {
+            Thread current = Thread.currentThread();
+            for (Pending pending : batch) {
+                pending.flushed = true;
+                if (pending.thread != current) {
+                    LockSupport.unpark(pending.thread);
+                }
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        final Request       request;
+
+        final DefaultFuture future;
+
+        final Thread        thread = Thread.currentThread();
+
+        // 发送失败的异常，在flushed之前写入
+        RemotingException   failure;
+
+        volatile boolean    flushed;
+
+        Pending(Request request, DefaultFuture future) {
+            this.request = request;
+            this.future = future;
+        }
+    }
+
+}
\ No newline at end of file
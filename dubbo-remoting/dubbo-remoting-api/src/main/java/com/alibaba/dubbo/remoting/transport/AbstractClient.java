@@ -18,9 +18,6 @@ package com.alibaba.dubbo.remoting.transport;
 import java.net.InetSocketAddress;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -58,9 +55,7 @@ public abstract class AbstractClient extends AbstractEndpoint implements Client
 
     private final Lock            connectLock = new ReentrantLock();
     
-    private static final ScheduledThreadPoolExecutor reconnectExecutorService = new ScheduledThreadPoolExecutor(2, new NamedThreadFactory("DubboClientReconnectTimer", true));
-    
-    private volatile  ScheduledFuture<?> reconnectExecutorFuture = null;
+    private volatile ReconnectScheduler.Task reconnectTask = null;
     
     protected volatile ExecutorService executor;
     
@@ -75,7 +70,7 @@ public abstract class AbstractClient extends AbstractEndpoint implements Client
     private final int reconnect_warning_period ;
     
     //the last successed connected time
-    private long lastConnectedTime = System.currentTimeMillis();
+    private volatile long lastConnectedTime = System.currentTimeMillis();
     
     private final long shutdown_timeout ;
     
@@ -132,37 +127,48 @@ public abstract class AbstractClient extends AbstractEndpoint implements Client
     }
     
     /**
-     * init reconnect thread
+     * init reconnect task
      */
     private synchronized void initConnectStatusCheckCommand(){
         //reconnect=false to close reconnect 
         int reconnect = getReconnectParam(getUrl());
-        if(reconnect > 0 && (reconnectExecutorFuture == null || reconnectExecutorFuture.isCancelled())){
-            Runnable connectStatusCheckCommand =  new Runnable() {
-                public void run() {
-                    try {
-                        if (! isConnected()) {
-                            connect();
-                        } else {
-                            lastConnectedTime = System.currentTimeMillis();
-                        }
-                    } catch (Throwable t) { 
-                        String errorMsg = "client reconnect to "+getUrl().getAddress()+" find error . url: "+ getUrl();
-                        // wait registry sync provider list
-                        if (System.currentTimeMillis() - lastConnectedTime > shutdown_timeout){
-                            if (!reconnect_error_log_flag.get()){
-                                reconnect_error_log_flag.set(true);
-                                logger.error(errorMsg, t);
-                                return ;
-                            }
-                        }
-                        if ( reconnect_count.getAndIncrement() % reconnect_warning_period == 0){
-                            logger.warn(errorMsg, t);
-                        }
-                    }
+        if(reconnect > 0 && (reconnectTask == null || reconnectTask.isCancelled())){
+            int maxPeriod = getUrl().getParameter(Constants.RECONNECT_MAX_PERIOD_KEY, Constants.DEFAULT_RECONNECT_MAX_PERIOD);
+            reconnectTask = ReconnectScheduler.schedule(this, reconnect, maxPeriod);
+        }
+    }
+    
+    void touchConnected() {
+        lastConnectedTime = System.currentTimeMillis();
+    }
+    
+    /**
+     * 由ReconnectScheduler在重连线程中调用.
+     * 
+     * @return 是否已连接
+     */
+    boolean reconnectOnce() {
+        try {
+            if (! isConnected()) {
+                connect();
+            } else {
+                lastConnectedTime = System.currentTimeMillis();
+            }
+            return true;
+        } catch (Throwable t) { 
+            String errorMsg = "client reconnect to "+getUrl().getAddress()+" find error . url: "+ getUrl();
+            // wait registry sync provider list
+            if (System.currentTimeMillis() - lastConnectedTime > shutdown_timeout){
+                if (!reconnect_error_log_flag.get()){
+                    reconnect_error_log_flag.set(true);
+                    logger.error(errorMsg, t);
+                    return false;
                 }
-            };
-            reconnectExecutorFuture = reconnectExecutorService.scheduleWithFixedDelay(connectStatusCheckCommand, reconnect, reconnect, TimeUnit.MILLISECONDS);
+            }
+            if ( reconnect_count.getAndIncrement() % reconnect_warning_period == 0){
+                logger.warn(errorMsg, t);
+            }
+            return false;
         }
     }
     
@@ -192,9 +198,8 @@ public abstract class AbstractClient extends AbstractEndpoint implements Client
     
     private synchronized void destroyConnectStatusCheckCommand(){
         try {
-            if (reconnectExecutorFuture != null && ! reconnectExecutorFuture.isDone()){
-                reconnectExecutorFuture.cancel(true);
-                reconnectExecutorService.purge();
+            if (reconnectTask != null && ! reconnectTask.isCancelled()){
+                reconnectTask.cancel();
             }
         } catch (Throwable e) {
             logger.warn(e.getMessage(), e);
@@ -258,10 +263,17 @@ public abstract class AbstractClient extends AbstractEndpoint implements Client
         return channel.hasAttribute(key);
     }
     
-    public void send(Object message, boolean sent) throws RemotingException {
+    /**
+     * 配置了send.reconnect时，在断开的客户端上发送前先连接，请求要在连接后的通道上登记
+     */
+    public void reconnectBeforeSend() throws RemotingException {
         if (send_reconnect && !isConnected()){
             connect();
         }
+    }
+
+    public void send(Object message, boolean sent) throws RemotingException {
+        reconnectBeforeSend();
         Channel channel = getChannel();
         //TODO getChannel返回的状态是否包含null需要改进
         if (channel == null || ! channel.isConnected()) {
@@ -26,6 +26,7 @@ import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.store.DataStore;
+import com.alibaba.dubbo.common.threadpool.support.fair.FairThreadPoolExecutor;
 import com.alibaba.dubbo.common.utils.ExecutorUtil;
 import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.remoting.Channel;
@@ -131,6 +132,14 @@ public abstract class AbstractServer extends AbstractEndpoint implements Server
             logger.error(t.getMessage(), t);
         }
         super.setUrl(getUrl().addParameters(url.getParameters()));
+        try {
+            if (executor instanceof FairThreadPoolExecutor) {
+                // 权重从合并后的URL取，只覆盖了部分应用时其它应用的权重不变
+                ((FairThreadPoolExecutor) executor).setWeights(getUrl());
+            }
+        } catch (Throwable t) {
+            logger.error(t.getMessage(), t);
+        }
     }
 
     public void send(Object message, boolean sent) throws RemotingException {
@@ -0,0 +1,121 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport;
+
+import java.io.IOException;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+import com.alibaba.dubbo.remoting.buffer.PooledChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.PooledChannelBufferFactory;
+
+/**
+ * 自己读字节的传输层（nio2、shm）共用的解码循环：从读数组中解出所有完整的消息交给handler，
+ * 剩下的半包拷到池化的累积缓冲区，读数组在返回后即可复用。
+ * <p>
+ * 不是线程安全的，一个通道只能在它的读线程（或读回调）中使用。
+ */
+public class CumulativeDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CumulativeDecoder.class);
+
+    private final Codec2        codec;
+
+    private final int           bufferSize;
+
+    private ChannelBuffer       cumulation = ChannelBuffers.EMPTY_BUFFER;
+
+    /**
+     * @param bufferSize 累积缓冲区的初始大小
+     */
+    public CumulativeDecoder(Codec2 codec, int bufferSize) {
+        this.codec = codec;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * 解码读到的数据，handler处理消息时的异常交给handler.caught，不中断解码。
+     * 
+     * @throws IOException 解码出错，已收到的数据被丢弃
+     */
+    public void decode(Channel channel, ChannelHandler handler, byte[] array, int offset, int length) throws IOException {
+        ChannelBuffer message;
+        if (cumulation.readable()) {
+            cumulation.writeBytes(array, offset, length);
+            message = cumulation;
+        } else {
+            message = ChannelBuffers.wrappedBuffer(array, offset, length);
+        }
+        boolean success = false;
+        try {
+            do {
+                int saveReaderIndex = message.readerIndex();
+                Object msg = codec.decode(channel, message);
+                if (msg == Codec2.DecodeResult.NEED_MORE_INPUT) {
+                    message.readerIndex(saveReaderIndex);
+                    break;
+                }
+                if (saveReaderIndex == message.readerIndex()) {
+                    throw new IOException("Decode without read data.");
+                }
+                if (msg != null) {
+                    try {
+                        handler.received(channel, msg);
+                    } catch (Throwable t) {
+                        caught(channel, handler, t);
+                    }
+                }
+            } while (message.readable());
+            success = true;
+        } finally {
+            if (success && message.readable()) {
+                if (message == cumulation) {
+                    cumulation.discardReadBytes();
+                } else {
+                    // 读数组马上要复用，剩下的半包拷到池化的累积缓冲区
+                    int readable = message.readableBytes();
+                    cumulation = new PooledChannelBuffer(readable > bufferSize ? readable : bufferSize);
+                    cumulation.writeBytes(message, readable);
+                }
+            } else {
+                // 全部解完或解码出错，释放累积缓冲区
+                release();
+            }
+        }
+    }
+
+    /**
+     * 释放累积的半包，通道关闭时调用.
+     */
+    public void release() {
+        PooledChannelBufferFactory.release(cumulation);
+        cumulation = ChannelBuffers.EMPTY_BUFFER;
+    }
+
+    private static void caught(Channel channel, ChannelHandler handler, Throwable cause) {
+        try {
+            handler.caught(channel, cause);
+        } catch (Throwable t) {
+            logger.warn("Failed to handle exception of " + channel + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+}
\ No newline at end of file
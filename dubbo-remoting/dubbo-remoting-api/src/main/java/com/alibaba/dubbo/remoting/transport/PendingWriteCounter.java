@@ -0,0 +1,149 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.WriteBufferFullException;
+
+/**
+ * 通道上已编码但未写完的字节数。超过高水位后不可写，降到低水位以下才恢复可写。
+ * 由传输层的encoder在写出时增加，写完成（含失败）后减少。
+ * 传输层自带水位的（如netty4），可覆盖{@link #isWritable()}和{@link #getPendingBytes()}，
+ * 可写状态变化时调用{@link #signalWritable()}唤醒等待的发送线程。
+ */
+public class PendingWriteCounter {
+
+    /** 通道属性名，交换层和状态页通过它取到本计数 */
+    public static final String      KEY      = PendingWriteCounter.class.getName();
+
+    private final AtomicLong        pending  = new AtomicLong();
+
+    private final long              high;
+
+    private final long              low;
+
+    private final Object            lock     = new Object();
+
+    private volatile boolean        writable = true;
+
+    public PendingWriteCounter(URL url) {
+        this(getHighWaterMark(url), getLowWaterMark(url));
+    }
+
+    public PendingWriteCounter(long high, long low) {
+        if (high <= 0) {
+            throw new IllegalArgumentException("high water mark <= 0");
+        }
+        this.high = high;
+        this.low = Math.min(low, high);
+    }
+
+    public void increment(long bytes) {
+        if (pending.addAndGet(bytes) > high && writable) {
+            synchronized (lock) {
+                if (pending.get() > high) {
+                    writable = false;
+                }
+            }
+        }
+    }
+
+    public void decrement(long bytes) {
+        if (pending.addAndGet(- bytes) <= low && ! writable) {
+            synchronized (lock) {
+                if (pending.get() <= low) {
+                    writable = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * 可写状态变化后唤醒{@link #awaitWritable(Channel, int)}中等待的线程
+     */
+    public void signalWritable() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    public long getPendingBytes() {
+        return pending.get();
+    }
+
+    public long getHighWaterMark() {
+        return high;
+    }
+
+    public long getLowWaterMark() {
+        return low;
+    }
+
+    /**
+     * 不可写时最多等待timeout毫秒，timeout不大于0则立即失败。
+     * 在IO线程中发送时timeout要传0：写完成的回调也在这个IO线程上执行，等待只会卡住它上面的所有连接。
+     * 
+     * @throws WriteBufferFullException 等待后仍不可写
+     */
+    public void awaitWritable(Channel channel, int timeout) throws WriteBufferFullException {
+        if (isWritable()) {
+            return;
+        }
+        if (timeout > 0) {
+            long deadline = System.currentTimeMillis() + timeout;
+            synchronized (lock) {
+                long remaining;
+                while (! isWritable() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            if (isWritable()) {
+                return;
+            }
+        }
+        long bytes = getPendingBytes();
+        throw new WriteBufferFullException(channel, "Write buffer of channel " + channel + " is full, pending "
+                + bytes + " bytes exceed high water mark " + high + (timeout > 0 ? " after waiting " + timeout + "ms" : ""), bytes);
+    }
+
+    public static int getHighWaterMark(URL url) {
+        return url.getPositiveParameter(Constants.WRITE_BUFFER_HIGH_KEY, Constants.DEFAULT_WRITE_BUFFER_HIGH);
+    }
+
+    /**
+     * 未配置低水位时取高水位的一半，保证两者之间有回差，避免在高水位附近反复切换可写状态
+     */
+    public static int getLowWaterMark(URL url) {
+        int high = getHighWaterMark(url);
+        int low = url.getPositiveParameter(Constants.WRITE_BUFFER_LOW_KEY, high / 2);
+        return Math.min(low, high);
+    }
+
+}
\ No newline at end of file
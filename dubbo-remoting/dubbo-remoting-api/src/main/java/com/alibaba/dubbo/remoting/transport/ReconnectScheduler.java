@@ -0,0 +1,412 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.timer.HashedWheelTimer;
+import com.alibaba.dubbo.common.timer.Timeout;
+import com.alibaba.dubbo.common.timer.Timer;
+import com.alibaba.dubbo.common.timer.TimerTask;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.remoting.Client;
+
+/**
+ * 进程内所有客户端共用的重连调度。
+ * 每个连接断开后按指数退避并加随机抖动安排下一次重连，避免同一批客户端同时重连；
+ * 退避按远端地址(host:port)计算，连到同一地址的所有连接共用失败次数，任一连接成功即重置；
+ * 实际的建连在有限大小的线程池中执行，限制同时进行的重连数。
+ */
+public final class ReconnectScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconnectScheduler.class);
+
+    private static final Timer  TIMER = new HashedWheelTimer(
+            new NamedThreadFactory("DubboClientReconnectTimer", true), 100, TimeUnit.MILLISECONDS, 512);
+
+    private static final ThreadPoolExecutor CONNECT_EXECUTOR;
+
+    static {
+        int concurrency = Constants.DEFAULT_RECONNECT_CONCURRENCY;
+        String value = ConfigUtils.getProperty(Constants.RECONNECT_CONCURRENCY_KEY);
+        if (value != null && value.trim().length() > 0) {
+            try {
+                concurrency = Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid " + Constants.RECONNECT_CONCURRENCY_KEY + ": " + value + ", use default " + concurrency);
+            }
+        }
+        CONNECT_EXECUTOR = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("DubboClientReconnect", true));
+        CONNECT_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Random        RANDOM       = new Random();
+
+    private static final AtomicLong    ATTEMPTS     = new AtomicLong();
+
+    private static final AtomicLong    FAILURES     = new AtomicLong();
+
+    private static final AtomicInteger DISCONNECTED = new AtomicInteger();
+
+    // 已提交还未执行完的reconnect(Client)
+    private static final ConcurrentMap<Client, Boolean> RECONNECTING = new ConcurrentHashMap<Client, Boolean>();
+
+    // 各远端地址的退避状态，还有连接在用时保留
+    private static final Map<String, AddressBackoff> BACKOFFS = new HashMap<String, AddressBackoff>();
+
+    private ReconnectScheduler() {
+    }
+
+    /**
+     * 开始检查client的连接状态，period为连接正常时的检查间隔和退避的初始值。
+     */
+    static Task schedule(AbstractClient client, int period, int maxPeriod) {
+        Task task = new Task(client, period, Math.max(period, maxPeriod));
+        task.schedule(backoff(period, period, 0));
+        return task;
+    }
+
+    /**
+     * 立即重连client（如心跳超时），和断线重连共用线程池和统计；同一client已在重连时不重复提交。
+     */
+    public static void reconnect(final Client client) {
+        if (RECONNECTING.putIfAbsent(client, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            CONNECT_EXECUTOR.execute(new Runnable() {
+                public void run() {
+                    ATTEMPTS.incrementAndGet();
+                    try {
+                        client.reconnect();
+                    } catch (Throwable t) {
+                        FAILURES.incrementAndGet();
+                        logger.warn("Failed to reconnect " + client + ", cause: " + t.getMessage(), t);
+                    } finally {
+                        RECONNECTING.remove(client);
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            RECONNECTING.remove(client);
+            logger.warn("Failed to submit reconnect of " + client + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * 在executor中建连，失败后按指数退避加抖动重试，直到成功或connector不再需要建连。
+     * 首次之后的尝试计入重连统计；period不大于0时失败后不重试。
+     */
+    public static void connect(Connector connector, Executor executor, int period, int maxPeriod) {
+        new ConnectTask(connector, executor, period, Math.max(period, maxPeriod)).submit();
+    }
+
+    /**
+     * 第failures次失败后的等待时间：period * 2^failures，不超过maxPeriod，取其中随机的后一半。
+     */
+    static long backoff(int period, int maxPeriod, int failures) {
+        long delay = Math.min((long) maxPeriod, (long) period << Math.min(failures, 20));
+        long half = delay / 2;
+        return half + (long) (RANDOM.nextDouble() * (delay - half + 1));
+    }
+
+    private static AddressBackoff acquireBackoff(String address) {
+        synchronized (BACKOFFS) {
+            AddressBackoff state = BACKOFFS.get(address);
+            if (state == null) {
+                state = new AddressBackoff(address);
+                BACKOFFS.put(address, state);
+            }
+            state.refs ++;
+            return state;
+        }
+    }
+
+    private static void releaseBackoff(AddressBackoff state) {
+        synchronized (BACKOFFS) {
+            if (-- state.refs == 0) {
+                BACKOFFS.remove(state.address);
+            }
+        }
+    }
+
+    /**
+     * 远端地址当前连续失败的次数，没有连接在用时为0.
+     */
+    static int getFailures(String address) {
+        synchronized (BACKOFFS) {
+            AddressBackoff state = BACKOFFS.get(address);
+            return state == null ? 0 : state.failures.get();
+        }
+    }
+
+    /**
+     * 累计发起的重连次数.
+     */
+    public static long getAttemptCount() {
+        return ATTEMPTS.get();
+    }
+
+    /**
+     * 累计失败的重连次数.
+     */
+    public static long getFailureCount() {
+        return FAILURES.get();
+    }
+
+    /**
+     * 当前处于断开状态、等待重连的客户端数.
+     */
+    public static int getDisconnectedCount() {
+        return DISCONNECTED.get();
+    }
+
+    /**
+     * 排队等待执行的重连数.
+     */
+    public static int getQueuedCount() {
+        return CONNECT_EXECUTOR.getQueue().size();
+    }
+
+    /**
+     * 由{@link ReconnectScheduler#connect(Connector, Executor, int, int)}重试的建连动作
+     */
+    public interface Connector {
+
+        /**
+         * @return 远端的host:port，同一地址共用退避状态
+         */
+        String getAddress();
+
+        /**
+         * @return 是否还需要建连，已连上或已关闭时返回false
+         */
+        boolean isPending();
+
+        void connect() throws Throwable;
+    }
+
+    private static final class AddressBackoff {
+
+        private final String        address;
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        // 引用这个状态的任务数，BACKOFFS锁保护
+        private int                 refs;
+
+        private AddressBackoff(String address) {
+            this.address = address;
+        }
+    }
+
+    private static final class ConnectTask implements TimerTask, Runnable {
+
+        private final Connector connector;
+
+        private final Executor  executor;
+
+        private final int       period;
+
+        private final int       maxPeriod;
+
+        private final AddressBackoff state;
+
+        // 本任务已经尝试的次数
+        private volatile int    attempts;
+
+        private boolean         finished;
+
+        private ConnectTask(Connector connector, Executor executor, int period, int maxPeriod) {
+            this.connector = connector;
+            this.executor = executor;
+            this.period = period;
+            this.maxPeriod = maxPeriod;
+            this.state = acquireBackoff(connector.getAddress());
+        }
+
+        public void run(Timeout timeout) {
+            submit();
+        }
+
+        void submit() {
+            try {
+                executor.execute(this);
+            } catch (Throwable t) {
+                logger.warn("Failed to submit connect of " + connector + ", cause: " + t.getMessage(), t);
+                retry();
+            }
+        }
+
+        public void run() {
+            if (! connector.isPending()) {
+                finish();
+                return;
+            }
+            boolean retrying = attempts ++ > 0;
+            if (retrying) {
+                ATTEMPTS.incrementAndGet();
+            }
+            try {
+                connector.connect();
+                state.failures.set(0);
+                finish();
+            } catch (Throwable t) {
+                if (retrying) {
+                    FAILURES.incrementAndGet();
+                }
+                logger.warn("Failed to connect " + connector + (period > 0 ? ", will retry" : "") + ", cause: " + t.getMessage(), t);
+                retry();
+            }
+        }
+
+        private void retry() {
+            if (period <= 0 || ! connector.isPending()) {
+                finish();
+                return;
+            }
+            try {
+                TIMER.newTimeout(this, backoff(period, maxPeriod, state.failures.getAndIncrement()), TimeUnit.MILLISECONDS);
+            } catch (Throwable t) {
+                logger.warn("Failed to schedule connect of " + connector + ", cause: " + t.getMessage(), t);
+                finish();
+            }
+        }
+
+        private synchronized void finish() {
+            if (! finished) {
+                finished = true;
+                releaseBackoff(state);
+            }
+        }
+    }
+
+    static final class Task implements TimerTask, Runnable {
+
+        private final AbstractClient client;
+
+        private final int            period;
+
+        private final int            maxPeriod;
+
+        private final AddressBackoff state;
+
+        private volatile boolean     disconnected;
+
+        private volatile boolean     cancelled;
+
+        private volatile Timeout     timeout;
+
+        private Task(AbstractClient client, int period, int maxPeriod) {
+            this.client = client;
+            this.period = period;
+            this.maxPeriod = maxPeriod;
+            this.state = acquireBackoff(client.getUrl().getAddress());
+        }
+
+        public void run(Timeout timeout) {
+            if (cancelled) {
+                return;
+            }
+            if (client.isConnected()) {
+                client.touchConnected();
+                setDisconnected(false);
+                state.failures.set(0);
+                schedule(backoff(period, period, 0));
+                return;
+            }
+            setDisconnected(true);
+            try {
+                CONNECT_EXECUTOR.execute(this);
+            } catch (Throwable t) {
+                logger.warn("Failed to submit reconnect of " + client + ", cause: " + t.getMessage(), t);
+                schedule(backoff(period, maxPeriod, state.failures.get()));
+            }
+        }
+
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            ATTEMPTS.incrementAndGet();
+            if (client.reconnectOnce()) {
+                setDisconnected(false);
+                state.failures.set(0);
+                schedule(backoff(period, period, 0));
+            } else {
+                FAILURES.incrementAndGet();
+                schedule(backoff(period, maxPeriod, state.failures.incrementAndGet()));
+            }
+        }
+
+        private synchronized void setDisconnected(boolean value) {
+            if (disconnected != value && ! (value && cancelled)) {
+                disconnected = value;
+                if (value) {
+                    DISCONNECTED.incrementAndGet();
+                } else {
+                    DISCONNECTED.decrementAndGet();
+                }
+            }
+        }
+
+        private void schedule(long delay) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                timeout = TIMER.newTimeout(this, delay, TimeUnit.MILLISECONDS);
+            } catch (Throwable t) {
+                logger.warn("Failed to schedule reconnect of " + client + ", cause: " + t.getMessage(), t);
+            }
+            if (cancelled) {
+                cancel();
+            }
+        }
+
+        synchronized void cancel() {
+            if (! cancelled) {
+                releaseBackoff(state);
+            }
+            cancelled = true;
+            Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+            setDisconnected(false);
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+}
\ No newline at end of file
@@ -17,14 +17,18 @@ package com.alibaba.dubbo.remoting.transport.dispatcher;
 
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.threadpool.Sheddable;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
 
 /**
  * @author chao.liuc
  *
  */
-public class ChannelEventRunnable implements Runnable {
+public class ChannelEventRunnable implements Sheddable {
     private static final Logger logger             = LoggerFactory.getLogger(ChannelEventRunnable.class);
 
     private final ChannelHandler handler;
@@ -78,6 +82,15 @@ public class ChannelEventRunnable implements Runnable {
                 }
                 break;
             case RECEIVED:
+                if (message instanceof Request && ((Request) message).isExpired()) {
+                    // 在线程池队列里等过了截止时间，调用方已经不再等待结果
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("Discard expired request " + ((Request) message).getId() + ", "
+                                + (System.currentTimeMillis() - ((Request) message).getDeadline())
+                                + "ms past the deadline, channel is " + channel);
+                    }
+                    break;
+                }
                 try{
                     handler.received(channel, message);
                 }catch (Exception e) {
@@ -98,6 +111,35 @@ public class ChannelEventRunnable implements Runnable {
         }
     }
 
+    /**
+     * 线程池过载：请求直接回复服务端过载，不进入业务处理；其它事件不能丢弃，照常执行。
+     */
+    public void shed() {
+        shed("Server overloaded, request shed by the thread pool of " + channel.getLocalAddress());
+    }
+
+    /**
+     * 同{@link #shed()}，回复指定的错误信息
+     */
+    public void shed(String errorMessage) {
+        if (state != ChannelState.RECEIVED || ! (message instanceof Request) || ((Request) message).isEvent()) {
+            run();
+            return;
+        }
+        Request request = (Request) message;
+        if (! request.isTwoWay()) {
+            return;
+        }
+        Response response = new Response(request.getId(), request.getVersion());
+        response.setStatus(Response.SERVER_OVERLOADED);
+        response.setErrorMessage(errorMessage);
+        try {
+            channel.send(response);
+        } catch (RemotingException e) {
+            logger.warn("Send overloaded response failed, channel is " + channel + ", request is " + request, e);
+        }
+    }
+
     /**
      * ChannelState
      * 
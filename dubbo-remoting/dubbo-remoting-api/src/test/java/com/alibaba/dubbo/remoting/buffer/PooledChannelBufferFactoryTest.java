@@ -0,0 +1,95 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+
+public class PooledChannelBufferFactoryTest {
+
+    @Test
+    public void test_isPooled() {
+        assertTrue(PooledChannelBufferFactory.isPooled(URL.valueOf("dubbo://127.0.0.1:20880/?buffer.factory=pooled")));
+        assertFalse(PooledChannelBufferFactory.isPooled(URL.valueOf("dubbo://127.0.0.1:20880/?buffer=8192")));
+    }
+
+    @Test
+    public void test_poolReuse() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory(0);
+        PooledChannelBuffer buffer = factory.getBuffer(1000);
+        byte[] array = buffer.array();
+        assertEquals(1024, array.length);
+        assertTrue(buffer.release());
+        assertSame(array, factory.getBuffer(700).array());
+    }
+
+    @Test
+    public void test_copy() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory(0);
+        ChannelBuffer buffer = factory.getBuffer(new byte[] {1, 2, 3, 4}, 1, 2);
+        assertEquals(2, buffer.readableBytes());
+        assertEquals(2, buffer.readByte());
+        ByteBuffer nio = ByteBuffer.wrap(new byte[] {5, 6});
+        buffer = factory.getBuffer(nio);
+        assertEquals(0, nio.position());
+        assertEquals(6, buffer.getByte(1));
+    }
+
+    @Test
+    public void test_refCnt() {
+        PooledChannelBuffer buffer = new PooledChannelBufferFactory(0).getBuffer(16);
+        buffer.writeBytes(new byte[4]);
+        buffer.retain();
+        assertEquals(2, buffer.refCnt());
+        assertFalse(buffer.release());
+        assertEquals(4, buffer.readableBytes());
+        assertTrue(buffer.release());
+        assertEquals(0, buffer.capacity());
+        try {
+            buffer.release();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            buffer.retain();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void test_leakDetection() throws Exception {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory(1);
+        factory.getBuffer(16).release();
+        factory.getBuffer(16);
+        for (int i = 0; i < 50 && factory.getLeakCount() == 0; i ++) {
+            System.gc();
+            Thread.sleep(20);
+            factory.getBuffer(16).release();
+        }
+        assertEquals(1, factory.getLeakCount());
+    }
+
+}
\ No newline at end of file
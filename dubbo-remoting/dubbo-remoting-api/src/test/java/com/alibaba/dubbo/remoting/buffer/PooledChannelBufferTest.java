@@ -0,0 +1,99 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PooledChannelBufferTest {
+
+    @Test
+    public void test_sizeClass() {
+        assertEquals(ByteArrayPool.MIN_SIZE, ByteArrayPool.sizeClass(1));
+        assertEquals(512, ByteArrayPool.sizeClass(512));
+        assertEquals(1024, ByteArrayPool.sizeClass(513));
+        assertEquals(ByteArrayPool.MAX_SIZE + 1, ByteArrayPool.sizeClass(ByteArrayPool.MAX_SIZE + 1));
+    }
+
+    @Test
+    public void test_poolReuse() {
+        ByteArrayPool pool = new ByteArrayPool();
+        byte[] array = pool.acquire(1000);
+        assertEquals(1024, array.length);
+        pool.release(array);
+        assertSame(array, pool.acquire(600));
+    }
+
+    @Test
+    public void test_growAndRelease() {
+        ByteArrayPool pool = new ByteArrayPool();
+        PooledChannelBuffer buffer = new PooledChannelBuffer(0, pool);
+        assertEquals(0, buffer.capacity());
+        for (int i = 0; i < 3000; i ++) {
+            buffer.writeByte(i);
+        }
+        assertEquals(4096, buffer.capacity());
+        for (int i = 0; i < 3000; i ++) {
+            assertEquals((byte) i, buffer.readByte());
+        }
+        byte[] array = buffer.array();
+        buffer.release();
+        assertEquals(0, buffer.capacity());
+        // 扩容时归还的小数组和最后的数组都回到池中
+        assertSame(array, pool.acquire(4096));
+        assertEquals(2048, pool.acquire(2048).length);
+    }
+
+    @Test
+    public void test_detach() {
+        ByteArrayPool pool = new ByteArrayPool();
+        PooledChannelBuffer buffer = new PooledChannelBuffer(0, pool);
+        buffer.writeBytes(new byte[] {1, 2, 3});
+        byte[] array = buffer.array();
+        PooledChannelBuffer detached = buffer.detach();
+        assertSame(array, detached.array());
+        assertEquals(3, detached.readableBytes());
+        assertEquals(0, buffer.readableBytes());
+        assertEquals(0, buffer.capacity());
+        // 两个缓冲区各自归还自己的数组
+        buffer.writeByte(4);
+        assertEquals(4, buffer.readByte());
+        assertTrue(buffer.release());
+        assertEquals(3, detached.readableBytes());
+        assertTrue(detached.release());
+        assertEquals(0, detached.capacity());
+    }
+
+    @Test
+    public void test_predictor() {
+        AdaptiveSizePredictor predictor = new AdaptiveSizePredictor(1024);
+        assertEquals(1024, predictor.predict("a"));
+        predictor.record("a", 5000);
+        assertEquals(8192, predictor.predict("a"));
+        assertEquals(1024, predictor.predict("b"));
+        // 偶尔偏小不缩小，持续偏小才缩小
+        predictor.record("a", 100);
+        assertEquals(8192, predictor.predict("a"));
+        for (int i = 0; i < 8; i ++) {
+            predictor.record("a", 100);
+        }
+        assertTrue(predictor.predict("a") < 8192);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,323 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.codec;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.io.Bytes;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.codec.ChunkInputStream;
+import com.alibaba.dubbo.remoting.exchange.codec.ExchangeCodec;
+
+public class ChunkedExchangeCodecTest {
+
+    private static final int HEADER_LENGTH = 16;
+
+    private final ExchangeCodec codec = new ExchangeCodec();
+
+    private Channel getChannel(String parameters) {
+        URL url = URL.valueOf("dubbo://10.20.30.40:20880/demo?" + parameters);
+        return new AbstractMockChannel(url.addParameter(AbstractMockChannel.LOCAL_ADDRESS, url.getAddress())
+                .addParameter(AbstractMockChannel.REMOTE_ADDRESS, "127.0.0.1:12345"));
+    }
+
+    private static byte[] newData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i ++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static int countFrames(ChannelBuffer buffer) {
+        byte[] header = new byte[HEADER_LENGTH];
+        int index = buffer.readerIndex(), frames = 0;
+        while (index < buffer.writerIndex()) {
+            buffer.getBytes(index, header);
+            index += HEADER_LENGTH + (Bytes.bytes2int(header, 12) & 0x7fffffff);
+            frames ++;
+        }
+        return frames;
+    }
+
+    private Object decodeAll(Channel channel, ChannelBuffer buffer) throws IOException {
+        Object result = null;
+        while (buffer.readable()) {
+            Object msg = codec.decode(channel, buffer);
+            Assert.assertNotSame(Codec2.DecodeResult.NEED_MORE_INPUT, msg);
+            if (msg != null) {
+                Assert.assertNull(result);
+                result = msg;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testChunkedRequest() throws Exception {
+        Channel channel = getChannel(Constants.CHUNK_SIZE_KEY + "=16384");
+        Request request = new Request(1);
+        byte[] data = newData(100 * 1024);
+        request.setData(data);
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, buffer, request);
+        Assert.assertTrue(countFrames(buffer) > 1);
+
+        Object decoded = decodeAll(channel, buffer);
+        Assert.assertTrue(decoded instanceof Request);
+        Assert.assertEquals(1, ((Request) decoded).getId());
+        Assert.assertArrayEquals(data, (byte[]) ((Request) decoded).getData());
+    }
+
+    @Test
+    public void testChunkedResponseFedInPieces() throws Exception {
+        Channel channel = getChannel(Constants.CHUNK_SIZE_KEY + "=4096");
+        Response response = new Response(2);
+        byte[] data = newData(50 * 1024);
+        response.setResult(data);
+        ChannelBuffer encoded = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, encoded, response);
+
+        // 模拟网络每次只到1000字节，不完整的帧要回退读指针
+        ChannelBuffer cumulation = ChannelBuffers.dynamicBuffer(1024);
+        Object decoded = null;
+        while (encoded.readable()) {
+            cumulation.writeBytes(encoded, Math.min(1000, encoded.readableBytes()));
+            while (cumulation.readable()) {
+                int save = cumulation.readerIndex();
+                Object msg = codec.decode(channel, cumulation);
+                if (msg == Codec2.DecodeResult.NEED_MORE_INPUT) {
+                    cumulation.readerIndex(save);
+                    break;
+                }
+                if (msg != null) {
+                    decoded = msg;
+                }
+            }
+        }
+        Assert.assertTrue(decoded instanceof Response);
+        Assert.assertEquals(2, ((Response) decoded).getId());
+        Assert.assertArrayEquals(data, (byte[]) ((Response) decoded).getResult());
+    }
+
+    @Test
+    public void testSmallMessageIsSingleFrame() throws Exception {
+        Request request = new Request(3);
+        request.setData("hello");
+        ChannelBuffer chunked = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(getChannel(Constants.CHUNK_SIZE_KEY + "=16384"), chunked, request);
+        ChannelBuffer plain = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(getChannel("a=b"), plain, request);
+        Assert.assertEquals(plain, chunked);
+        Assert.assertEquals(1, countFrames(chunked));
+    }
+
+    @Test(expected = IOException.class)
+    public void testChunkedFrameWithoutChunkSize() throws Exception {
+        Request request = new Request(4);
+        request.setData(newData(10 * 1024));
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(getChannel(Constants.CHUNK_SIZE_KEY + "=1024"), buffer, request);
+        decodeAll(getChannel("a=b"), buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void testChunkPayloadExceeded() throws Exception {
+        Channel channel = getChannel(Constants.CHUNK_SIZE_KEY + "=1024&" + Constants.CHUNK_PAYLOAD_KEY + "=4096");
+        Request request = new Request(5);
+        request.setData(newData(10 * 1024));
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, buffer, request);
+    }
+
+    @Test
+    public void testFlushEachChunk() throws Exception {
+        Channel channel = getChannel(Constants.CHUNK_SIZE_KEY + "=4096");
+        Request request = new Request(6);
+        byte[] data = newData(50 * 1024);
+        request.setData(data);
+        FlushingBuffer buffer = new FlushingBuffer();
+        codec.encode(channel, buffer, request);
+        Assert.assertTrue(buffer.flushes > 1);
+        // 缓冲区里最多只有一个分片
+        Assert.assertTrue(buffer.maxReadable <= 4096 + HEADER_LENGTH);
+
+        Object decoded = decodeAll(channel, buffer.getOutput());
+        Assert.assertArrayEquals(data, (byte[]) ((Request) decoded).getData());
+    }
+
+    @Test
+    public void testStreamingDecode() throws Exception {
+        Channel channel = getChannel(Constants.CHUNK_SIZE_KEY + "=1024");
+        Request request = new Request(7);
+        request.setData(newData(10 * 1024));
+        ChannelBuffer encoded = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, encoded, request);
+        int frames = countFrames(encoded), bodyLength = encoded.readableBytes() - frames * HEADER_LENGTH;
+
+        ExchangeCodec streamingCodec = new ExchangeCodec() {
+            @Override
+            protected boolean isStreamingDecode(Channel channel, byte[] header) {
+                return true;
+            }
+
+            @Override
+            protected Object decodeBody(Channel channel, InputStream is, byte[] header) {
+                return is;
+            }
+        };
+        // 第一个分片到达就交出消息体
+        Object msg = streamingCodec.decode(channel, encoded);
+        Assert.assertTrue(msg instanceof ChunkInputStream);
+        ChunkInputStream is = (ChunkInputStream) msg;
+        Assert.assertFalse(is.isFinished());
+        Assert.assertEquals(1024, is.available());
+        Assert.assertEquals(1024, is.skip(1024));
+        while (encoded.readable()) {
+            Assert.assertNull(streamingCodec.decode(channel, encoded));
+        }
+        Assert.assertTrue(is.isFinished());
+        Assert.assertEquals(bodyLength - 1024, is.skip(Integer.MAX_VALUE));
+        Assert.assertEquals(-1, is.read());
+    }
+
+    @Test
+    public void testTooManyChunkStreams() throws Exception {
+        Channel channel = getChannel(Constants.CHUNK_SIZE_KEY + "=1024&" + Constants.CHUNK_STREAMS_KEY + "=1");
+        byte[] data = newData(4 * 1024);
+        Request first = new Request(8);
+        first.setData(data);
+        Request second = new Request(9);
+        second.setData(data);
+        ChannelBuffer encoded = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, encoded, first);
+        ChannelBuffer other = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, other, second);
+
+        // 两条消息的分片交错到达
+        ChannelBuffer interleaved = ChannelBuffers.dynamicBuffer(1024);
+        byte[] header = new byte[HEADER_LENGTH];
+        while (encoded.readable() || other.readable()) {
+            for (ChannelBuffer buffer : new ChannelBuffer[] {encoded, other}) {
+                if (buffer.readable()) {
+                    buffer.getBytes(buffer.readerIndex(), header);
+                    interleaved.writeBytes(buffer, HEADER_LENGTH + (Bytes.bytes2int(header, 12) & 0x7fffffff));
+                }
+            }
+        }
+        Request failed = null, decoded = null;
+        while (interleaved.readable()) {
+            Object msg = codec.decode(channel, interleaved);
+            if (msg != null) {
+                Request req = (Request) msg;
+                if (req.isBroken()) {
+                    Assert.assertNull(failed);
+                    failed = req;
+                } else {
+                    Assert.assertNull(decoded);
+                    decoded = req;
+                }
+            }
+        }
+        Assert.assertEquals(9, failed.getId());
+        Assert.assertTrue(failed.getData() instanceof IOException);
+        Assert.assertEquals(8, decoded.getId());
+        Assert.assertArrayEquals(data, (byte[]) decoded.getData());
+    }
+
+    @Test
+    public void testChunkBufferExceeded() throws Exception {
+        Channel channel = getChannel(Constants.CHUNK_SIZE_KEY + "=1024&" + Constants.CHUNK_BUFFER_KEY + "=2000");
+        Request request = new Request(10);
+        request.setData(newData(10 * 1024));
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, buffer, request);
+
+        // 请求以失败结束，余下的分片被跳过
+        Request decoded = (Request) decodeAll(channel, buffer);
+        Assert.assertEquals(10, decoded.getId());
+        Assert.assertTrue(decoded.isBroken());
+        Assert.assertTrue(decoded.getData() instanceof IOException);
+    }
+
+    @Test
+    public void testAbortAfterFlush() throws Exception {
+        Channel channel = getChannel(Constants.CHUNK_SIZE_KEY + "=1024");
+        Request request = new Request(11);
+        // 消息体写出几个分片之后才遇到不能序列化的对象
+        request.setData(new Object[] {newData(10 * 1024), new Object()});
+        FlushingBuffer buffer = new FlushingBuffer();
+        try {
+            codec.encode(channel, buffer, request);
+            Assert.fail();
+        } catch (Exception expected) {
+        }
+        Assert.assertTrue(buffer.flushes > 1);
+        ChannelBuffer output = buffer.getOutput();
+        // 最后一帧长度为0，带中止标记
+        byte[] last = new byte[16];
+        output.getBytes(output.writerIndex() - 16, last);
+        Assert.assertEquals(0, last[15]);
+        Assert.assertEquals(0x20, last[3] & 0x20);
+        Assert.assertNull(decodeAll(channel, output));
+
+        // 同一个id的后续消息不受影响
+        request.setData("hello");
+        ChannelBuffer next = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, next, request);
+        Assert.assertEquals("hello", ((Request) decodeAll(channel, next)).getData());
+    }
+
+    private static class FlushingBuffer extends DynamicChannelBuffer implements Flushable {
+
+        private final ChannelBuffer output = ChannelBuffers.dynamicBuffer(1024);
+
+        private int flushes;
+
+        private int maxReadable;
+
+        FlushingBuffer() {
+            super(256);
+        }
+
+        public void flush() {
+            maxReadable = Math.max(maxReadable, readableBytes());
+            output.writeBytes(this);
+            clear();
+            flushes ++;
+        }
+
+        ChannelBuffer getOutput() {
+            output.writeBytes(this);
+            clear();
+            return output;
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.io.Bytes;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+import com.alibaba.dubbo.remoting.compress.CompressorSupport;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.codec.ExchangeCodec;
+
+public class CompressedExchangeCodecTest {
+
+    private final ExchangeCodec codec = new ExchangeCodec();
+
+    private Channel getChannel(String parameters) {
+        URL url = URL.valueOf("dubbo://10.20.30.40:20880/demo?" + parameters);
+        return new AbstractMockChannel(url.addParameter(AbstractMockChannel.LOCAL_ADDRESS, url.getAddress())
+                .addParameter(AbstractMockChannel.REMOTE_ADDRESS, "127.0.0.1:12345"));
+    }
+
+    private static List<String> newRows(int count) {
+        List<String> rows = new ArrayList<String>();
+        for (int i = 0; i < count; i ++) {
+            rows.add("catalog item " + i + ", price " + (i % 100) + ", in stock");
+        }
+        return rows;
+    }
+
+    private static ChannelBuffer encode(ExchangeCodec codec, Channel channel, Object msg) throws Exception {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        codec.encode(channel, buffer, msg);
+        return buffer;
+    }
+
+    // 客户端收到一个声明了能解压请求的响应
+    private void receiveAcceptingResponse(Channel client, Channel server) throws Exception {
+        Response response = new Response(100);
+        response.setResult("ok");
+        codec.decode(client, encode(codec, server, response));
+    }
+
+    @Test
+    public void testCompressRequest() throws Exception {
+        Channel client = getChannel(Constants.COMPRESSOR_KEY + "=lz4");
+        Channel server = getChannel(Constants.COMPRESSOR_KEY + "=lz4");
+        Request request = new Request(1);
+        request.setData(newRows(1000));
+        ChannelBuffer plain = encode(codec, getChannel("a=b"), request);
+        long count = CompressorSupport.getCompressCount();
+        // 对端还没有声明能解压，不压缩
+        Assert.assertEquals(plain.readableBytes(), encode(codec, client, request).readableBytes());
+        Assert.assertEquals(count, CompressorSupport.getCompressCount());
+
+        receiveAcceptingResponse(client, server);
+        ChannelBuffer compressed = encode(codec, client, request);
+        Assert.assertEquals(count + 1, CompressorSupport.getCompressCount());
+        Assert.assertTrue(compressed.readableBytes() < plain.readableBytes() / 2);
+
+        Request decoded = (Request) codec.decode(server, compressed);
+        Assert.assertEquals(newRows(1000), decoded.getData());
+        Assert.assertFalse(compressed.readable());
+    }
+
+    @Test
+    public void testRequestNotCompressedForOldServer() throws Exception {
+        Channel client = getChannel(Constants.COMPRESSOR_KEY + "=lz4");
+        // 没有配置压缩的服务端，响应里不声明能解压
+        receiveAcceptingResponse(client, getChannel("a=b"));
+        Request request = new Request(5);
+        request.setData(newRows(1000));
+        Assert.assertEquals(encode(codec, getChannel("a=b"), request).readableBytes(),
+                encode(codec, client, request).readableBytes());
+    }
+
+    @Test
+    public void testSmallMessageNotCompressed() throws Exception {
+        Request request = new Request(2);
+        request.setData(newRows(10));
+        ChannelBuffer plain = encode(codec, getChannel("a=b"), request);
+        Channel client = getChannel(Constants.COMPRESSOR_KEY + "=lz4");
+        receiveAcceptingResponse(client, getChannel(Constants.COMPRESSOR_KEY + "=lz4"));
+        ChannelBuffer buffer = encode(codec, client, request);
+        Assert.assertEquals(plain.readableBytes(), buffer.readableBytes());
+        // 只多了能解压响应的标志
+        Assert.assertEquals(0x40, buffer.getByte(3));
+    }
+
+    @Test
+    public void testResponseCompressedOnlyForAcceptingPeer() throws Exception {
+        Response response = new Response(3);
+        response.setResult(newRows(1000));
+
+        Channel server = getChannel(Constants.COMPRESSOR_KEY + "=deflate");
+        ChannelBuffer plain = encode(codec, server, response);
+        Assert.assertEquals(Response.OK, plain.getByte(3));
+        // 声明能解压请求
+        Assert.assertEquals(0x40, plain.getByte(2) & 0x40);
+
+        // 收到旧版本的请求，仍不压缩
+        Request request = new Request(3);
+        request.setData("query");
+        codec.decode(server, encode(codec, getChannel("a=b"), request));
+        Assert.assertEquals(plain.readableBytes(), encode(codec, server, response).readableBytes());
+
+        codec.decode(server, encode(codec, getChannel(Constants.COMPRESSOR_KEY + "=deflate"), request));
+        ChannelBuffer compressed = encode(codec, server, response);
+        Assert.assertTrue(compressed.readableBytes() < plain.readableBytes() / 2);
+        Assert.assertEquals((byte) (Response.OK | 0x80), compressed.getByte(3));
+
+        Response decoded = (Response) codec.decode(getChannel("a=b"), compressed);
+        Assert.assertEquals(Response.OK, decoded.getStatus());
+        Assert.assertEquals(newRows(1000), decoded.getResult());
+    }
+
+    @Test
+    public void testThreshold() throws Exception {
+        Request request = new Request(4);
+        request.setData(newRows(1000));
+        Channel channel = getChannel(Constants.COMPRESSOR_KEY + "=lz4&" + Constants.COMPRESS_THRESHOLD_KEY + "=10000000");
+        receiveAcceptingResponse(channel, getChannel(Constants.COMPRESSOR_KEY + "=lz4"));
+        ChannelBuffer buffer = encode(codec, channel, request);
+        Assert.assertEquals(encode(codec, getChannel("a=b"), request).readableBytes(), buffer.readableBytes());
+        Assert.assertEquals(buffer.readableBytes() - 16, Bytes.bytes2int(new byte[] {buffer.getByte(12),
+                buffer.getByte(13), buffer.getByte(14), buffer.getByte(15)}));
+    }
+
+}
\ No newline at end of file
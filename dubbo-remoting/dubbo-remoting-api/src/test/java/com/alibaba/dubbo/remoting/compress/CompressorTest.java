@@ -0,0 +1,121 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.compress;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+
+public class CompressorTest {
+
+    private static byte[] text(int length) {
+        String words = "dubbo catalog search result page item price stock ";
+        byte[] data = new byte[length];
+        Random random = new Random(1);
+        for (int i = 0; i < length; ) {
+            int start = random.nextInt(words.length() - 8);
+            for (int j = 0; j < 8 && i < length; j ++) {
+                data[i ++] = (byte) words.charAt(start + j);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(2).nextBytes(data);
+        return data;
+    }
+
+    private static void assertRoundTrip(Compressor compressor, byte[] data) throws IOException {
+        byte[] compressed = compressor.compress(data, 0, data.length);
+        byte[] decompressed = new byte[data.length];
+        compressor.decompress(compressed, 0, compressed.length, decompressed);
+        Assert.assertArrayEquals(data, decompressed);
+    }
+
+    @Test
+    public void testLz4RoundTrip() throws Exception {
+        Compressor lz4 = new Lz4Compressor();
+        int[] lengths = {0, 1, 12, 13, 100, 4096, 70000, 300000};
+        for (int length : lengths) {
+            assertRoundTrip(lz4, text(length));
+            assertRoundTrip(lz4, random(length));
+            assertRoundTrip(lz4, new byte[length]);
+        }
+    }
+
+    @Test
+    public void testLz4Ratio() throws Exception {
+        byte[] data = text(64 * 1024);
+        Assert.assertTrue(new Lz4Compressor().compress(data, 0, data.length).length < data.length / 2);
+        byte[] zeros = new byte[64 * 1024];
+        Assert.assertTrue(new Lz4Compressor().compress(zeros, 0, zeros.length).length < 512);
+    }
+
+    @Test
+    public void testLz4Offset() throws Exception {
+        byte[] data = text(10000);
+        byte[] compressed = new Lz4Compressor().compress(data, 100, 5000);
+        byte[] padded = new byte[compressed.length + 20];
+        System.arraycopy(compressed, 0, padded, 10, compressed.length);
+        byte[] decompressed = new byte[5000];
+        new Lz4Compressor().decompress(padded, 10, compressed.length, decompressed);
+        for (int i = 0; i < 5000; i ++) {
+            Assert.assertEquals(data[100 + i], decompressed[i]);
+        }
+    }
+
+    @Test
+    public void testLz4Malformed() throws Exception {
+        byte[] data = text(10000);
+        byte[] compressed = new Lz4Compressor().compress(data, 0, data.length);
+        try {
+            new Lz4Compressor().decompress(compressed, 0, compressed.length / 2, new byte[data.length]);
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+        try {
+            new Lz4Compressor().decompress(compressed, 0, compressed.length, new byte[data.length - 1]);
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testDeflateRoundTrip() throws Exception {
+        Compressor deflate = new DeflateCompressor();
+        int[] lengths = {0, 1, 100, 70000};
+        for (int length : lengths) {
+            assertRoundTrip(deflate, text(length));
+            assertRoundTrip(deflate, random(length));
+        }
+    }
+
+    @Test
+    public void testGetCompressor() {
+        Assert.assertNull(CompressorSupport.getCompressor(URL.valueOf("dubbo://127.0.0.1:20880/demo")));
+        Compressor compressor = CompressorSupport.getCompressor(URL.valueOf("dubbo://127.0.0.1:20880/demo?compressor=deflate"));
+        Assert.assertTrue(compressor instanceof DeflateCompressor);
+        Assert.assertSame(compressor, CompressorSupport.getCompressorById(compressor.getId()));
+        Assert.assertTrue(CompressorSupport.getCompressorById((byte) 1) instanceof Lz4Compressor);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support.header;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.remoting.exchange.support.ExchangeHandlerAdapter;
+
+public class HeaderExchangeChannelTest {
+
+    private MockChannel channel;
+
+    private HeaderExchangeHandler handler;
+
+    @Before
+    public void setUp() {
+        channel = new MockChannel() {
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+
+            @Override
+            public URL getUrl() {
+                return URL.valueOf("dubbo://127.0.0.1:20880/test?timeout=5000");
+            }
+        };
+        handler = new HeaderExchangeHandler(new ExchangeHandlerAdapter() {
+        });
+    }
+
+    @Test
+    public void test_received_response() throws Exception {
+        ExchangeChannel exchangeChannel = HeaderExchangeChannel.getOrAddChannel(channel);
+        ResponseFuture future = exchangeChannel.request("hello");
+        Request request = (Request) channel.getSentObjects().get(0);
+        Assert.assertTrue(DefaultFuture.hasFuture(channel));
+
+        Response response = new Response(request.getId());
+        response.setResult("world");
+        handler.received(channel, response);
+
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals("world", future.get());
+        Assert.assertFalse(DefaultFuture.hasFuture(channel));
+    }
+
+    @Test
+    public void test_close_fails_pending() throws Exception {
+        ExchangeChannel exchangeChannel = HeaderExchangeChannel.getOrAddChannel(channel);
+        ResponseFuture future1 = exchangeChannel.request("a");
+        ResponseFuture future2 = exchangeChannel.request("b");
+        exchangeChannel.close();
+
+        Assert.assertTrue(future1.isDone());
+        Assert.assertTrue(future2.isDone());
+        try {
+            future1.get();
+            Assert.fail();
+        } catch (RemotingException expected) {
+            Assert.assertTrue(expected.getMessage().contains("inactive"));
+        }
+        Assert.assertFalse(DefaultFuture.hasFuture(channel));
+    }
+
+    @Test
+    public void test_disconnect_fails_only_its_connection() throws Exception {
+        final MockChannel[] current = new MockChannel[] {new MockChannel()};
+        // 客户端的属性都落在当前连接上
+        MockChannel client = new MockChannel() {
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+
+            @Override
+            public URL getUrl() {
+                return URL.valueOf("dubbo://127.0.0.1:20880/test?timeout=5000");
+            }
+
+            @Override
+            public Object getAttribute(String key) {
+                return current[0].getAttribute(key);
+            }
+
+            @Override
+            public void setAttribute(String key, Object value) {
+                current[0].setAttribute(key, value);
+            }
+
+            @Override
+            public void removeAttribute(String key) {
+                current[0].removeAttribute(key);
+            }
+        };
+        ExchangeChannel exchangeChannel = HeaderExchangeChannel.getOrAddChannel(client);
+        MockChannel oldConnection = current[0];
+        ResponseFuture oldFuture = exchangeChannel.request("a");
+
+        current[0] = new MockChannel();
+        ResponseFuture newFuture = exchangeChannel.request("b");
+        Request newRequest = (Request) client.getSentObjects().get(1);
+
+        // 旧连接迟到的断开事件
+        handler.disconnected(oldConnection);
+        Assert.assertTrue(oldFuture.isDone());
+        Assert.assertFalse(newFuture.isDone());
+
+        Response response = new Response(newRequest.getId());
+        response.setResult("world");
+        handler.received(current[0], response);
+        Assert.assertEquals("world", newFuture.get());
+    }
+
+    @Test
+    public void test_request_fails_fast_without_connection() throws Exception {
+        // 断开的客户端没有当前连接，属性设置不上
+        MockChannel client = new MockChannel() {
+            @Override
+            public URL getUrl() {
+                return URL.valueOf("dubbo://127.0.0.1:20880/test?timeout=5000");
+            }
+
+            @Override
+            public void setAttribute(String key, Object value) {
+            }
+        };
+        ExchangeChannel exchangeChannel = HeaderExchangeChannel.getOrAddChannel(client);
+        try {
+            exchangeChannel.request("a");
+            Assert.fail();
+        } catch (RemotingException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("not connected"));
+        }
+        Assert.assertTrue(client.getSentObjects().isEmpty());
+    }
+
+}
\ No newline at end of file
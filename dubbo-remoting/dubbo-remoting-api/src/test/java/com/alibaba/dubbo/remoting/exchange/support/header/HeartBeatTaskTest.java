@@ -18,15 +18,16 @@ package com.alibaba.dubbo.remoting.exchange.support.header;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
-import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.Client;
 import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.transport.ReconnectScheduler;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
@@ -36,17 +37,9 @@ public class HeartBeatTaskTest {
     private URL url = URL.valueOf("dubbo://localhost:20880");
     
     private MockChannel channel;
-    private HeartBeatTask task;
     
     @Before
     public void setup() throws Exception {
-        task = new HeartBeatTask( new HeartBeatTask.ChannelProvider() {
-
-            public Collection<Channel> getChannels() {
-                return Collections.<Channel>singletonList(channel);
-            }
-        }, 1000, 1000 * 3);
-
         channel = new MockChannel() {
 
             @Override
@@ -64,7 +57,7 @@ public class HeartBeatTaskTest {
         channel.setAttribute(
                 HeaderExchangeHandler.KEY_WRITE_TIMESTAMP, System.currentTimeMillis());
         Thread.sleep( 2000L );
-        task.run();
+        HeartBeatTask.check(channel, 1000, 1000 * 3, System.currentTimeMillis());
         List<Object> objects = channel.getSentObjects();
         Assert.assertTrue(objects.size() > 0);
         Object obj = objects.get(0);
@@ -73,4 +66,35 @@ public class HeartBeatTaskTest {
         Assert.assertTrue(request.isHeartbeat());
     }
     
-}
+    @Test
+    public void testReconnectThroughScheduler() throws Exception {
+        final CountDownLatch reconnected = new CountDownLatch(1);
+        final MockChannel client = new ReconnectClient(reconnected);
+        client.setAttribute(HeaderExchangeHandler.KEY_READ_TIMESTAMP, System.currentTimeMillis() - 5000);
+        long attempts = ReconnectScheduler.getAttemptCount();
+        HeartBeatTask.check(client, 1000, 1000 * 3, System.currentTimeMillis());
+        Assert.assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(ReconnectScheduler.getAttemptCount() > attempts);
+    }
+
+    private static class ReconnectClient extends MockChannel implements Client {
+
+        private final CountDownLatch reconnected;
+
+        ReconnectClient(CountDownLatch reconnected) {
+            this.reconnected = reconnected;
+        }
+
+        public void reconnect() {
+            reconnected.countDown();
+        }
+
+        public void reset(URL url) {
+        }
+
+        @Deprecated
+        public void reset(com.alibaba.dubbo.common.Parameters parameters) {
+        }
+    }
+
+}
\ No newline at end of file
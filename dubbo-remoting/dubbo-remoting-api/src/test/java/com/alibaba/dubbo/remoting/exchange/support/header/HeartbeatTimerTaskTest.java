@@ -0,0 +1,63 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support.header;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.remoting.exchange.Request;
+
+public class HeartbeatTimerTaskTest {
+
+    @Test
+    public void testHeartbeatOnIdleChannel() throws Exception {
+        MockChannel channel = new MockChannel() {
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+        };
+        long idle = System.currentTimeMillis() - 1000;
+        channel.setAttribute(HeaderExchangeHandler.KEY_READ_TIMESTAMP, idle);
+        channel.setAttribute(HeaderExchangeHandler.KEY_WRITE_TIMESTAMP, idle);
+        HeartbeatTimerTask.restart(channel, 200, 60000);
+        Thread.sleep(500);
+        List<Object> objects = channel.getSentObjects();
+        Assert.assertTrue(objects.size() > 0);
+        Assert.assertTrue(((Request) objects.get(0)).isHeartbeat());
+
+        HeartbeatTimerTask.restart(channel, 0, 0);
+        Assert.assertNull(channel.getAttribute(HeartbeatTimerTask.KEY));
+        Thread.sleep(300);
+        int sent = channel.getSentObjects().size();
+        Thread.sleep(500);
+        Assert.assertEquals(sent, channel.getSentObjects().size());
+    }
+
+    @Test
+    public void testStopWhenDisconnected() throws Exception {
+        MockChannel channel = new MockChannel();
+        long idle = System.currentTimeMillis() - 1000;
+        channel.setAttribute(HeaderExchangeHandler.KEY_READ_TIMESTAMP, idle);
+        channel.setAttribute(HeaderExchangeHandler.KEY_WRITE_TIMESTAMP, idle);
+        HeartbeatTimerTask.restart(channel, 200, 60000);
+        Thread.sleep(500);
+        Assert.assertEquals(0, channel.getSentObjects().size());
+    }
+
+}
\ No newline at end of file
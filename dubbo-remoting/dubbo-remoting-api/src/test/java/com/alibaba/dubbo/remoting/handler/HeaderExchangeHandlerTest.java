@@ -186,6 +186,43 @@ public class HeaderExchangeHandlerTest {
         hexhandler.received(mchannel, request);
     }
 
+    @Test
+    public void test_received_request_expired_discard() throws RemotingException{
+        final Request request = new Request();
+        request.setTwoWay(true);
+        request.setData(new Person("charles"));
+        request.setDeadline(System.currentTimeMillis() - 1);
+
+        final Channel mchannel = new MockedChannel(){
+            @Override
+            public void send(Object message) throws RemotingException {
+                Assert.fail();
+            }
+        };
+        HeaderExchangeHandler hexhandler = new HeaderExchangeHandler(new MockedExchangeHandler(){
+
+            @Override
+            public Object reply(ExchangeChannel channel, Object request) throws RemotingException {
+                Assert.fail();
+                throw new RemotingException(channel,"");
+            }
+        });
+        hexhandler.received(mchannel, request);
+
+        final AtomicInteger count = new AtomicInteger(0);
+        request.setDeadline(System.currentTimeMillis() + 60000);
+        hexhandler = new HeaderExchangeHandler(new MockedExchangeHandler(){
+
+            @Override
+            public Object reply(ExchangeChannel channel, Object request) throws RemotingException {
+                count.incrementAndGet();
+                return request;
+            }
+        });
+        hexhandler.received(new MockedChannel(), request);
+        Assert.assertEquals(1, count.get());
+    }
+
     private class BizException extends RuntimeException{
         private static final long serialVersionUID = 1L;
     }
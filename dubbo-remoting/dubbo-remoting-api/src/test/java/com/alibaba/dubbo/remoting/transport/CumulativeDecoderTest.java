@@ -0,0 +1,95 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+
+public class CumulativeDecoderTest {
+
+    // 一个字节的长度加内容
+    private final Codec2 codec = new Codec2() {
+
+        public void encode(Channel channel, ChannelBuffer buffer, Object message) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        public Object decode(Channel channel, ChannelBuffer buffer) throws IOException {
+            int readable = buffer.readableBytes();
+            if (readable < 1 || readable < 1 + buffer.getByte(buffer.readerIndex())) {
+                return DecodeResult.NEED_MORE_INPUT;
+            }
+            int length = buffer.readByte();
+            if (length < 0) {
+                throw new IOException("bad length " + length);
+            }
+            byte[] data = new byte[length];
+            buffer.readBytes(data);
+            return new String(data);
+        }
+    };
+
+    private final List<Object> received = new ArrayList<Object>();
+
+    private final ChannelHandlerAdapter handler = new ChannelHandlerAdapter() {
+        @Override
+        public void received(Channel channel, Object message) {
+            received.add(message);
+        }
+    };
+
+    @Test
+    public void test_splitMessage() throws Exception {
+        CumulativeDecoder decoder = new CumulativeDecoder(codec, 16);
+        byte[] array = {2, 'a', 'b', 3, 'c'};
+        decoder.decode(null, handler, array, 0, array.length);
+        assertEquals(Arrays.asList("ab"), received);
+        // 读数组被复用，半包已经拷出
+        Arrays.fill(array, (byte) 0);
+        array[0] = 'd';
+        array[1] = 'e';
+        array[2] = 1;
+        array[3] = 'f';
+        decoder.decode(null, handler, array, 0, 4);
+        assertEquals(Arrays.asList("ab", "cde", "f"), received);
+    }
+
+    @Test
+    public void test_discardOnError() throws Exception {
+        CumulativeDecoder decoder = new CumulativeDecoder(codec, 16);
+        byte[] array = {3, 'a'};
+        decoder.decode(null, handler, array, 0, array.length);
+        try {
+            decoder.decode(null, handler, new byte[] {'b', 'c', -1}, 0, 3);
+            fail();
+        } catch (IOException expected) {
+        }
+        decoder.decode(null, handler, new byte[] {1, 'x'}, 0, 2);
+        assertEquals(Arrays.asList("abc", "x"), received);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.WriteBufferFullException;
+
+public class PendingWriteCounterTest {
+
+    @Test
+    public void test_waterMarks() {
+        PendingWriteCounter counter = new PendingWriteCounter(100, 50);
+        counter.increment(100);
+        assertTrue(counter.isWritable());
+        counter.increment(1);
+        assertFalse(counter.isWritable());
+        assertEquals(101, counter.getPendingBytes());
+        // 高低水位之间保持不可写
+        counter.decrement(40);
+        assertFalse(counter.isWritable());
+        counter.decrement(11);
+        assertTrue(counter.isWritable());
+        assertEquals(50, counter.getPendingBytes());
+    }
+
+    @Test
+    public void test_defaultLowWaterMark() {
+        // 只配高水位时低水位取一半，留出回差
+        PendingWriteCounter counter = new PendingWriteCounter(URL.valueOf("dubbo://127.0.0.1:20880/Demo?write.buffer.high=100"));
+        assertEquals(100, counter.getHighWaterMark());
+        assertEquals(50, counter.getLowWaterMark());
+        counter = new PendingWriteCounter(URL.valueOf("dubbo://127.0.0.1:20880/Demo?write.buffer.high=100&write.buffer.low=200"));
+        assertEquals(100, counter.getLowWaterMark());
+    }
+
+    @Test
+    public void test_failFast() {
+        PendingWriteCounter counter = new PendingWriteCounter(10, 5);
+        counter.increment(20);
+        try {
+            counter.awaitWritable(null, 0);
+            fail();
+        } catch (WriteBufferFullException e) {
+            assertEquals(20, e.getPendingBytes());
+        }
+        counter.decrement(20);
+    }
+
+    @Test
+    public void test_blockUntilWritable() throws Exception {
+        final PendingWriteCounter counter = new PendingWriteCounter(10, 5);
+        counter.increment(20);
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                counter.decrement(20);
+            }
+        }).start();
+        counter.awaitWritable(null, 5000);
+        assertTrue(counter.isWritable());
+    }
+
+}
\ No newline at end of file
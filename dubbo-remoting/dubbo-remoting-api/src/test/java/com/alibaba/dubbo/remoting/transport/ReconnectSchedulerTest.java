@@ -0,0 +1,112 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+
+public class ReconnectSchedulerTest {
+
+    @Test
+    public void testBackoff() {
+        for (int i = 0; i < 100; i++) {
+            long first = ReconnectScheduler.backoff(100, 1000, 0);
+            Assert.assertTrue(first >= 50 && first <= 100);
+            long third = ReconnectScheduler.backoff(100, 1000, 2);
+            Assert.assertTrue(third >= 200 && third <= 400);
+            long capped = ReconnectScheduler.backoff(100, 1000, 30);
+            Assert.assertTrue(capped >= 500 && capped <= 1000);
+        }
+    }
+
+    @Test
+    public void testReconnectBackoff() throws Exception {
+        long attempts = ReconnectScheduler.getAttemptCount();
+        long failures = ReconnectScheduler.getFailureCount();
+        FailingClient client = new FailingClient(URL.valueOf("mock://127.0.0.1:9090/?check=false&reconnect=100&reconnect.max.period=800"));
+        try {
+            Thread.sleep(2000);
+            // 固定间隔会有近20次，退避后只有几次
+            int connects = client.connects.get();
+            Assert.assertTrue("connects: " + connects, connects >= 3 && connects <= 10);
+            Assert.assertTrue(ReconnectScheduler.getAttemptCount() - attempts >= connects - 1);
+            Assert.assertTrue(ReconnectScheduler.getFailureCount() - failures >= connects - 1);
+            Assert.assertTrue(ReconnectScheduler.getDisconnectedCount() >= 1);
+        } finally {
+            client.close();
+        }
+        int connects = client.connects.get();
+        Thread.sleep(1000);
+        Assert.assertEquals(connects, client.connects.get());
+    }
+
+    @Test
+    public void testBackoffSharedByAddress() throws Exception {
+        URL url = URL.valueOf("mock://127.0.0.1:9091/?check=false&reconnect=100&reconnect.max.period=800");
+        FailingClient first = new FailingClient(url);
+        FailingClient second = null;
+        try {
+            Thread.sleep(500);
+            int failures = ReconnectScheduler.getFailures("127.0.0.1:9091");
+            Assert.assertTrue("failures: " + failures, failures > 0);
+            // 同一地址的新连接沿用已有的失败次数
+            second = new FailingClient(url);
+            Assert.assertTrue(ReconnectScheduler.getFailures("127.0.0.1:9091") >= failures);
+            Assert.assertEquals(0, ReconnectScheduler.getFailures("127.0.0.1:9092"));
+        } finally {
+            first.close();
+            if (second != null) {
+                second.close();
+            }
+        }
+        // 地址上的连接都关闭后移除
+        Assert.assertEquals(0, ReconnectScheduler.getFailures("127.0.0.1:9091"));
+    }
+
+    static class FailingClient extends AbstractClient {
+
+        final AtomicInteger connects = new AtomicInteger();
+
+        FailingClient(URL url) throws RemotingException {
+            super(url, new ChannelHandlerAdapter());
+        }
+
+        protected void doOpen() throws Throwable {
+        }
+
+        protected void doClose() throws Throwable {
+        }
+
+        protected void doConnect() throws Throwable {
+            connects.incrementAndGet();
+            throw new RemotingException(getUrl().toInetSocketAddress(), null, "refused");
+        }
+
+        protected void doDisConnect() throws Throwable {
+        }
+
+        protected Channel getChannel() {
+            return null;
+        }
+    }
+
+}
\ No newline at end of file
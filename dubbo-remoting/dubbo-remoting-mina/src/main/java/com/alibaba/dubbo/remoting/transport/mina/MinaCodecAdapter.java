@@ -31,6 +31,8 @@ import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
 import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
 import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.PooledChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.PooledChannelBufferFactory;
 
 /**
  * MinaCodecAdapter.
@@ -51,12 +53,20 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
 
     private final int            bufferSize;
 
+    private final boolean        pooled;
+
     public MinaCodecAdapter(Codec2 codec, URL url, ChannelHandler handler) {
         this.codec = codec;
         this.url = url;
         this.handler = handler;
         int b = url.getPositiveParameter(Constants.BUFFER_KEY, Constants.DEFAULT_BUFFER_SIZE);
         this.bufferSize = b >= Constants.MIN_BUFFER_SIZE && b <= Constants.MAX_BUFFER_SIZE ? b : Constants.DEFAULT_BUFFER_SIZE;
+        this.pooled = PooledChannelBufferFactory.isPooled(url);
+    }
+
+    private ChannelBuffer newBuffer(int capacity) {
+        return pooled ? PooledChannelBufferFactory.getInstance().getBuffer(capacity)
+                : ChannelBuffers.dynamicBuffer(capacity);
     }
 
     public ProtocolEncoder getEncoder() {
@@ -73,14 +83,23 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
         }
 
         public void encode(IoSession session, Object msg, ProtocolEncoderOutput out) throws Exception {
-            ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+            ChannelBuffer buffer = newBuffer(1024);
             MinaChannel channel = MinaChannel.getOrAddChannel(session, url, handler);
             try {
             	codec.encode(channel, buffer, msg);
+                if (pooled) {
+                    // 拷贝到mina自己分配的ByteBuffer中，编码用的数组马上归还
+                    ByteBuffer data = ByteBuffer.allocate(buffer.readableBytes());
+                    data.put(buffer.toByteBuffer());
+                    data.flip();
+                    out.write(data);
+                } else {
+                    out.write(ByteBuffer.wrap(buffer.toByteBuffer()));
+                }
             } finally {
+                PooledChannelBufferFactory.release(buffer);
                 MinaChannel.removeChannelIfDisconnectd(session);
             }
-            out.write(ByteBuffer.wrap(buffer.toByteBuffer()));
             out.flush();
         }
     }
@@ -96,12 +115,12 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
             ChannelBuffer frame;
 
             if (buffer.readable()) {
-                if (buffer instanceof DynamicChannelBuffer) {
+                if (buffer instanceof DynamicChannelBuffer || buffer instanceof PooledChannelBuffer) {
                     buffer.writeBytes(in.buf());
                     frame = buffer;
                 } else {
                     int size = buffer.readableBytes() + in.remaining();
-                    frame = ChannelBuffers.dynamicBuffer(size > bufferSize ? size : bufferSize);
+                    frame = newBuffer(size > bufferSize ? size : bufferSize);
                     frame.writeBytes(buffer, buffer.readableBytes());
                     frame.writeBytes(in.buf());
                 }
@@ -141,12 +160,15 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
                     buffer = frame;
                 } else {
                     buffer = ChannelBuffers.EMPTY_BUFFER;
+                    PooledChannelBufferFactory.release(frame);
                 }
                 MinaChannel.removeChannelIfDisconnectd(session);
             }
         }
 
         public void dispose(IoSession session) throws Exception {
+            PooledChannelBufferFactory.release(buffer);
+            buffer = ChannelBuffers.EMPTY_BUFFER;
         }
 
         public void finishDecode(IoSession session, ProtocolDecoderOutput out) throws Exception {
@@ -0,0 +1,162 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * 写合并，flush.batch=true时由NettyServer、NettyClient装在encoder之下。
+ * <p>
+ * 没有未完成的写时消息直接写出，不增加延迟；上一次写还没写进socket时，后续编码好的消息先暂存，
+ * 等上一次写完成（或累计到flush.batch.bytes）后合成一个composite buffer一次写出。
+ * 合并的程度随socket的拥塞程度自动调整，不需要定时器。
+ * 每个原始消息的future在合并写完成后分别通知。
+ */
+public class FlushBatchHandler extends SimpleChannelDownstreamHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlushBatchHandler.class);
+
+    static final String NAME = "batch";
+
+    private static final AtomicLong FLUSHES = new AtomicLong();
+
+    private static final AtomicLong MESSAGES = new AtomicLong();
+
+    private final int maxBytes;
+
+    private final List<ChannelBuffer> buffers = new ArrayList<ChannelBuffer>();
+
+    private final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+
+    private int pendingBytes;
+
+    // 已交给下层还没有完成的写
+    private int writing;
+
+    public FlushBatchHandler(URL url) {
+        this.maxBytes = url.getPositiveParameter(Constants.FLUSH_BATCH_BYTES_KEY, Constants.DEFAULT_FLUSH_BATCH_BYTES);
+    }
+
+    /**
+     * 写出的次数。
+     */
+    public static long getFlushCount() {
+        return FLUSHES.get();
+    }
+
+    /**
+     * 写出的消息数，除以{@link #getFlushCount()}即平均每次合并的消息数。
+     */
+    public static long getMessageCount() {
+        return MESSAGES.get();
+    }
+
+    @Override
+    public void writeRequested(final ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (! (e.getMessage() instanceof ChannelBuffer)) {
+            ctx.sendDownstream(e);
+            return;
+        }
+        ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
+        synchronized (this) {
+            buffers.add(buffer);
+            futures.add(e.getFuture());
+            pendingBytes += buffer.readableBytes();
+            if (writing == 0 || pendingBytes >= maxBytes) {
+                flush(ctx);
+            }
+        }
+    }
+
+    @Override
+    public void closeRequested(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        // 关闭前写出暂存的消息
+        synchronized (this) {
+            flush(ctx);
+        }
+        super.closeRequested(ctx, e);
+    }
+
+    // 调用方持有锁，在锁内写出以保证消息顺序
+    private void flush(final ChannelHandlerContext ctx) {
+        int size = buffers.size();
+        if (size == 0) {
+            return;
+        }
+        ChannelFuture future;
+        Object message;
+        if (size == 1) {
+            future = futures.get(0);
+            message = buffers.get(0);
+        } else {
+            final ChannelFuture[] originals = futures.toArray(new ChannelFuture[size]);
+            future = Channels.future(ctx.getChannel());
+            future.addListener(new ChannelFutureListener() {
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    for (ChannelFuture original : originals) {
+                        if (future.isSuccess()) {
+                            original.setSuccess();
+                        } else if (future.isCancelled()) {
+                            original.cancel();
+                        } else {
+                            original.setFailure(future.getCause());
+                        }
+                    }
+                }
+            });
+            message = ChannelBuffers.wrappedBuffer(buffers.toArray(new ChannelBuffer[size]));
+        }
+        FLUSHES.incrementAndGet();
+        MESSAGES.addAndGet(size);
+        if (size > 1 && logger.isDebugEnabled()) {
+            logger.debug("Coalesced " + size + " messages (" + pendingBytes + " bytes) into one write to " + ctx.getChannel().getRemoteAddress());
+        }
+        // 先清空再写，IO线程上的写可能在write里就完成并回调
+        buffers.clear();
+        futures.clear();
+        pendingBytes = 0;
+        writing ++;
+        future.addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) throws Exception {
+                synchronized (FlushBatchHandler.this) {
+                    writing --;
+                    if (writing == 0) {
+                        flush(ctx);
+                    }
+                }
+            }
+        });
+        Channels.write(ctx, future, message);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.common.status.StatusChecker;
+
+/**
+ * 写合并（flush.batch）的写出次数和平均每次合并的消息数
+ */
+@Activate
+public class FlushBatchStatusChecker implements StatusChecker {
+
+    public Status check() {
+        long flushes = FlushBatchHandler.getFlushCount();
+        if (flushes == 0) {
+            return new Status(Status.Level.UNKNOWN);
+        }
+        long messages = FlushBatchHandler.getMessageCount();
+        return new Status(Status.Level.OK, "flushes:" + flushes + ",messages:" + messages
+                + ",avg:" + String.format("%.2f", (double) messages / flushes));
+    }
+
+}
\ No newline at end of file
@@ -21,6 +21,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.util.internal.DeadLockProofWorker;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
@@ -29,6 +30,7 @@ import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.RemotingException;
 import com.alibaba.dubbo.remoting.transport.AbstractChannel;
+import com.alibaba.dubbo.remoting.transport.PendingWriteCounter;
 
 /**
  * NettyChannel.
@@ -46,12 +48,16 @@ final class NettyChannel extends AbstractChannel {
 
     private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
 
+    private final PendingWriteCounter pendingWrites;
+
     private NettyChannel(org.jboss.netty.channel.Channel channel, URL url, ChannelHandler handler){
         super(url, handler);
         if (channel == null) {
             throw new IllegalArgumentException("netty channel == null;");
         }
         this.channel = channel;
+        this.pendingWrites = new PendingWriteCounter(url);
+        attributes.put(PendingWriteCounter.KEY, pendingWrites);
     }
 
     static NettyChannel getOrAddChannel(org.jboss.netty.channel.Channel ch, URL url, ChannelHandler handler) {
@@ -89,8 +95,15 @@ final class NettyChannel extends AbstractChannel {
         return channel.isConnected();
     }
 
+    PendingWriteCounter getPendingWrites() {
+        return pendingWrites;
+    }
+
     public void send(Object message, boolean sent) throws RemotingException {
         super.send(message, sent);
+        // 对端读得慢时待写数据超过高水位，快速失败或有限等待，避免堆积到OOM；IO线程上不能等待
+        pendingWrites.awaitWritable(this, DeadLockProofWorker.PARENT.get() != null ? 0
+                : getUrl().getParameter(Constants.WRITE_BLOCK_TIMEOUT_KEY, 0));
         
         boolean success = true;
         int timeout = 0;
@@ -93,6 +93,10 @@ public class NettyClient extends AbstractClient {
                 NettyCodecAdapter adapter = new NettyCodecAdapter(getCodec(), getUrl(), NettyClient.this);
                 ChannelPipeline pipeline = Channels.pipeline();
                 pipeline.addLast("decoder", adapter.getDecoder());
+                if (getUrl().getParameter(Constants.FLUSH_BATCH_KEY, false)) {
+                    // 写合并处理编码后的消息，放在encoder之下
+                    pipeline.addLast(FlushBatchHandler.NAME, new FlushBatchHandler(getUrl()));
+                }
                 pipeline.addLast("encoder", adapter.getEncoder());
                 pipeline.addLast("handler", nettyHandler);
                 return pipeline;
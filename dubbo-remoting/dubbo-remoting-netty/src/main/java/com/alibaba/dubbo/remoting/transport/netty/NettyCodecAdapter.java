@@ -15,24 +15,31 @@
  */
 package com.alibaba.dubbo.remoting.transport.netty;
 
+import java.io.Flushable;
 import java.io.IOException;
+import java.net.SocketAddress;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelHandler.Sharable;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.remoting.Codec2;
 import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.PooledChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.PooledChannelBufferFactory;
+import com.alibaba.dubbo.remoting.transport.PendingWriteCounter;
 
 /**
  * NettyCodecAdapter.
@@ -50,6 +57,10 @@ final class NettyCodecAdapter {
     private final URL            url;
     
     private final int            bufferSize;
+
+    private final boolean        pooled;
+
+    private final boolean        chunked;
     
     private final com.alibaba.dubbo.remoting.ChannelHandler handler;
 
@@ -59,6 +70,8 @@ final class NettyCodecAdapter {
         this.handler = handler;
         int b = url.getPositiveParameter(Constants.BUFFER_KEY, Constants.DEFAULT_BUFFER_SIZE);
         this.bufferSize = b >= Constants.MIN_BUFFER_SIZE && b <= Constants.MAX_BUFFER_SIZE ? b : Constants.DEFAULT_BUFFER_SIZE;
+        this.pooled = PooledChannelBufferFactory.isPooled(url);
+        this.chunked = url.getParameter(Constants.CHUNK_SIZE_KEY, Constants.DEFAULT_CHUNK_SIZE) > 0;
     }
 
     public ChannelHandler getEncoder() {
@@ -69,20 +82,79 @@ final class NettyCodecAdapter {
         return decoder;
     }
 
+    /**
+     * 编码到池化的数组中，直接包装成netty的buffer写出，写完成（含失败）后归还数组。
+     * 初始容量由codec按消息类型预测。写出的字节数计入通道的PendingWriteCounter。
+     * 配置了分片时每写完一个分片就先写出.
+     */
     @Sharable
-    private class InternalEncoder extends OneToOneEncoder {
+    private class InternalEncoder extends SimpleChannelDownstreamHandler {
 
         @Override
-        protected Object encode(ChannelHandlerContext ctx, Channel ch, Object msg) throws Exception {
-            com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer =
-                com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(1024);
-            NettyChannel channel = NettyChannel.getOrAddChannel(ch, url, handler);
+        public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            Object msg = e.getMessage();
+            if (msg instanceof ChannelBuffer) {
+                ctx.sendDownstream(e);
+                return;
+            }
+            NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
+            PendingWriteCounter pendingWrites = channel.getPendingWrites();
+            PooledChannelBuffer buffer;
+            if (chunked) {
+                buffer = new FlushableBuffer(ctx, e.getRemoteAddress(), pendingWrites);
+            } else {
+                buffer = pooled ? PooledChannelBufferFactory.getInstance().getBuffer(0) : new PooledChannelBuffer();
+            }
+            boolean encoded = false;
             try {
-            	codec.encode(channel, buffer, msg);
+                codec.encode(channel, buffer, msg);
+                encoded = true;
             } finally {
-                NettyChannel.removeChannelIfDisconnected(ch);
+                if (! encoded) {
+                    buffer.release();
+                }
+                NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
+            }
+            write(ctx, e.getFuture(), buffer, e.getRemoteAddress(), pendingWrites);
+        }
+    }
+
+    private static void write(ChannelHandlerContext ctx, ChannelFuture future, final PooledChannelBuffer buffer,
+                              SocketAddress remoteAddress, final PendingWriteCounter pendingWrites) {
+        final int bytes = buffer.readableBytes();
+        pendingWrites.increment(bytes);
+        future.addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) throws Exception {
+                pendingWrites.decrement(bytes);
+                buffer.release();
+            }
+        });
+        Channels.write(ctx, future, ChannelBuffers.wrappedBuffer(
+                buffer.array(), buffer.readerIndex(), bytes), remoteAddress);
+    }
+
+    /**
+     * 分片编码时codec每写完一个分片就flush，把已写完的数据连同数组转出去先写出，
+     * 整条消息不必都留在内存中.
+     */
+    private static final class FlushableBuffer extends PooledChannelBuffer implements Flushable {
+
+        private final ChannelHandlerContext ctx;
+
+        private final SocketAddress         remoteAddress;
+
+        private final PendingWriteCounter   pendingWrites;
+
+        FlushableBuffer(ChannelHandlerContext ctx, SocketAddress remoteAddress, PendingWriteCounter pendingWrites) {
+            this.ctx = ctx;
+            this.remoteAddress = remoteAddress;
+            this.pendingWrites = pendingWrites;
+        }
+
+        public void flush() {
+            if (readable()) {
+                write(ctx, Channels.future(ctx.getChannel()), detach(), remoteAddress, pendingWrites);
             }
-            return ChannelBuffers.wrappedBuffer(buffer.toByteBuffer());
         }
     }
 
@@ -107,13 +179,13 @@ final class NettyCodecAdapter {
 
             com.alibaba.dubbo.remoting.buffer.ChannelBuffer message;
             if (buffer.readable()) {
-                if (buffer instanceof DynamicChannelBuffer) {
+                if (buffer instanceof DynamicChannelBuffer || buffer instanceof PooledChannelBuffer) {
                     buffer.writeBytes(input.toByteBuffer());
                     message = buffer;
                 } else {
                     int size = buffer.readableBytes() + input.readableBytes();
-                    message = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(
-                        size > bufferSize ? size : bufferSize);
+                    message = pooled ? PooledChannelBufferFactory.getInstance().getBuffer(size > bufferSize ? size : bufferSize)
+                        : com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(size > bufferSize ? size : bufferSize);
                     message.writeBytes(buffer, buffer.readableBytes());
                     message.writeBytes(input.toByteBuffer());
                 }
@@ -155,11 +227,19 @@ final class NettyCodecAdapter {
                     buffer = message;
                 } else {
                     buffer = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
+                    PooledChannelBufferFactory.release(message);
                 }
                 NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
             }
         }
 
+        @Override
+        public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+            PooledChannelBufferFactory.release(buffer);
+            buffer = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
+            ctx.sendUpstream(e);
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
             ctx.sendUpstream(e);
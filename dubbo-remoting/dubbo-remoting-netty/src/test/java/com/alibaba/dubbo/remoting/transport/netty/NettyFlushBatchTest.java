@@ -0,0 +1,64 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.Replier;
+
+/**
+ * 开启flush.batch后的请求响应
+ */
+public class NettyFlushBatchTest extends ClientToServerTest {
+
+    protected ExchangeServer newServer(int port, Replier<?> receiver) throws RemotingException {
+        return Exchangers.bind(URL.valueOf("exchange://localhost:" + port + "?server=netty&flush.batch=true"), receiver);
+    }
+
+    protected ExchangeChannel newClient(int port) throws RemotingException {
+        return Exchangers.connect(URL.valueOf("exchange://localhost:" + port + "?client=netty&flush.batch=true"));
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        long messages = FlushBatchHandler.getMessageCount();
+        List<ResponseFuture> futures = new ArrayList<ResponseFuture>();
+        for (int i = 0; i < 100; i ++) {
+            futures.add(client.request(new World("world" + i)));
+        }
+        for (int i = 0; i < futures.size(); i ++) {
+            Hello result = (Hello) futures.get(i).get();
+            Assert.assertEquals("hello,world" + i, result.getName());
+        }
+        Assert.assertTrue(FlushBatchHandler.getMessageCount() - messages >= 100);
+        Status status = new FlushBatchStatusChecker().check();
+        Assert.assertEquals(Status.Level.OK, status.getLevel());
+        Assert.assertTrue(status.getMessage(), status.getMessage().startsWith("flushes:"));
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,228 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.Version;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.transport.AbstractClient;
+
+/**
+ * NettyClient.
+ */
+public class NettyClient extends AbstractClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(NettyClient.class);
+
+    // 所有客户端共享IO线程，避免每个连接创建一组EventLoop
+    private static final EventLoopGroup nioEventLoopGroup = NettyHelper.newEventLoopGroup(false, Constants.DEFAULT_IO_THREADS, "NettyClientWorker");
+
+    private static volatile EventLoopGroup epollEventLoopGroup;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                if (logger.isInfoEnabled()) {
+                    logger.info("Run shutdown hook of netty client now.");
+                }
+
+                try {
+                    nioEventLoopGroup.shutdownGracefully();
+                    EventLoopGroup group = epollEventLoopGroup;
+                    if (group != null) {
+                        group.shutdownGracefully();
+                    }
+                } catch (Throwable t) {
+                    logger.warn(t.getMessage());
+                }
+            }
+        }, "DubboShutdownHook-NettyClient"));
+    }
+
+    private Bootstrap bootstrap;
+
+    // provider在本机且开启了unix.socket时才有
+    private Bootstrap unixBootstrap;
+
+    private volatile Channel channel; // volatile, please copy reference to use
+    
+    public NettyClient(final URL url, final ChannelHandler handler) throws RemotingException{
+        super(url, wrapChannelHandler(url, handler));
+    }
+
+    private static EventLoopGroup getEventLoopGroup(boolean epoll) {
+        if (! epoll) {
+            return nioEventLoopGroup;
+        }
+        if (epollEventLoopGroup == null) {
+            synchronized (NettyClient.class) {
+                if (epollEventLoopGroup == null) {
+                    epollEventLoopGroup = NettyHelper.newEventLoopGroup(true, Constants.DEFAULT_IO_THREADS, "NettyClientEpollWorker");
+                }
+            }
+        }
+        return epollEventLoopGroup;
+    }
+    
+    @Override
+    protected void doOpen() throws Throwable {
+        boolean epoll = NettyHelper.useEpoll(getUrl());
+        final NettyHandler nettyHandler = new NettyHandler(getUrl(), this);
+        ChannelInitializer<Channel> initializer = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                NettyHelper.setWriteBufferWaterMarks(ch.config(), getUrl());
+                NettyCodecAdapter adapter = new NettyCodecAdapter(getCodec(), getUrl(), NettyClient.this);
+                ch.pipeline()
+                        .addLast("decoder", adapter.getDecoder())
+                        .addLast("encoder", adapter.getEncoder())
+                        .addLast("handler", nettyHandler);
+            }
+        };
+        bootstrap = new Bootstrap();
+        bootstrap.group(getEventLoopGroup(epoll))
+                .channel(NettyHelper.channelClass(epoll))
+                .option(ChannelOption.SO_KEEPALIVE, Boolean.TRUE)
+                .option(ChannelOption.TCP_NODELAY, Boolean.TRUE)
+                .option(ChannelOption.ALLOCATOR, NettyHelper.ALLOCATOR)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getTimeout())
+                .handler(initializer);
+        if (NettyHelper.isLocalAddress(getUrl()) && NettyHelper.useUnixSocket(getUrl())) {
+            unixBootstrap = new Bootstrap();
+            unixBootstrap.group(getEventLoopGroup(true))
+                    .channel(EpollDomainSocketChannel.class)
+                    .option(ChannelOption.ALLOCATOR, NettyHelper.ALLOCATOR)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getTimeout())
+                    .handler(initializer);
+        }
+    }
+
+    // 先试provider的socket文件，连不上返回null，由调用方走TCP
+    private ChannelFuture connectUnixSocket() {
+        if (unixBootstrap == null) {
+            return null;
+        }
+        File file = NettyHelper.getUnixSocketFile(getUrl());
+        if (! file.exists()) {
+            return null;
+        }
+        ChannelFuture future = unixBootstrap.connect(new DomainSocketAddress(file));
+        boolean ret = future.awaitUninterruptibly(getConnectTimeout(), TimeUnit.MILLISECONDS);
+        if (ret && future.isSuccess()) {
+            return future;
+        }
+        future.cancel(true);
+        future.channel().close();
+        logger.warn("Failed to connect unix socket " + file + ", fallback to tcp " + getConnectAddress() + ", cause: "
+                + (future.cause() == null ? "timeout " + getConnectTimeout() + "ms" : future.cause().getMessage()));
+        return null;
+    }
+
+    protected void doConnect() throws Throwable {
+        long start = System.currentTimeMillis();
+        ChannelFuture future = connectUnixSocket();
+        if (future == null) {
+            future = bootstrap.connect(getConnectAddress());
+        }
+        try{
+            boolean ret = future.awaitUninterruptibly(getConnectTimeout(), TimeUnit.MILLISECONDS);
+            
+            if (ret && future.isSuccess()) {
+                Channel newChannel = future.channel();
+                try {
+                    // 关闭旧的连接
+                    Channel oldChannel = NettyClient.this.channel; // copy reference
+                    if (oldChannel != null) {
+                        try {
+                            if (logger.isInfoEnabled()) {
+                                logger.info("Close old netty channel " + oldChannel + " on create new netty channel " + newChannel);
+                            }
+                            oldChannel.close();
+                        } finally {
+                            NettyChannel.removeChannelIfDisconnected(oldChannel);
+                        }
+                    }
+                } finally {
+                    if (NettyClient.this.isClosed()) {
+                        try {
+                            if (logger.isInfoEnabled()) {
+                                logger.info("Close new netty channel " + newChannel + ", because the client closed.");
+                            }
+                            newChannel.close();
+                        } finally {
+                            NettyClient.this.channel = null;
+                            NettyChannel.removeChannelIfDisconnected(newChannel);
+                        }
+                    } else {
+                        NettyClient.this.channel = newChannel;
+                    }
+                }
+            } else if (future.cause() != null) {
+                throw new RemotingException(this, "client(url: " + getUrl() + ") failed to connect to server "
+                        + getRemoteAddress() + ", error message is:" + future.cause().getMessage(), future.cause());
+            } else {
+                throw new RemotingException(this, "client(url: " + getUrl() + ") failed to connect to server "
+                        + getRemoteAddress() + " client-side timeout "
+                        + getConnectTimeout() + "ms (elapsed: " + (System.currentTimeMillis() - start) + "ms) from netty client "
+                        + NetUtils.getLocalHost() + " using dubbo version " + Version.getVersion());
+            }
+        }finally{
+            if (! isConnected()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    protected void doDisConnect() throws Throwable {
+        try {
+            NettyChannel.removeChannelIfDisconnected(channel);
+        } catch (Throwable t) {
+            logger.warn(t.getMessage());
+        }
+    }
+    
+    @Override
+    protected void doClose() throws Throwable {
+        // EventLoopGroup为所有客户端共享，在shutdown hook中释放
+    }
+
+    @Override
+    protected com.alibaba.dubbo.remoting.Channel getChannel() {
+        Channel c = channel;
+        if (c == null || ! c.isActive())
+            return null;
+        return NettyChannel.getOrAddChannel(c, getUrl(), this);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.List;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+
+/**
+ * NettyCodecAdapter.
+ * <p>
+ * 编码直接写入Encoder分配的（池化、direct）ByteBuf，解码直接读取Netty累积的ByteBuf，中间不做复制。
+ * 配置了分片时每写完一个分片就先写出.
+ */
+final class NettyCodecAdapter {
+
+    private final ChannelHandler encoder = new InternalEncoder();
+    
+    private final ChannelHandler decoder = new InternalDecoder();
+
+    private final Codec2         codec;
+    
+    private final URL            url;
+
+    private final boolean        chunked;
+    
+    private final com.alibaba.dubbo.remoting.ChannelHandler handler;
+
+    public NettyCodecAdapter(Codec2 codec, URL url, com.alibaba.dubbo.remoting.ChannelHandler handler) {
+        this.codec = codec;
+        this.url = url;
+        this.handler = handler;
+        this.chunked = url.getParameter(Constants.CHUNK_SIZE_KEY, Constants.DEFAULT_CHUNK_SIZE) > 0;
+    }
+
+    public ChannelHandler getEncoder() {
+        return encoder;
+    }
+
+    public ChannelHandler getDecoder() {
+        return decoder;
+    }
+
+    @Sharable
+    private class InternalEncoder extends MessageToByteEncoder<Object> {
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+            ChannelBuffer buffer = chunked ? new FlushableBuffer(ctx, out) : new NettyBackedChannelBuffer(out);
+            NettyChannel channel = NettyChannel.getOrAddChannel(ctx.channel(), url, handler);
+            try {
+                codec.encode(channel, buffer, msg);
+            } finally {
+                NettyChannel.removeChannelIfDisconnected(ctx.channel());
+            }
+        }
+    }
+
+    /**
+     * 分片编码时codec每写完一个分片就flush，把已写完的数据拷到新的ByteBuf先写出，再清空out继续编码，
+     * out最多只保留一个分片.
+     */
+    private static final class FlushableBuffer extends NettyBackedChannelBuffer implements Flushable {
+
+        private final ChannelHandlerContext ctx;
+
+        private final ByteBuf               out;
+
+        FlushableBuffer(ChannelHandlerContext ctx, ByteBuf out) {
+            super(out);
+            this.ctx = ctx;
+            this.out = out;
+        }
+
+        public void flush() {
+            if (out.isReadable()) {
+                ctx.write(out.readBytes(out.readableBytes()));
+                out.clear();
+            }
+        }
+    }
+
+    private class InternalDecoder extends ByteToMessageDecoder {
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf input, List<Object> out) throws Exception {
+            ChannelBuffer message = new NettyBackedChannelBuffer(input);
+
+            NettyChannel channel = NettyChannel.getOrAddChannel(ctx.channel(), url, handler);
+            Object msg;
+            int saveReaderIndex;
+
+            try {
+                // decode object.
+                do {
+                    saveReaderIndex = message.readerIndex();
+                    msg = codec.decode(channel, message);
+                    if (msg == Codec2.DecodeResult.NEED_MORE_INPUT) {
+                        message.readerIndex(saveReaderIndex);
+                        break;
+                    } else {
+                        if (saveReaderIndex == message.readerIndex()) {
+                            throw new IOException("Decode without read data.");
+                        }
+                        if (msg != null) {
+                            out.add(msg);
+                        }
+                    }
+                } while (message.readable());
+            } finally {
+                NettyChannel.removeChannelIfDisconnected(ctx.channel());
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,201 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketChannel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.transport.PendingWriteCounter;
+
+/**
+ * Netty 4的EventLoop及Channel类型选择。
+ * <p>
+ * 配置<code>epoll=true</code>且运行在Linux并能加载native库时使用epoll，否则回退到NIO。
+ * 配置<code>unix.socket=true</code>时同一主机上的连接走Unix domain socket，同样要求epoll可用。
+ */
+final class NettyHelper {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyHelper.class);
+
+    public static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    private static final AttributeKey<InetSocketAddress> UNIX_PEER_ADDRESS = AttributeKey.valueOf("dubbo.unix.peer.address");
+
+    private static final AtomicInteger UNIX_PEER_PORT = new AtomicInteger();
+
+    // 正在使用的虚拟端口，连接关闭后释放
+    private static final ConcurrentMap<Integer, Boolean> UNIX_PEER_PORTS = new ConcurrentHashMap<Integer, Boolean>();
+
+    private NettyHelper() {
+    }
+
+    public static boolean useEpoll(URL url) {
+        if (! url.getParameter(Constants.EPOLL_KEY, false)) {
+            return false;
+        }
+        try {
+            if (Epoll.isAvailable()) {
+                return true;
+            }
+            logger.warn("Epoll is not available on this platform, fallback to nio. cause: " + Epoll.unavailabilityCause());
+        } catch (Throwable t) {
+            logger.warn("Epoll is not available on this platform, fallback to nio. cause: " + t.getMessage(), t);
+        }
+        return false;
+    }
+
+    public static boolean useUnixSocket(URL url) {
+        if (! url.getParameter(Constants.UNIX_SOCKET_KEY, false)) {
+            return false;
+        }
+        try {
+            if (Epoll.isAvailable()) {
+                return true;
+            }
+            logger.warn("Epoll is not available on this platform, unix socket disabled. cause: " + Epoll.unavailabilityCause());
+        } catch (Throwable t) {
+            logger.warn("Epoll is not available on this platform, unix socket disabled. cause: " + t.getMessage(), t);
+        }
+        return false;
+    }
+
+    /**
+     * url的地址对应的socket文件，文件名包含ip和端口，同一主机上绑定不同ip的进程不会冲突。
+     */
+    public static File getUnixSocketFile(URL url) {
+        String dir = url.getParameter(Constants.UNIX_SOCKET_DIR_KEY, System.getProperty("java.io.tmpdir"));
+        String host = url.getHost();
+        if (host == null || NetUtils.isLocalHost(host) || NetUtils.isAnyHost(host)) {
+            host = NetUtils.getLocalHost();
+        }
+        return new File(dir, "dubbo-" + host + "-" + url.getPort() + ".sock");
+    }
+
+    /**
+     * 注册中心给出的provider地址是否就是本机.
+     */
+    public static boolean isLocalAddress(URL url) {
+        String host = url.getHost();
+        return NetUtils.isLocalHost(host) || NetUtils.getLocalHost().equals(host);
+    }
+
+    public static InetSocketAddress getLocalAddress(io.netty.channel.Channel ch, URL url) {
+        if (! (ch instanceof DomainSocketChannel)) {
+            return (InetSocketAddress) ch.localAddress();
+        }
+        return ch.parent() != null ? url.toInetSocketAddress() : getUnixPeerAddress(ch);
+    }
+
+    public static InetSocketAddress getRemoteAddress(io.netty.channel.Channel ch, URL url) {
+        if (! (ch instanceof DomainSocketChannel)) {
+            return (InetSocketAddress) ch.remoteAddress();
+        }
+        return ch.parent() != null ? getUnixPeerAddress(ch) : url.toInetSocketAddress();
+    }
+
+    // Unix domain socket没有IP地址，服务端一侧用url的地址，另一侧用0.0.0.0加虚拟端口（TCP连接的对端不会是这个地址），
+    // 虚拟端口在存活的连接间不重复，使server上按ip:port区分的各个连接不会互相覆盖
+    private static InetSocketAddress getUnixPeerAddress(io.netty.channel.Channel ch) {
+        Attribute<InetSocketAddress> attribute = ch.attr(UNIX_PEER_ADDRESS);
+        InetSocketAddress address = attribute.get();
+        if (address == null) {
+            final int port = allocateUnixPeerPort();
+            address = new InetSocketAddress(NetUtils.ANYHOST, port);
+            InetSocketAddress old = attribute.setIfAbsent(address);
+            if (old != null) {
+                UNIX_PEER_PORTS.remove(port);
+                address = old;
+            } else {
+                ch.closeFuture().addListener(new ChannelFutureListener() {
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        UNIX_PEER_PORTS.remove(port);
+                    }
+                });
+            }
+        }
+        return address;
+    }
+
+    private static int allocateUnixPeerPort() {
+        for (int i = 0; i < 65535; i ++) {
+            int port = (UNIX_PEER_PORT.getAndIncrement() & Integer.MAX_VALUE) % 65535 + 1;
+            if (UNIX_PEER_PORTS.putIfAbsent(port, Boolean.TRUE) == null) {
+                return port;
+            }
+        }
+        throw new IllegalStateException("Too many unix socket connections, no virtual port available");
+    }
+
+    /**
+     * 用netty自带的写缓冲水位，超过高水位后channel.isWritable()为false，降到低水位以下恢复
+     */
+    public static void setWriteBufferWaterMarks(ChannelConfig config, URL url) {
+        int high = PendingWriteCounter.getHighWaterMark(url);
+        int low = PendingWriteCounter.getLowWaterMark(url);
+        // netty要求低水位不大于高水位，按调整方向决定先设哪个
+        if (high >= config.getWriteBufferLowWaterMark()) {
+            config.setWriteBufferHighWaterMark(high);
+            config.setWriteBufferLowWaterMark(low);
+        } else {
+            config.setWriteBufferLowWaterMark(low);
+            config.setWriteBufferHighWaterMark(high);
+        }
+    }
+
+    public static EventLoopGroup newEventLoopGroup(boolean epoll, int threads, String name) {
+        ThreadFactory threadFactory = new NamedThreadFactory(name, true);
+        return epoll ? new EpollEventLoopGroup(threads, threadFactory)
+                : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    public static Class<? extends ServerChannel> serverChannelClass(boolean epoll) {
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends SocketChannel> channelClass(boolean epoll) {
+        return epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+}
\ No newline at end of file
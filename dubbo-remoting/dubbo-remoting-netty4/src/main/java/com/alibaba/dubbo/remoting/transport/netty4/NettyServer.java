@@ -0,0 +1,251 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileLock;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ExecutorUtil;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.Server;
+import com.alibaba.dubbo.remoting.transport.AbstractServer;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelHandlers;
+
+/**
+ * NettyServer
+ */
+public class NettyServer extends AbstractServer implements Server {
+    
+    private static final Logger logger = LoggerFactory.getLogger(NettyServer.class);
+
+    private Map<String, Channel>  channels; // <ip:port, channel>
+
+    private ServerBootstrap                 bootstrap;
+
+    private io.netty.channel.Channel        channel;
+
+    private EventLoopGroup                  bossGroup;
+
+    private EventLoopGroup                  workerGroup;
+
+    private io.netty.channel.Channel        unixChannel;
+
+    private File                            unixSocketFile;
+
+    // 持有期间socket文件属于本进程，其它进程不会把它当作残留文件删除
+    private FileLock                        unixSocketLock;
+
+    private EventLoopGroup                  unixGroup;
+
+    public NettyServer(URL url, ChannelHandler handler) throws RemotingException{
+        super(url, ChannelHandlers.wrap(handler, ExecutorUtil.setThreadName(url, SERVER_THREAD_POOL_NAME)));
+    }
+
+    @Override
+    protected void doOpen() throws Throwable {
+        boolean epoll = NettyHelper.useEpoll(getUrl());
+        bossGroup = NettyHelper.newEventLoopGroup(epoll, 1, "NettyServerBoss");
+        workerGroup = NettyHelper.newEventLoopGroup(epoll,
+                getUrl().getPositiveParameter(Constants.IO_THREADS_KEY, Constants.DEFAULT_IO_THREADS), "NettyServerWorker");
+
+        final NettyHandler nettyHandler = new NettyHandler(getUrl(), this);
+        channels = nettyHandler.getChannels();
+
+        ChannelInitializer<io.netty.channel.Channel> initializer = new ChannelInitializer<io.netty.channel.Channel>() {
+            @Override
+            protected void initChannel(io.netty.channel.Channel ch) throws Exception {
+                NettyHelper.setWriteBufferWaterMarks(ch.config(), getUrl());
+                NettyCodecAdapter adapter = new NettyCodecAdapter(getCodec(), getUrl(), NettyServer.this);
+                ch.pipeline()
+                        .addLast("decoder", adapter.getDecoder())
+                        .addLast("encoder", adapter.getEncoder())
+                        .addLast("handler", nettyHandler);
+            }
+        };
+
+        bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(NettyHelper.serverChannelClass(epoll))
+                .option(ChannelOption.SO_REUSEADDR, Boolean.TRUE)
+                .option(ChannelOption.ALLOCATOR, NettyHelper.ALLOCATOR)
+                .childOption(ChannelOption.TCP_NODELAY, Boolean.TRUE)
+                .childOption(ChannelOption.ALLOCATOR, NettyHelper.ALLOCATOR)
+                .childHandler(initializer);
+        // bind
+        ChannelFuture channelFuture = bootstrap.bind(getBindAddress());
+        channelFuture.syncUninterruptibly();
+        channel = channelFuture.channel();
+
+        if (NettyHelper.useUnixSocket(getUrl())) {
+            bindUnixSocket(epoll, initializer);
+        }
+    }
+
+    // 在TCP端口之外再监听一个Unix domain socket，给同一主机上的consumer用，绑定失败不影响TCP
+    private void bindUnixSocket(boolean epoll, ChannelInitializer<io.netty.channel.Channel> initializer) {
+        File file = NettyHelper.getUnixSocketFile(getUrl());
+        FileLock lock = lockUnixSocketFile(file);
+        if (lock == null) {
+            return;
+        }
+        // 拿到锁说明之前的进程已经退出，留下的socket文件可以删除
+        if (file.exists() && ! file.delete()) {
+            logger.warn("Failed to delete stale unix socket file " + file + ", local consumers will use tcp.");
+            releaseUnixSocketLock(lock);
+            return;
+        }
+        if (! epoll) {
+            unixGroup = NettyHelper.newEventLoopGroup(true,
+                    getUrl().getPositiveParameter(Constants.IO_THREADS_KEY, Constants.DEFAULT_IO_THREADS), "NettyServerUnixWorker");
+        }
+        ServerBootstrap unixBootstrap = new ServerBootstrap();
+        unixBootstrap.group(epoll ? bossGroup : unixGroup, epoll ? workerGroup : unixGroup)
+                .channel(EpollServerDomainSocketChannel.class)
+                .childOption(ChannelOption.ALLOCATOR, NettyHelper.ALLOCATOR)
+                .childHandler(initializer);
+        try {
+            ChannelFuture channelFuture = unixBootstrap.bind(new DomainSocketAddress(file));
+            channelFuture.syncUninterruptibly();
+            unixChannel = channelFuture.channel();
+            unixSocketFile = file;
+            unixSocketLock = lock;
+            if (logger.isInfoEnabled()) {
+                logger.info("Bind unix socket " + file + " for local consumers of " + getLocalAddress());
+            }
+        } catch (Throwable t) {
+            logger.warn("Failed to bind unix socket " + file + ", local consumers will use tcp. cause: " + t.getMessage(), t);
+            releaseUnixSocketLock(lock);
+            if (unixGroup != null) {
+                unixGroup.shutdownGracefully();
+                unixGroup = null;
+            }
+        }
+    }
+
+    private static FileLock lockUnixSocketFile(File file) {
+        File lockFile = new File(file.getPath() + ".lock");
+        try {
+            FileLock lock = new RandomAccessFile(lockFile, "rw").getChannel().tryLock();
+            if (lock == null) {
+                logger.warn("Unix socket file " + file + " is used by another process, local consumers will use tcp.");
+            }
+            return lock;
+        } catch (Throwable t) {
+            logger.warn("Failed to lock unix socket file " + lockFile + ", local consumers will use tcp. cause: " + t.getMessage(), t);
+            return null;
+        }
+    }
+
+    private static void releaseUnixSocketLock(FileLock lock) {
+        try {
+            lock.release();
+            lock.channel().close();
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void doClose() throws Throwable {
+        try {
+            if (channel != null) {
+                // unbind.
+                channel.close();
+            }
+            if (unixChannel != null) {
+                unixChannel.close();
+                unixSocketFile.delete();
+                releaseUnixSocketLock(unixSocketLock);
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            Collection<com.alibaba.dubbo.remoting.Channel> channels = getChannels();
+            if (channels != null && channels.size() > 0) {
+                for (com.alibaba.dubbo.remoting.Channel channel : channels) {
+                    try {
+                        channel.close();
+                    } catch (Throwable e) {
+                        logger.warn(e.getMessage(), e);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            if (bootstrap != null) {
+                bossGroup.shutdownGracefully();
+                workerGroup.shutdownGracefully();
+            }
+            if (unixGroup != null) {
+                unixGroup.shutdownGracefully();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            if (channels != null) {
+                channels.clear();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+    
+    public Collection<Channel> getChannels() {
+        Collection<Channel> chs = new HashSet<Channel>();
+        for (Channel channel : this.channels.values()) {
+            if (channel.isConnected()) {
+                chs.add(channel);
+            } else {
+                channels.remove(NetUtils.toAddressString(channel.getRemoteAddress()));
+            }
+        }
+        return chs;
+    }
+
+    public Channel getChannel(InetSocketAddress remoteAddress) {
+        return channels.get(NetUtils.toAddressString(remoteAddress));
+    }
+
+    public boolean isBound() {
+        return channel.isActive();
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import io.netty.channel.epoll.Epoll;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+import com.alibaba.dubbo.remoting.exchange.support.Replier;
+
+/**
+ * NettyUnixSocketTest
+ */
+public class NettyUnixSocketTest {
+
+    private final String dir = System.getProperty("java.io.tmpdir");
+
+    private int port;
+
+    private ExchangeServer server;
+
+    private ExchangeClient client;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Epoll.isAvailable());
+        port = NetUtils.getAvailablePort();
+    }
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private ExchangeServer bind(boolean unix) throws RemotingException {
+        return Exchangers.bind(URL.valueOf("exchange://" + NetUtils.getLocalHost() + ":" + port
+                + "?server=netty4&unix.socket=" + unix + "&unix.socket.dir=" + dir), new Replier<String>() {
+            public Class<String> interest() {
+                return String.class;
+            }
+
+            public Object reply(ExchangeChannel channel, String msg) throws RemotingException {
+                return "hello," + msg;
+            }
+        });
+    }
+
+    private ExchangeClient connect() throws RemotingException {
+        return Exchangers.connect(URL.valueOf("exchange://" + NetUtils.getLocalHost() + ":" + port
+                + "?client=netty4&unix.socket=true&unix.socket.dir=" + dir));
+    }
+
+    private String remoteHostOnServer() {
+        Channel channel = server.getChannels().iterator().next();
+        return channel.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    @Test
+    public void testUnixSocket() throws Exception {
+        server = bind(true);
+        File file = new File(dir, "dubbo-" + NetUtils.getLocalHost() + "-" + port + ".sock");
+        Assert.assertTrue(file.exists());
+
+        client = connect();
+        Assert.assertEquals("hello,world", client.request("world").get());
+        if (! NetUtils.isLocalHost(NetUtils.getLocalHost())) {
+            // 走TCP时服务端看到的是本机IP，走Unix domain socket时是0.0.0.0加虚拟端口
+            Assert.assertEquals(NetUtils.ANYHOST, remoteHostOnServer());
+        }
+
+        server.close();
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public void testFallbackToTcp() throws Exception {
+        server = bind(false);
+        Assert.assertFalse(new File(dir, "dubbo-" + NetUtils.getLocalHost() + "-" + port + ".sock").exists());
+
+        client = connect();
+        Assert.assertEquals("hello,world", client.request("world").get());
+        if (! NetUtils.isLocalHost(NetUtils.getLocalHost())) {
+            Assert.assertEquals(NetUtils.getLocalHost(), remoteHostOnServer());
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,426 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.nio2;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.buffer.ByteArrayPool;
+import com.alibaba.dubbo.remoting.buffer.PooledChannelBuffer;
+import com.alibaba.dubbo.remoting.transport.AbstractChannel;
+import com.alibaba.dubbo.remoting.transport.CumulativeDecoder;
+import com.alibaba.dubbo.remoting.transport.PendingWriteCounter;
+
+/**
+ * 包装AsynchronousSocketChannel，自己完成编解码。
+ * <p>
+ * 读：每个连接从{@link ByteArrayPool}借一块读缓冲区，连接关闭时归还，半包累积在池化的缓冲区中。<br>
+ * 写：在调用线程编码后放入写队列，同一时刻只有一个写操作，
+ * 上一次写完成时把排队的消息一起用gathering write写出。
+ */
+final class Nio2Channel extends AbstractChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(Nio2Channel.class);
+
+    // 标记AsynchronousChannelGroup的IO线程
+    private static final ThreadLocal<Boolean> IO_THREAD = new ThreadLocal<Boolean>();
+
+    // 一次gathering write最多合并的消息数
+    private static final int MAX_GATHER = 64;
+
+    private final AsynchronousSocketChannel channel;
+
+    private final ChannelHandler handler;
+
+    private final Codec2 codec;
+
+    private final InetSocketAddress localAddress;
+
+    private final InetSocketAddress remoteAddress;
+
+    private final int bufferSize;
+
+    private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+    private final PendingWriteCounter pendingWrites;
+
+    private final Queue<WriteRequest> writeQueue = new ConcurrentLinkedQueue<WriteRequest>();
+
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    // 以下只在读完成的回调中访问，同一时刻只有一个读操作
+    private byte[] readArray;
+
+    private final CumulativeDecoder decoder;
+
+    Nio2Channel(AsynchronousSocketChannel channel, URL url, ChannelHandler handler, Codec2 codec) throws IOException {
+        super(url, handler);
+        if (channel == null) {
+            throw new IllegalArgumentException("nio2 channel == null;");
+        }
+        this.channel = channel;
+        this.handler = handler;
+        this.codec = codec;
+        this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+        this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        int b = url.getPositiveParameter(Constants.BUFFER_KEY, Constants.DEFAULT_BUFFER_SIZE);
+        this.bufferSize = b >= Constants.MIN_BUFFER_SIZE && b <= Constants.MAX_BUFFER_SIZE ? b : Constants.DEFAULT_BUFFER_SIZE;
+        this.decoder = new CumulativeDecoder(codec, bufferSize);
+        this.pendingWrites = new PendingWriteCounter(url);
+        attributes.put(PendingWriteCounter.KEY, pendingWrites);
+    }
+
+    /**
+     * 创建IO线程的工厂，线程启动时打上标记，在这些线程上发送不等待写缓冲区.
+     */
+    static ThreadFactory newIoThreadFactory(String prefix) {
+        final ThreadFactory factory = new NamedThreadFactory(prefix, true);
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                return factory.newThread(new Runnable() {
+                    public void run() {
+                        IO_THREAD.set(Boolean.TRUE);
+                        r.run();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * 通知连接建立，然后开始读.
+     */
+    void start() {
+        try {
+            handler.connected(this);
+        } catch (Throwable t) {
+            fireCaught(t);
+        }
+        readArray = ByteArrayPool.getInstance().acquire(bufferSize);
+        read();
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    public InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public boolean isConnected() {
+        return channel.isOpen() && ! released.get();
+    }
+
+    public void send(Object message, boolean sent) throws RemotingException {
+        super.send(message, sent);
+        // 对端读得慢时待写数据超过高水位，快速失败或有限等待，避免堆积到OOM；IO线程上不能等待
+        pendingWrites.awaitWritable(this, IO_THREAD.get() != null ? 0
+                : getUrl().getParameter(Constants.WRITE_BLOCK_TIMEOUT_KEY, 0));
+
+        PooledChannelBuffer buffer = new PooledChannelBuffer();
+        try {
+            codec.encode(this, buffer, message);
+        } catch (Throwable e) {
+            buffer.release();
+            throw new RemotingException(this, "Failed to send message " + message + " to " + getRemoteAddress() + ", cause: " + e.getMessage(), e);
+        }
+        WriteRequest request = new WriteRequest(buffer, sent);
+        pendingWrites.increment(request.bytes);
+        writeQueue.offer(request);
+        if (! isConnected()) {
+            // 与关闭并发时，关闭那边可能已经清理过队列
+            failQueued(new ClosedChannelException());
+        } else {
+            flush();
+        }
+        handler.sent(this, message);
+
+        if (sent) {
+            int timeout = getUrl().getPositiveParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+            boolean success;
+            try {
+                success = request.await(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemotingException(this, "Failed to send message " + message + " to " + getRemoteAddress() + ", cause: " + e.getMessage(), e);
+            }
+            if (! success) {
+                throw new RemotingException(this, "Failed to send message " + message + " to " + getRemoteAddress()
+                        + "in timeout(" + timeout + "ms) limit");
+            }
+        }
+        Throwable cause = request.cause;
+        if (cause != null) {
+            throw new RemotingException(this, "Failed to send message " + message + " to " + getRemoteAddress() + ", cause: " + cause.getMessage(), cause);
+        }
+    }
+
+    public void close() {
+        try {
+            super.close();
+        } catch (Exception e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            if (logger.isInfoEnabled()) {
+                logger.info("Close nio2 channel " + this);
+            }
+            // 未完成的读会以AsynchronousCloseException结束，在那里归还缓冲区并通知断开
+            channel.close();
+        } catch (Exception e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    public boolean hasAttribute(String key) {
+        return attributes.containsKey(key);
+    }
+
+    public Object getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    public void setAttribute(String key, Object value) {
+        if (value == null) { // The null value unallowed in the ConcurrentHashMap.
+            attributes.remove(key);
+        } else {
+            attributes.put(key, value);
+        }
+    }
+
+    public void removeAttribute(String key) {
+        attributes.remove(key);
+    }
+
+    @Override
+    public String toString() {
+        return "Nio2Channel [channel=" + localAddress + " -> " + remoteAddress + "]";
+    }
+
+    private void read() {
+        try {
+            channel.read(ByteBuffer.wrap(readArray), null, readHandler);
+        } catch (Throwable t) {
+            onClosed(t);
+        }
+    }
+
+    private final CompletionHandler<Integer, Void> readHandler = new CompletionHandler<Integer, Void>() {
+
+        public void completed(Integer result, Void attachment) {
+            int length = result.intValue();
+            if (length < 0) {
+                onClosed(null);
+                return;
+            }
+            if (length > 0) {
+                try {
+                    decoder.decode(Nio2Channel.this, handler, readArray, 0, length);
+                } catch (Throwable t) {
+                    fireCaught(t);
+                }
+            }
+            read();
+        }
+
+        public void failed(Throwable exc, Void attachment) {
+            onClosed(exc);
+        }
+    };
+
+    private void onClosed(Throwable cause) {
+        if (! released.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+        ByteArrayPool.getInstance().release(readArray);
+        readArray = null;
+        decoder.release();
+        failQueued(cause == null ? new ClosedChannelException() : cause);
+        if (cause != null && ! (cause instanceof ClosedChannelException)) {
+            fireCaught(cause);
+        }
+        try {
+            handler.disconnected(this);
+        } catch (Throwable t) {
+            fireCaught(t);
+        }
+    }
+
+    private void fireCaught(Throwable cause) {
+        try {
+            handler.caught(this, cause);
+        } catch (Throwable t) {
+            logger.warn("Failed to handle exception of " + this + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+    private void flush() {
+        if (! writing.compareAndSet(false, true)) {
+            return;
+        }
+        WriteRequest[] requests = new WriteRequest[MAX_GATHER];
+        int count = 0;
+        WriteRequest request;
+        while (count < requests.length && (request = writeQueue.poll()) != null) {
+            requests[count ++] = request;
+        }
+        if (count == 0) {
+            writing.set(false);
+            // 置位前又有消息入队时由这里写出
+            if (! writeQueue.isEmpty()) {
+                flush();
+            }
+            return;
+        }
+        write(new WriteBatch(requests, count));
+    }
+
+    private void write(WriteBatch batch) {
+        try {
+            channel.write(batch.buffers, batch.offset, batch.buffers.length - batch.offset,
+                    0L, TimeUnit.MILLISECONDS, batch, writeHandler);
+        } catch (Throwable t) {
+            writeFailed(batch, t);
+        }
+    }
+
+    private final CompletionHandler<Long, WriteBatch> writeHandler = new CompletionHandler<Long, WriteBatch>() {
+
+        public void completed(Long result, WriteBatch batch) {
+            ByteBuffer[] buffers = batch.buffers;
+            while (batch.offset < buffers.length && ! buffers[batch.offset].hasRemaining()) {
+                batch.offset ++;
+            }
+            if (batch.offset < buffers.length) {
+                // 发送缓冲区满，没写完的接着写
+                write(batch);
+                return;
+            }
+            batch.complete(null);
+            writing.set(false);
+            if (! writeQueue.isEmpty()) {
+                flush();
+            }
+        }
+
+        public void failed(Throwable exc, WriteBatch batch) {
+            writeFailed(batch, exc);
+        }
+    };
+
+    // 写失败后writing保持置位，不再写，连接关掉由读那边清理
+    private void writeFailed(WriteBatch batch, Throwable cause) {
+        batch.complete(cause);
+        failQueued(cause);
+        if (! (cause instanceof ClosedChannelException)) {
+            logger.warn("Failed to write to " + this + ", cause: " + cause.getMessage(), cause);
+        }
+        close();
+    }
+
+    private void failQueued(Throwable cause) {
+        WriteRequest request;
+        while ((request = writeQueue.poll()) != null) {
+            request.complete(cause);
+        }
+    }
+
+    private final class WriteRequest {
+
+        final PooledChannelBuffer buffer;
+
+        final int bytes;
+
+        private final CountDownLatch done;
+
+        volatile Throwable cause;
+
+        WriteRequest(PooledChannelBuffer buffer, boolean sent) {
+            this.buffer = buffer;
+            this.bytes = buffer.readableBytes();
+            this.done = sent ? new CountDownLatch(1) : null;
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(), bytes);
+        }
+
+        void complete(Throwable cause) {
+            this.cause = cause;
+            pendingWrites.decrement(bytes);
+            buffer.release();
+            if (done != null) {
+                done.countDown();
+            }
+        }
+
+        boolean await(int timeout) throws InterruptedException {
+            return done.await(timeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private final class WriteBatch {
+
+        final WriteRequest[] requests;
+
+        final ByteBuffer[] buffers;
+
+        int offset;
+
+        WriteBatch(WriteRequest[] requests, int count) {
+            this.requests = requests;
+            this.buffers = new ByteBuffer[count];
+            for (int i = 0; i < count; i ++) {
+                buffers[i] = requests[i].toByteBuffer();
+            }
+        }
+
+        void complete(Throwable cause) {
+            for (int i = 0; i < buffers.length; i ++) {
+                requests[i].complete(cause);
+            }
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.nio2;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.Version;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.transport.AbstractClient;
+
+/**
+ * Nio2Client.
+ */
+public class Nio2Client extends AbstractClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(Nio2Client.class);
+
+    // 与NettyClient一样，所有客户端共用一组IO线程
+    private static final AsynchronousChannelGroup group;
+
+    static {
+        try {
+            group = AsynchronousChannelGroup.withFixedThreadPool(Constants.DEFAULT_IO_THREADS,
+                    Nio2Channel.newIoThreadFactory("Nio2ClientWorker"));
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                if (logger.isInfoEnabled()) {
+                    logger.info("Run shutdown hook of nio2 client now.");
+                }
+
+                try {
+                    group.shutdownNow();
+                } catch (Throwable t) {
+                    logger.warn(t.getMessage());
+                }
+            }
+        }, "DubboShutdownHook-Nio2Client"));
+    }
+
+    private volatile Nio2Channel channel; // volatile, please copy reference to use
+
+    public Nio2Client(final URL url, final ChannelHandler handler) throws RemotingException {
+        super(url, wrapChannelHandler(url, handler));
+    }
+
+    @Override
+    protected void doOpen() throws Throwable {
+    }
+
+    @Override
+    protected void doConnect() throws Throwable {
+        long start = System.currentTimeMillis();
+        AsynchronousSocketChannel socket = AsynchronousSocketChannel.open(group);
+        Nio2Channel newChannel = null;
+        try {
+            socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            socket.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            Future<Void> future = socket.connect(getConnectAddress());
+            try {
+                future.get(getConnectTimeout(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw new RemotingException(this, "client(url: " + getUrl() + ") failed to connect to server "
+                        + getRemoteAddress() + ", error message is:" + e.getCause().getMessage(), e.getCause());
+            } catch (TimeoutException e) {
+                throw new RemotingException(this, "client(url: " + getUrl() + ") failed to connect to server "
+                        + getRemoteAddress() + " client-side timeout "
+                        + getConnectTimeout() + "ms (elapsed: " + (System.currentTimeMillis() - start) + "ms) from nio2 client "
+                        + NetUtils.getLocalHost() + " using dubbo version " + Version.getVersion());
+            }
+            if (isClosed()) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("Close new nio2 channel " + socket + ", because the client closed.");
+                }
+                return;
+            }
+            newChannel = new Nio2Channel(socket, getUrl(), this, getCodec());
+        } finally {
+            if (newChannel == null) {
+                socket.close();
+            }
+        }
+        // 关闭旧的连接
+        Nio2Channel oldChannel = this.channel; // copy reference
+        if (oldChannel != null) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Close old nio2 channel " + oldChannel + " on create new nio2 channel " + newChannel);
+            }
+            oldChannel.close();
+        }
+        this.channel = newChannel;
+        newChannel.start();
+    }
+
+    @Override
+    protected void doDisConnect() throws Throwable {
+        // 通道由AbstractClient.disconnect()关闭，没有其他需要清理的
+    }
+
+    @Override
+    protected void doClose() throws Throwable {
+    }
+
+    @Override
+    protected Channel getChannel() {
+        Nio2Channel c = channel;
+        if (c == null || ! c.isConnected())
+            return null;
+        return c;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.nio2;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ExecutorUtil;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.Server;
+import com.alibaba.dubbo.remoting.transport.AbstractServer;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelHandlers;
+
+/**
+ * Nio2Server，每个server一个AsynchronousChannelGroup，线程数取iothreads。
+ */
+public class Nio2Server extends AbstractServer implements Server {
+
+    private static final Logger logger = LoggerFactory.getLogger(Nio2Server.class);
+
+    // doOpen在父类构造函数中调用，这几个字段不能有初始值
+    private ConcurrentMap<String, Channel> channels; // <ip:port, channel>
+
+    private AsynchronousChannelGroup group;
+
+    private AsynchronousServerSocketChannel serverChannel;
+
+    public Nio2Server(URL url, ChannelHandler handler) throws RemotingException {
+        super(url, ChannelHandlers.wrap(handler, ExecutorUtil.setThreadName(url, SERVER_THREAD_POOL_NAME)));
+    }
+
+    @Override
+    protected void doOpen() throws Throwable {
+        channels = new ConcurrentHashMap<String, Channel>();
+        group = AsynchronousChannelGroup.withFixedThreadPool(
+                getUrl().getPositiveParameter(Constants.IO_THREADS_KEY, Constants.DEFAULT_IO_THREADS),
+                Nio2Channel.newIoThreadFactory("Nio2ServerWorker"));
+        serverChannel = AsynchronousServerSocketChannel.open(group);
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(getBindAddress());
+        accept();
+    }
+
+    private void accept() {
+        serverChannel.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
+
+            public void completed(AsynchronousSocketChannel socket, Void attachment) {
+                accept();
+                Nio2Channel channel;
+                try {
+                    socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    socket.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+                    channel = new Nio2Channel(socket, getUrl(), Nio2Server.this, getCodec());
+                } catch (Throwable t) {
+                    logger.warn("Failed to init accepted channel " + socket + ", cause: " + t.getMessage(), t);
+                    try {
+                        socket.close();
+                    } catch (Throwable e) {
+                        logger.warn(e.getMessage(), e);
+                    }
+                    return;
+                }
+                channels.put(NetUtils.toAddressString(channel.getRemoteAddress()), channel);
+                channel.start();
+            }
+
+            public void failed(Throwable exc, Void attachment) {
+                if (serverChannel.isOpen()) {
+                    logger.warn("Failed to accept on " + getBindAddress() + ", cause: " + exc.getMessage(), exc);
+                    accept();
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void doClose() throws Throwable {
+        try {
+            if (serverChannel != null) {
+                // unbind.
+                serverChannel.close();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            Collection<Channel> channels = getChannels();
+            if (channels != null && channels.size() > 0) {
+                for (Channel channel : channels) {
+                    try {
+                        channel.close();
+                    } catch (Throwable e) {
+                        logger.warn(e.getMessage(), e);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            if (group != null) {
+                group.shutdown();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            if (channels != null) {
+                channels.clear();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void disconnected(Channel ch) throws RemotingException {
+        channels.remove(NetUtils.toAddressString(ch.getRemoteAddress()), ch);
+        super.disconnected(ch);
+    }
+
+    public Collection<Channel> getChannels() {
+        Collection<Channel> chs = new HashSet<Channel>();
+        for (Iterator<Channel> it = channels.values().iterator(); it.hasNext(); ) {
+            Channel channel = it.next();
+            if (channel.isConnected()) {
+                chs.add(channel);
+            } else {
+                it.remove();
+            }
+        }
+        return chs;
+    }
+
+    public Channel getChannel(InetSocketAddress remoteAddress) {
+        return channels.get(NetUtils.toAddressString(remoteAddress));
+    }
+
+    public boolean isBound() {
+        return serverChannel != null && serverChannel.isOpen();
+    }
+
+}
\ No newline at end of file
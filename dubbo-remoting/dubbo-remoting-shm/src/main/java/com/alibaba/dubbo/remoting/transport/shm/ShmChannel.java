@@ -0,0 +1,366 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.buffer.ByteArrayPool;
+import com.alibaba.dubbo.remoting.buffer.PooledChannelBuffer;
+import com.alibaba.dubbo.remoting.transport.AbstractChannel;
+import com.alibaba.dubbo.remoting.transport.CumulativeDecoder;
+
+/**
+ * 共享内存通道。
+ * <p>
+ * 映射文件中有两个{@link ShmRing}，0号由客户端写、服务端读，1号反之。环里是codec编码后的字节流，
+ * 帧格式与TCP上完全相同。发送在调用线程直接写入环，多个线程发送时加锁保证环只有一个生产者；
+ * 每个通道一个读线程，没有数据时按{@link ShmRing.Idler}忙等后park。
+ * 握手用的TCP连接一直保持，对端不会再写数据，读线程空闲时偶尔读一下它来发现对端进程退出。
+ */
+final class ShmChannel extends AbstractChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShmChannel.class);
+
+    static final int ACK = 1;
+
+    private static final int MAGIC = 0x4453484d;
+
+    private static final int FILE_HEADER = 128;
+
+    private static final int MIN_CAPACITY = 4 * 1024;
+
+    private static final int MAX_CAPACITY = 256 * 1024 * 1024;
+
+    // 空闲时每park多少次检查一次对端
+    private static final int LIVENESS_CHECK_PARKS = 64;
+
+    private final Socket socket;
+
+    // 持有映射的引用，映射随它被回收
+    private final MappedByteBuffer mapped;
+
+    private final ShmRing in;
+
+    private final ShmRing out;
+
+    private final ChannelHandler handler;
+
+    private final Codec2 codec;
+
+    private final InetSocketAddress localAddress;
+
+    private final InetSocketAddress remoteAddress;
+
+    private final int bufferSize;
+
+    private final int spins;
+
+    private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+    private final Object writeLock = new Object();
+
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    private volatile Thread reader;
+
+    // 只在读线程中访问
+    private final CumulativeDecoder decoder;
+
+    ShmChannel(Socket socket, MappedByteBuffer mapped, int capacity, boolean server,
+               URL url, ChannelHandler handler, Codec2 codec) throws IOException {
+        super(url, handler);
+        this.socket = socket;
+        this.mapped = mapped;
+        ShmRing clientToServer = new ShmRing(mapped, FILE_HEADER, capacity, ! server);
+        ShmRing serverToClient = new ShmRing(mapped, FILE_HEADER + ShmRing.size(capacity), capacity, server);
+        this.in = server ? clientToServer : serverToClient;
+        this.out = server ? serverToClient : clientToServer;
+        this.handler = handler;
+        this.codec = codec;
+        this.localAddress = (InetSocketAddress) socket.getLocalSocketAddress();
+        this.remoteAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
+        int b = url.getPositiveParameter(Constants.BUFFER_KEY, Constants.DEFAULT_BUFFER_SIZE);
+        this.bufferSize = b >= Constants.MIN_BUFFER_SIZE && b <= Constants.MAX_BUFFER_SIZE ? b : Constants.DEFAULT_BUFFER_SIZE;
+        this.decoder = new CumulativeDecoder(codec, bufferSize);
+        this.spins = url.getParameter(Constants.SHM_SPINS_KEY, Constants.DEFAULT_SHM_SPINS);
+        // 之后读socket只为发现对端关闭，不能阻塞太久
+        socket.setSoTimeout(1);
+    }
+
+    static File getDirectory(URL url) {
+        String dir = url.getParameter(Constants.SHM_DIR_KEY);
+        if (dir != null && dir.length() > 0) {
+            return new File(dir);
+        }
+        File shm = new File("/dev/shm");
+        return shm.isDirectory() && shm.canWrite() ? shm : new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    static int getCapacity(URL url) {
+        int size = url.getPositiveParameter(Constants.SHM_SIZE_KEY, Constants.DEFAULT_SHM_SIZE);
+        size = Math.min(Math.max(size, MIN_CAPACITY), MAX_CAPACITY);
+        int capacity = Integer.highestOneBit(size);
+        return capacity < size ? capacity << 1 : capacity;
+    }
+
+    private static int getFileSize(int capacity) {
+        return FILE_HEADER + 2 * ShmRing.size(capacity);
+    }
+
+    /**
+     * 创建并映射文件，服务端在握手时调用.
+     */
+    static MappedByteBuffer create(File file, int capacity) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            int size = getFileSize(capacity);
+            raf.setLength(size);
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapped.order(ByteOrder.nativeOrder());
+            mapped.putInt(0, MAGIC);
+            mapped.putInt(4, capacity);
+            return mapped;
+        } finally {
+            // 关闭文件后映射依然有效
+            raf.close();
+        }
+    }
+
+    /**
+     * 映射服务端创建的文件，客户端在握手时调用.
+     */
+    static MappedByteBuffer map(File file, int capacity) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            int size = getFileSize(capacity);
+            if (raf.length() != size) {
+                throw new IOException("Unexpected size of shared memory file " + file + ": " + raf.length() + ", expected " + size);
+            }
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapped.order(ByteOrder.nativeOrder());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != capacity) {
+                throw new IOException("Not a dubbo shared memory file: " + file);
+            }
+            return mapped;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * 通知连接建立，然后启动读线程.
+     */
+    void start() {
+        try {
+            handler.connected(this);
+        } catch (Throwable t) {
+            fireCaught(t);
+        }
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                readLoop();
+            }
+        }, "DubboShmReader-" + localAddress.getPort() + "-" + remoteAddress.getPort());
+        thread.setDaemon(true);
+        reader = thread;
+        thread.start();
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    public InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public boolean isConnected() {
+        return ! stopped.get();
+    }
+
+    public void send(Object message, boolean sent) throws RemotingException {
+        super.send(message, sent);
+        PooledChannelBuffer buffer = new PooledChannelBuffer();
+        int timeout = getUrl().getPositiveParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+        boolean success;
+        try {
+            codec.encode(this, buffer, message);
+            success = write(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(), buffer.readableBytes(), timeout);
+        } catch (Throwable e) {
+            throw new RemotingException(this, "Failed to send message " + message + " to " + getRemoteAddress() + ", cause: " + e.getMessage(), e);
+        } finally {
+            buffer.release();
+        }
+        if (! success) {
+            // 环里已经有半个帧，这个通道不能再用了
+            close();
+            throw new RemotingException(this, "Failed to send message " + message + " to " + getRemoteAddress()
+                    + "in timeout(" + timeout + "ms) limit, the peer is not reading the shared memory.");
+        }
+        // 写入共享内存即对端可见，sent无需另外等待
+        handler.sent(this, message);
+    }
+
+    private boolean write(byte[] src, int offset, int length, int timeout) throws IOException {
+        synchronized (writeLock) {
+            ShmRing.Idler idler = null;
+            long deadline = 0;
+            while (length > 0) {
+                if (stopped.get()) {
+                    throw new IOException("Channel closed.");
+                }
+                int n = out.write(src, offset, length);
+                if (n > 0) {
+                    offset += n;
+                    length -= n;
+                    if (idler != null) {
+                        idler.reset();
+                    }
+                } else if (idler == null) {
+                    idler = new ShmRing.Idler(spins);
+                    deadline = System.currentTimeMillis() + timeout;
+                } else if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                } else {
+                    idler.idle();
+                }
+            }
+            return true;
+        }
+    }
+
+    private void readLoop() {
+        byte[] array = ByteArrayPool.getInstance().acquire(Math.min(bufferSize, in.capacity()));
+        ShmRing.Idler idler = new ShmRing.Idler(spins);
+        int parks = 0;
+        try {
+            while (! stopped.get()) {
+                int n = in.read(array, 0, array.length);
+                if (n > 0) {
+                    idler.reset();
+                    parks = 0;
+                    try {
+                        decoder.decode(this, handler, array, 0, n);
+                    } catch (Throwable t) {
+                        fireCaught(t);
+                    }
+                } else if (idler.idle() && ++ parks % LIVENESS_CHECK_PARKS == 0 && ! isPeerAlive()) {
+                    break;
+                }
+            }
+        } finally {
+            ByteArrayPool.getInstance().release(array);
+            decoder.release();
+            stop();
+            try {
+                handler.disconnected(this);
+            } catch (Throwable t) {
+                fireCaught(t);
+            }
+        }
+    }
+
+    // 对端握手后不会再写，读到EOF或出错说明对端已关闭或进程已退出
+    private boolean isPeerAlive() {
+        try {
+            return socket.getInputStream().read() >= 0;
+        } catch (SocketTimeoutException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void fireCaught(Throwable cause) {
+        try {
+            handler.caught(this, cause);
+        } catch (Throwable t) {
+            logger.warn("Failed to handle exception of " + this + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+    private void stop() {
+        if (stopped.compareAndSet(false, true)) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            super.close();
+        } catch (Exception e) {
+            logger.warn(e.getMessage(), e);
+        }
+        if (logger.isInfoEnabled() && ! stopped.get()) {
+            logger.info("Close shm channel " + this);
+        }
+        // 关闭socket让对端发现，读线程退出时通知断开
+        stop();
+        Thread thread = reader;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public boolean hasAttribute(String key) {
+        return attributes.containsKey(key);
+    }
+
+    public Object getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    public void setAttribute(String key, Object value) {
+        if (value == null) { // The null value unallowed in the ConcurrentHashMap.
+            attributes.remove(key);
+        } else {
+            attributes.put(key, value);
+        }
+    }
+
+    public void removeAttribute(String key) {
+        attributes.remove(key);
+    }
+
+    @Override
+    public String toString() {
+        return "ShmChannel [channel=" + localAddress + " -> " + remoteAddress + "]";
+    }
+
+}
\ No newline at end of file
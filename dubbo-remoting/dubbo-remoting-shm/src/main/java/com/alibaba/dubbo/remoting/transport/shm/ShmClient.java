@@ -0,0 +1,118 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.shm;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.MappedByteBuffer;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.Version;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.transport.AbstractClient;
+
+/**
+ * ShmClient，只能连接同一主机上的ShmServer.
+ */
+public class ShmClient extends AbstractClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShmClient.class);
+
+    private volatile ShmChannel channel; // volatile, please copy reference to use
+
+    public ShmClient(final URL url, final ChannelHandler handler) throws RemotingException {
+        super(url, wrapChannelHandler(url, handler));
+    }
+
+    @Override
+    protected void doOpen() throws Throwable {
+    }
+
+    @Override
+    protected void doConnect() throws Throwable {
+        long start = System.currentTimeMillis();
+        Socket socket = new Socket();
+        ShmChannel newChannel = null;
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(getConnectAddress(), getConnectTimeout());
+            socket.setSoTimeout(getConnectTimeout());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            String path = in.readUTF();
+            int capacity = in.readInt();
+            File file = new File(path);
+            if (! file.exists()) {
+                throw new RemotingException(this, "client(url: " + getUrl() + ") failed to connect to server "
+                        + getRemoteAddress() + ", shared memory file " + path
+                        + " not found, the shm transport only works between processes on the same host.");
+            }
+            MappedByteBuffer mapped = ShmChannel.map(file, capacity);
+            socket.getOutputStream().write(ShmChannel.ACK);
+            socket.getOutputStream().flush();
+            if (isClosed()) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("Close new shm channel " + socket + ", because the client closed.");
+                }
+                return;
+            }
+            newChannel = new ShmChannel(socket, mapped, capacity, false, getUrl(), this, getCodec());
+        } catch (SocketTimeoutException e) {
+            throw new RemotingException(this, "client(url: " + getUrl() + ") failed to connect to server "
+                    + getRemoteAddress() + " client-side timeout "
+                    + getConnectTimeout() + "ms (elapsed: " + (System.currentTimeMillis() - start) + "ms) from shm client "
+                    + NetUtils.getLocalHost() + " using dubbo version " + Version.getVersion());
+        } finally {
+            if (newChannel == null) {
+                socket.close();
+            }
+        }
+        // 关闭旧的连接
+        ShmChannel oldChannel = this.channel; // copy reference
+        if (oldChannel != null) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Close old shm channel " + oldChannel + " on create new shm channel " + newChannel);
+            }
+            oldChannel.close();
+        }
+        this.channel = newChannel;
+        newChannel.start();
+    }
+
+    @Override
+    protected void doDisConnect() throws Throwable {
+        // 通道由AbstractClient.disconnect()关闭，没有其他需要清理的
+    }
+
+    @Override
+    protected void doClose() throws Throwable {
+    }
+
+    @Override
+    protected Channel getChannel() {
+        ShmChannel c = channel;
+        if (c == null || ! c.isConnected())
+            return null;
+        return c;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,183 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.shm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 映射文件中的单生产者单消费者字节环，两个进程各持有一端。
+ * <p>
+ * 布局：head（已消费位置）在0，tail（已生产位置）在64，各占一个缓存行，数据从128开始，容量为2的幂。
+ * 位置是只增不减的long，不会回绕。跨进程没有Java内存模型可依赖，
+ * 在写数据与发布tail之间、读到tail与读数据之间各做一次volatile写加volatile读，阻止编译器和CPU重排。
+ */
+final class ShmRing {
+
+    private static final int HEAD_OFFSET = 0;
+
+    private static final int TAIL_OFFSET = 64;
+
+    private static final int DATA_OFFSET = 128;
+
+    private final ByteBuffer buffer;
+
+    private final int        capacity;
+
+    private final int        mask;
+
+    private final boolean    producer;
+
+    // 本端的位置，生产者为tail，消费者为head
+    private long             position;
+
+    private volatile int     fence;
+
+    /**
+     * @param mapped 整个映射文件
+     * @param base 环在文件中的起始位置
+     * @param producer 本端是生产者还是消费者
+     */
+    ShmRing(ByteBuffer mapped, int base, int capacity, boolean producer) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power of 2: " + capacity);
+        }
+        ByteBuffer dup = mapped.duplicate();
+        dup.limit(base + size(capacity));
+        dup.position(base);
+        this.buffer = dup.slice().order(ByteOrder.nativeOrder());
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.producer = producer;
+        this.position = buffer.getLong(producer ? TAIL_OFFSET : HEAD_OFFSET);
+    }
+
+    /**
+     * 容量为capacity的环在文件中占的字节数.
+     */
+    static int size(int capacity) {
+        return DATA_OFFSET + capacity;
+    }
+
+    /**
+     * 写入最多length个字节，返回写入的字节数，环满时为0。只能由生产者一端的一个线程调用.
+     */
+    int write(byte[] src, int offset, int length) {
+        if (! producer) {
+            throw new IllegalStateException("Not the producer side.");
+        }
+        long head = buffer.getLong(HEAD_OFFSET);
+        fence();
+        int n = Math.min(capacity - (int) (position - head), length);
+        if (n <= 0) {
+            return 0;
+        }
+        int index = (int) position & mask;
+        int first = Math.min(n, capacity - index);
+        buffer.position(DATA_OFFSET + index);
+        buffer.put(src, offset, first);
+        if (first < n) {
+            buffer.position(DATA_OFFSET);
+            buffer.put(src, offset + first, n - first);
+        }
+        position += n;
+        fence();
+        buffer.putLong(TAIL_OFFSET, position);
+        return n;
+    }
+
+    /**
+     * 读出最多length个字节，返回读到的字节数，环空时为0。只能由消费者一端的一个线程调用.
+     */
+    int read(byte[] dst, int offset, int length) {
+        if (producer) {
+            throw new IllegalStateException("Not the consumer side.");
+        }
+        long tail = buffer.getLong(TAIL_OFFSET);
+        fence();
+        int n = Math.min((int) (tail - position), length);
+        if (n <= 0) {
+            return 0;
+        }
+        int index = (int) position & mask;
+        int first = Math.min(n, capacity - index);
+        buffer.position(DATA_OFFSET + index);
+        buffer.get(dst, offset, first);
+        if (first < n) {
+            buffer.position(DATA_OFFSET);
+            buffer.get(dst, offset + first, n - first);
+        }
+        position += n;
+        fence();
+        buffer.putLong(HEAD_OFFSET, position);
+        return n;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    // volatile写之前的读写不会移到它之后，volatile读之后的读写不会移到它之前
+    private void fence() {
+        fence = 0;
+        if (fence != 0) {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * 等待策略：先忙等spins轮，再Thread.yield()若干轮，然后park，时长从1微秒倍增到约1毫秒.
+     */
+    static final class Idler {
+
+        private static final int YIELDS    = 100;
+
+        private static final int MAX_SHIFT = 10;
+
+        private final int spins;
+
+        private int rounds;
+
+        Idler(int spins) {
+            this.spins = Math.max(0, spins);
+        }
+
+        void reset() {
+            rounds = 0;
+        }
+
+        /**
+         * 空闲一轮，返回这一轮是否park了.
+         */
+        boolean idle() {
+            int round = rounds;
+            if (round < spins + YIELDS + MAX_SHIFT) {
+                rounds ++;
+            }
+            if (round < spins) {
+                return false;
+            }
+            if (round < spins + YIELDS) {
+                Thread.yield();
+                return false;
+            }
+            LockSupport.parkNanos(1000L << Math.min(round - spins - YIELDS, MAX_SHIFT));
+            return true;
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,246 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.shm;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ExecutorUtil;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.Server;
+import com.alibaba.dubbo.remoting.transport.AbstractServer;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelHandlers;
+
+/**
+ * ShmServer，在url的端口上监听TCP做握手：
+ * 为每个连接创建一个映射文件，把路径和容量发给客户端，客户端映射后回一个字节，然后删除文件。
+ * 握手在单独的小线程池中执行，每一步最多等connect.timeout，不响应的客户端不会卡住accept。
+ * 映射文件只有本用户可读写。
+ */
+public class ShmServer extends AbstractServer implements Server {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShmServer.class);
+
+    private static final int HANDSHAKE_THREADS = 4;
+
+    private static final int HANDSHAKE_QUEUES = 64;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    // doOpen在父类构造函数中调用，这几个字段不能有初始值
+    private ConcurrentMap<String, Channel> channels; // <ip:port, channel>
+
+    private ServerSocket serverSocket;
+
+    private ExecutorService handshakeExecutor;
+
+    private File directory;
+
+    private int capacity;
+
+    public ShmServer(URL url, ChannelHandler handler) throws RemotingException {
+        super(url, ChannelHandlers.wrap(handler, ExecutorUtil.setThreadName(url, SERVER_THREAD_POOL_NAME)));
+    }
+
+    @Override
+    protected void doOpen() throws Throwable {
+        channels = new ConcurrentHashMap<String, Channel>();
+        directory = ShmChannel.getDirectory(getUrl());
+        capacity = ShmChannel.getCapacity(getUrl());
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(getBindAddress());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(HANDSHAKE_THREADS, HANDSHAKE_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(HANDSHAKE_QUEUES),
+                new NamedThreadFactory("DubboShmHandshake-" + getBindAddress().getPort(), true));
+        executor.allowCoreThreadTimeOut(true);
+        handshakeExecutor = executor;
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                acceptLoop();
+            }
+        }, "DubboShmAcceptor-" + getBindAddress().getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        while (! serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (! serverSocket.isClosed()) {
+                    logger.warn("Failed to accept on " + getBindAddress() + ", cause: " + e.getMessage(), e);
+                }
+                continue;
+            }
+            final Socket s = socket;
+            try {
+                handshakeExecutor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            handshake(s);
+                        } catch (Throwable t) {
+                            logger.warn("Failed to handshake with " + s.getRemoteSocketAddress() + ", cause: " + t.getMessage(), t);
+                            close(s);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.warn("Too many pending handshakes on " + getBindAddress() + ", close connection from " + s.getRemoteSocketAddress());
+                close(s);
+            }
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    private void handshake(Socket socket) throws IOException {
+        socket.setSoTimeout(getConnectTimeout());
+        socket.setTcpNoDelay(true);
+        File file = createFile();
+        try {
+            MappedByteBuffer mapped = ShmChannel.create(file, capacity);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(file.getAbsolutePath());
+            out.writeInt(capacity);
+            out.flush();
+            if (socket.getInputStream().read() != ShmChannel.ACK) {
+                throw new IOException("The client failed to map " + file);
+            }
+            ShmChannel channel = new ShmChannel(socket, mapped, capacity, true, getUrl(), this, getCodec());
+            channels.put(NetUtils.toAddressString(channel.getRemoteAddress()), channel);
+            channel.start();
+        } finally {
+            // 两端都已映射，删除文件不影响映射，进程退出后内存随之释放
+            if (! file.delete()) {
+                logger.warn("Failed to delete shared memory file " + file);
+            }
+        }
+    }
+
+    private File createFile() throws IOException {
+        String prefix = "dubbo-shm-" + getBindAddress().getPort() + "-";
+        try {
+            return Files.createTempFile(directory.toPath(), prefix, ".dat", PosixFilePermissions.asFileAttribute(OWNER_ONLY)).toFile();
+        } catch (UnsupportedOperationException e) {
+            // 不支持POSIX权限的文件系统
+            File file = Files.createTempFile(directory.toPath(), prefix, ".dat").toFile();
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+            return file;
+        }
+    }
+
+    @Override
+    protected void doClose() throws Throwable {
+        try {
+            if (serverSocket != null) {
+                // unbind.
+                serverSocket.close();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        if (handshakeExecutor != null) {
+            ExecutorUtil.shutdownNow(handshakeExecutor, 100);
+        }
+        try {
+            Collection<Channel> channels = getChannels();
+            if (channels != null && channels.size() > 0) {
+                for (Channel channel : channels) {
+                    try {
+                        channel.close();
+                    } catch (Throwable e) {
+                        logger.warn(e.getMessage(), e);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+        try {
+            if (channels != null) {
+                channels.clear();
+            }
+        } catch (Throwable e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void disconnected(Channel ch) throws RemotingException {
+        channels.remove(NetUtils.toAddressString(ch.getRemoteAddress()), ch);
+        super.disconnected(ch);
+    }
+
+    public Collection<Channel> getChannels() {
+        Collection<Channel> chs = new HashSet<Channel>();
+        for (Iterator<Channel> it = channels.values().iterator(); it.hasNext(); ) {
+            Channel channel = it.next();
+            if (channel.isConnected()) {
+                chs.add(channel);
+            } else {
+                it.remove();
+            }
+        }
+        return chs;
+    }
+
+    public Channel getChannel(InetSocketAddress remoteAddress) {
+        return channels.get(NetUtils.toAddressString(remoteAddress));
+    }
+
+    public boolean isBound() {
+        return serverSocket != null && serverSocket.isBound() && ! serverSocket.isClosed();
+    }
+
+}
\ No newline at end of file
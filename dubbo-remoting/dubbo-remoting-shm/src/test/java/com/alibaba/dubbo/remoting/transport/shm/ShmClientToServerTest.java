@@ -0,0 +1,105 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.shm;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.Replier;
+
+/**
+ * ShmClientToServerTest
+ */
+public class ShmClientToServerTest extends TestCase {
+
+    protected ExchangeServer server;
+
+    protected ExchangeChannel client;
+
+    protected ExchangeServer newServer(int port, Replier<?> receiver) throws RemotingException {
+        return Exchangers.bind(URL.valueOf("exchange://localhost:" + port + "?server=shm&shm.size=16384"), receiver);
+    }
+
+    protected ExchangeChannel newClient(int port) throws RemotingException {
+        return Exchangers.connect(URL.valueOf("exchange://localhost:" + port + "?client=shm"));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        int port = (int) (1000 * Math.random() + 10000);
+        server = newServer(port, new Replier<String>() {
+            public Class<String> interest() {
+                return String.class;
+            }
+
+            public Object reply(ExchangeChannel channel, String msg) throws RemotingException {
+                return "hello," + msg;
+            }
+        });
+        client = newClient(port);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        try {
+            if (server != null)
+                server.close();
+        } finally {
+            if (client != null)
+                client.close();
+        }
+    }
+
+    @Test
+    public void testFuture() throws Exception {
+        ResponseFuture future = client.request("world");
+        Assert.assertEquals("hello,world", future.get());
+    }
+
+    @Test
+    public void testLargeMessage() throws Exception {
+        // 比环的容量大，边写边读
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 64 * 1024; i ++) {
+            buf.append((char) ('a' + i % 26));
+        }
+        ResponseFuture future = client.request(buf.toString());
+        Assert.assertEquals("hello," + buf, future.get());
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        // 连续写入共享内存的多个帧由读线程按帧拆开
+        ResponseFuture[] futures = new ResponseFuture[500];
+        for (int i = 0; i < futures.length; i ++) {
+            futures[i] = client.request("world" + i);
+        }
+        for (int i = 0; i < futures.length; i ++) {
+            Assert.assertEquals("hello,world" + i, futures[i].get());
+        }
+    }
+
+}
\ No newline at end of file
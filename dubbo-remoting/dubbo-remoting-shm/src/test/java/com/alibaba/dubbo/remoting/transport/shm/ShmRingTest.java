@@ -0,0 +1,106 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.shm;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShmRingTest {
+
+    @Test
+    public void testWrapAround() {
+        ByteBuffer memory = ByteBuffer.allocateDirect(ShmRing.size(16));
+        ShmRing producer = new ShmRing(memory, 0, 16, true);
+        ShmRing consumer = new ShmRing(memory, 0, 16, false);
+        byte[] data = new byte[12];
+        byte[] read = new byte[12];
+        for (int round = 0; round < 10; round ++) {
+            for (int i = 0; i < data.length; i ++) {
+                data[i] = (byte) (round * 16 + i);
+            }
+            Assert.assertEquals(12, producer.write(data, 0, 12));
+            Assert.assertEquals(12, consumer.read(read, 0, 12));
+            Assert.assertArrayEquals(data, read);
+        }
+    }
+
+    @Test
+    public void testFullAndEmpty() {
+        ByteBuffer memory = ByteBuffer.allocateDirect(ShmRing.size(16));
+        ShmRing producer = new ShmRing(memory, 0, 16, true);
+        ShmRing consumer = new ShmRing(memory, 0, 16, false);
+        byte[] buf = new byte[20];
+        Assert.assertEquals(0, consumer.read(buf, 0, buf.length));
+        Assert.assertEquals(16, producer.write(buf, 0, buf.length));
+        Assert.assertEquals(0, producer.write(buf, 0, buf.length));
+        Assert.assertEquals(10, consumer.read(buf, 0, 10));
+        Assert.assertEquals(10, producer.write(buf, 0, buf.length));
+        Assert.assertEquals(16, consumer.read(buf, 0, buf.length));
+    }
+
+    @Test
+    public void testConcurrentTransfer() throws Exception {
+        final ByteBuffer memory = ByteBuffer.allocateDirect(ShmRing.size(1024));
+        final int total = 1024 * 1024;
+        Thread producerThread = new Thread(new Runnable() {
+            public void run() {
+                ShmRing producer = new ShmRing(memory, 0, 1024, true);
+                ShmRing.Idler idler = new ShmRing.Idler(100);
+                byte[] chunk = new byte[300];
+                int sent = 0;
+                while (sent < total) {
+                    int length = Math.min(chunk.length, total - sent);
+                    for (int i = 0; i < length; i ++) {
+                        chunk[i] = (byte) (sent + i);
+                    }
+                    int offset = 0;
+                    while (offset < length) {
+                        int n = producer.write(chunk, offset, length - offset);
+                        if (n == 0) {
+                            idler.idle();
+                        } else {
+                            idler.reset();
+                            offset += n;
+                        }
+                    }
+                    sent += length;
+                }
+            }
+        });
+        producerThread.start();
+
+        ShmRing consumer = new ShmRing(memory, 0, 1024, false);
+        ShmRing.Idler idler = new ShmRing.Idler(100);
+        byte[] buf = new byte[500];
+        int received = 0;
+        while (received < total) {
+            int n = consumer.read(buf, 0, buf.length);
+            if (n == 0) {
+                idler.idle();
+                continue;
+            }
+            idler.reset();
+            for (int i = 0; i < n; i ++) {
+                Assert.assertEquals((byte) (received + i), buf[i]);
+            }
+            received += n;
+        }
+        producerThread.join();
+    }
+
+}
\ No newline at end of file
@@ -17,6 +17,7 @@ package com.alibaba.dubbo.rpc;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -154,9 +155,34 @@ public class RpcStatus {
     private final AtomicLong failedMaxElapsed = new AtomicLong();
 
     private final AtomicLong succeededMaxElapsed = new AtomicLong();
+
+    private volatile int executesPermits;
+
+    private volatile Semaphore executesLimit;
     
     private RpcStatus() {}
 
+    /**
+     * get executes semaphore, recreated when the limit changes.
+     * 
+     * @param maxExecutes
+     * @return semaphore, null if not limited
+     */
+    public Semaphore getSemaphore(int maxExecutes) {
+        if (maxExecutes <= 0) {
+            return null;
+        }
+        if (executesLimit == null || executesPermits != maxExecutes) {
+            synchronized (this) {
+                if (executesLimit == null || executesPermits != maxExecutes) {
+                    executesLimit = new Semaphore(maxExecutes);
+                    executesPermits = maxExecutes;
+                }
+            }
+        }
+        return executesLimit;
+    }
+
     /**
      * set value.
      * 
@@ -15,6 +15,8 @@
  */
 package com.alibaba.dubbo.rpc.filter;
 
+import java.util.concurrent.Semaphore;
+
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.Activate;
@@ -37,9 +39,12 @@ public class ExecuteLimitFilter implements Filter {
         URL url = invoker.getUrl();
         String methodName = invocation.getMethodName();
         int max = url.getMethodParameter(methodName, Constants.EXECUTES_KEY, 0);
+        // 用信号量占位，先判断再计数会让并发请求同时通过检查
+        Semaphore executesLimit = null;
         if (max > 0) {
             RpcStatus count = RpcStatus.getStatus(url, invocation.getMethodName());
-            if (count.getActive() >= max) {
+            executesLimit = count.getSemaphore(max);
+            if (! executesLimit.tryAcquire()) {
                 throw new RpcException("Failed to invoke method " + invocation.getMethodName() + " in provider " + url + ", cause: The service using threads greater than <dubbo:service executes=\"" + max + "\" /> limited.");
             }
         }
@@ -60,6 +65,9 @@ public class ExecuteLimitFilter implements Filter {
         }
         finally {
             RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, isException);
+            if (executesLimit != null) {
+                executesLimit.release();
+            }
         }
     }
 
@@ -0,0 +1,60 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.support;
+
+/**
+ * 当前线程正在处理的请求的截止时间（本地时钟）。服务端执行带剩余超时时间的请求时设置，
+ * 处理过程中发起的嵌套调用据此扣除已经用掉的时间.
+ */
+public class RpcDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<Long>();
+
+    private RpcDeadline() {
+    }
+
+    /**
+     * @param deadline 截止时间，小于等于0表示没有
+     */
+    public static void set(long deadline) {
+        if (deadline > 0) {
+            DEADLINE.set(deadline);
+        } else {
+            DEADLINE.remove();
+        }
+    }
+
+    public static void remove() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * @return 截止时间，没有返回0
+     */
+    public static long get() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? 0 : deadline;
+    }
+
+    /**
+     * @return 剩余的毫秒数，已过期时小于等于0，没有截止时间返回Long.MAX_VALUE
+     */
+    public static long getRemaining() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? Long.MAX_VALUE : deadline - System.currentTimeMillis();
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.support.MockInvocation;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+public class ExecuteLimitFilterTest {
+
+    private final ExecuteLimitFilter executeLimitFilter = new ExecuteLimitFilter();
+
+    @Test
+    public void testNoExecuteLimit() {
+        URL url = URL.valueOf("test://test:11/test?accesslog=true&group=dubbo&version=1.1");
+        Invoker<ExecuteLimitFilterTest> invoker = new MyInvoker<ExecuteLimitFilterTest>(url);
+        Result result = executeLimitFilter.invoke(invoker, new MockInvocation());
+        assertEquals("alibaba", result.getValue());
+    }
+
+    @Test
+    public void testExecuteLimitConcurrent() throws Exception {
+        final URL url = URL.valueOf("test://test:11/executelimit?executes=2");
+        final CountDownLatch entered = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Invoker<ExecuteLimitFilterTest> invoker = new MyInvoker<ExecuteLimitFilterTest>(url) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.invoke(invocation);
+            }
+        };
+        final AtomicInteger finished = new AtomicInteger();
+        for (int i = 0; i < 2; i ++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    executeLimitFilter.invoke(invoker, new MockInvocation());
+                    finished.incrementAndGet();
+                }
+            }).start();
+        }
+        entered.await(5, TimeUnit.SECONDS);
+        try {
+            executeLimitFilter.invoke(invoker, new MockInvocation());
+            fail();
+        } catch (RpcException expected) {
+        }
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (finished.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, finished.get());
+        assertEquals(2, RpcStatus.getStatus(url, "echo").getSemaphore(2).availablePermits());
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,203 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.ExecutionException;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable.ChannelState;
+import com.alibaba.dubbo.remoting.transport.dispatcher.all.AllChannelHandler;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.support.ProtocolUtils;
+
+/**
+ * 按方法统计执行耗时的指数加权平均，平均耗时低于adaptive.threshold的方法直接在IO线程执行，其它都交给线程池。
+ * 在IO线程上单次执行超过adaptive.blocking的方法会阻塞同一IO线程上的所有连接，之后交给线程池执行，
+ * 过adaptive.retry毫秒后才重新评估，每再阻塞一次间隔加倍。
+ * 只统计服务端导出了的方法，找不到服务或方法的请求、还没有解码的请求（decode.in.io=false）和其它事件同all分发。
+ *
+ * @see AdaptiveDispatcher
+ */
+public class AdaptiveChannelHandler extends AllChannelHandler {
+
+    // EWMA的平滑系数
+    private static final double ALPHA       = 0.2;
+
+    // 样本数足够才能转到IO线程执行
+    private static final int    MIN_SAMPLES = 20;
+
+    // 重新评估的间隔最多加倍到adaptive.retry的16倍
+    private static final int    MAX_RETRY_SHIFT = 4;
+
+    private final long          threshold;
+
+    private final long          blocking;
+
+    private final long          retry;
+
+    private final ConcurrentMap<String, MethodLatency> methods = new ConcurrentHashMap<String, MethodLatency>();
+
+    public AdaptiveChannelHandler(ChannelHandler handler, URL url) {
+        super(handler, url);
+        this.threshold = TimeUnit.MICROSECONDS.toNanos(url.getParameter(Constants.ADAPTIVE_THRESHOLD_KEY, Constants.DEFAULT_ADAPTIVE_THRESHOLD));
+        this.blocking = TimeUnit.MICROSECONDS.toNanos(url.getParameter(Constants.ADAPTIVE_BLOCKING_KEY, Constants.DEFAULT_ADAPTIVE_BLOCKING));
+        this.retry = url.getParameter(Constants.ADAPTIVE_RETRY_KEY, Constants.DEFAULT_ADAPTIVE_RETRY);
+    }
+
+    public void received(Channel channel, Object message) throws RemotingException {
+        final MethodLatency latency = getMethodLatency(channel, message);
+        if (latency == null) {
+            super.received(channel, message);
+            return;
+        }
+        final ChannelEventRunnable runnable = new ChannelEventRunnable(channel, handler, ChannelState.RECEIVED, message);
+        if (latency.isDirect()) {
+            long start = System.nanoTime();
+            try {
+                runnable.run();
+            } finally {
+                latency.record(System.nanoTime() - start, true);
+            }
+            return;
+        }
+        try {
+            getExecutorService().execute(new Runnable() {
+                public void run() {
+                    long start = System.nanoTime();
+                    try {
+                        runnable.run();
+                    } finally {
+                        latency.record(System.nanoTime() - start, false);
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            throw new ExecutionException(message, channel, getClass() + " error when process received event .", t);
+        }
+    }
+
+    /**
+     * @return 当前在IO线程执行的方法
+     */
+    public Set<String> getDirectMethods() {
+        Set<String> direct = new HashSet<String>();
+        for (Map.Entry<String, MethodLatency> entry : methods.entrySet()) {
+            if (entry.getValue().isDirect()) {
+                direct.add(entry.getKey());
+            }
+        }
+        return direct;
+    }
+
+    private MethodLatency getMethodLatency(Channel channel, Object message) {
+        if (! (message instanceof Request) || ((Request) message).isEvent()
+                || ! (((Request) message).getData() instanceof Invocation)) {
+            return null;
+        }
+        Invocation inv = (Invocation) ((Request) message).getData();
+        // 没有解码时取不到方法名
+        String methodName = inv.getMethodName();
+        if (methodName == null) {
+            return null;
+        }
+        // 本地存根的回调按远端端口找服务，不统计
+        if (Boolean.TRUE.toString().equals(inv.getAttachment(Constants.STUB_EVENT_KEY))) {
+            return null;
+        }
+        String serviceKey = ProtocolUtils.serviceKey(channel.getLocalAddress().getPort(), inv.getAttachment(Constants.PATH_KEY),
+                inv.getAttachment(Constants.VERSION_KEY), inv.getAttachment(Constants.GROUP_KEY));
+        String key = serviceKey + "#" + methodName;
+        MethodLatency latency = methods.get(key);
+        if (latency != null) {
+            return latency;
+        }
+        // 方法名由调用方决定，只统计导出了的方法，统计表的大小不超过导出的方法数
+        DubboExporter<?> exporter = DubboProtocol.getDubboProtocol().getExporter(serviceKey);
+        if (exporter == null || ! exporter.getMethods().contains(methodName)) {
+            return null;
+        }
+        methods.putIfAbsent(key, new MethodLatency(key));
+        return methods.get(key);
+    }
+
+    private class MethodLatency {
+
+        private final String     key;
+
+        private double           ewma;
+
+        private int              samples;
+
+        private volatile boolean direct;
+
+        // 阻塞过IO线程的次数
+        private int              demotions;
+
+        // 阻塞过IO线程后，这个时间之前不转到IO线程执行
+        private long             retryTime;
+
+        MethodLatency(String key) {
+            this.key = key;
+        }
+
+        boolean isDirect() {
+            return direct;
+        }
+
+        synchronized void record(long elapsed, boolean onIoThread) {
+            ewma = samples == 0 ? elapsed : ewma + ALPHA * (elapsed - ewma);
+            if (samples < MIN_SAMPLES) {
+                samples ++;
+            }
+            if (onIoThread && elapsed > blocking) {
+                direct = false;
+                long interval = retry << Math.min(demotions, MAX_RETRY_SHIFT);
+                demotions ++;
+                retryTime = System.currentTimeMillis() + interval;
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Method " + key + " blocked the IO thread for " + TimeUnit.NANOSECONDS.toMicros(elapsed)
+                            + "us, execute it in the thread pool for at least " + interval + "ms");
+                }
+            } else if (direct && ewma > threshold) {
+                direct = false;
+                if (logger.isInfoEnabled()) {
+                    logger.info("Method " + key + " average elapsed " + TimeUnit.NANOSECONDS.toMicros((long) ewma)
+                            + "us, execute it in the thread pool");
+                }
+            } else if (! direct && samples >= MIN_SAMPLES && ewma < threshold
+                    && System.currentTimeMillis() >= retryTime) {
+                direct = true;
+                if (logger.isInfoEnabled()) {
+                    logger.info("Method " + key + " average elapsed " + TimeUnit.NANOSECONDS.toMicros((long) ewma)
+                            + "us, execute it in the IO thread");
+                }
+            }
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Dispatcher;
+
+/**
+ * 按方法的平均耗时决定在IO线程还是线程池执行，快的方法省掉线程切换。
+ *
+ * @see AdaptiveChannelHandler
+ */
+public class AdaptiveDispatcher implements Dispatcher {
+
+    public static final String NAME = "adaptive";
+
+    public ChannelHandler dispatch(ChannelHandler handler, URL url) {
+        return new AdaptiveChannelHandler(handler, url);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,262 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.Parameters;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.transport.ReconnectScheduler;
+
+/**
+ * 在后台线程中建立连接的client，refer不再等待握手完成。
+ * 连接建立前isConnected()为false，invoker不可用；此时发起的调用会在当前线程中同步建连。
+ * 建连失败后由ReconnectScheduler按退避间隔重试，直到连上或关闭。
+ * 所有实例共享一个连接线程池，大小取最近一次refer的URL上的connect.async.threads。
+ */
+@SuppressWarnings("deprecation")
+final class AsyncConnectExchangeClient implements ExchangeClient {
+
+    private static final ThreadPoolExecutor CONNECT_EXECUTOR = new ThreadPoolExecutor(
+            Constants.DEFAULT_CONNECT_ASYNC_THREADS, Constants.DEFAULT_CONNECT_ASYNC_THREADS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new NamedThreadFactory("DubboClientConnector", true));
+
+    static {
+        CONNECT_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final URL                     url;
+    private final ExchangeHandler         requestHandler;
+    private volatile ExchangeClient       client;
+    private volatile boolean              closed;
+    private final Lock                    connectLock = new ReentrantLock();
+
+    public AsyncConnectExchangeClient(URL url, ExchangeHandler requestHandler) {
+        this.url = url;
+        this.requestHandler = requestHandler;
+    }
+
+    /**
+     * 提交后台建连任务，失败后按重连间隔退避重试。
+     */
+    void connectAsync() {
+        setConcurrency(url.getPositiveParameter(Constants.CONNECT_ASYNC_THREADS_KEY, Constants.DEFAULT_CONNECT_ASYNC_THREADS));
+        int maxPeriod = url.getParameter(Constants.RECONNECT_MAX_PERIOD_KEY, Constants.DEFAULT_RECONNECT_MAX_PERIOD);
+        ReconnectScheduler.connect(new ReconnectScheduler.Connector() {
+            public String getAddress() {
+                return url.getAddress();
+            }
+
+            public boolean isPending() {
+                return client == null && ! closed;
+            }
+
+            public void connect() throws Throwable {
+                initClient();
+            }
+
+            @Override
+            public String toString() {
+                return url.getAddress();
+            }
+        }, CONNECT_EXECUTOR, getReconnectPeriod(url), maxPeriod);
+    }
+
+    private static synchronized void setConcurrency(int threads) {
+        // 调大时先调最大值，调小时先调核心数，保证核心数不超过最大值
+        if (threads > CONNECT_EXECUTOR.getMaximumPoolSize()) {
+            CONNECT_EXECUTOR.setMaximumPoolSize(threads);
+            CONNECT_EXECUTOR.setCorePoolSize(threads);
+        } else if (threads < CONNECT_EXECUTOR.getMaximumPoolSize()) {
+            CONNECT_EXECUTOR.setCorePoolSize(threads);
+            CONNECT_EXECUTOR.setMaximumPoolSize(threads);
+        }
+    }
+
+    // reconnect=false时不重试，等第一次调用时再建连
+    private static int getReconnectPeriod(URL url) {
+        String reconnect = url.getParameter(Constants.RECONNECT_KEY);
+        if (reconnect == null || reconnect.length() == 0 || "true".equalsIgnoreCase(reconnect)) {
+            return Constants.DEFAULT_RECONNECT_PERIOD;
+        }
+        if ("false".equalsIgnoreCase(reconnect)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(reconnect);
+        } catch (NumberFormatException e) {
+            return Constants.DEFAULT_RECONNECT_PERIOD;
+        }
+    }
+
+    private void initClient() throws RemotingException {
+        if (client != null)
+            return;
+        connectLock.lock();
+        try {
+            if (client != null)
+                return;
+            if (closed) {
+                throw new RemotingException(getLocalAddress(), getRemoteAddress(), "Client to " + url.getAddress() + " is closed before connected.");
+            }
+            ExchangeClient c = Exchangers.connect(url, requestHandler);
+            this.client = c;
+            if (closed) {
+                c.close();
+            }
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    public ResponseFuture request(Object request) throws RemotingException {
+        initClient();
+        return client.request(request);
+    }
+
+    public ResponseFuture request(Object request, int timeout) throws RemotingException {
+        initClient();
+        return client.request(request, timeout);
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public InetSocketAddress getRemoteAddress() {
+        if (client == null){
+            return InetSocketAddress.createUnresolved(url.getHost(), url.getPort());
+        } else {
+            return client.getRemoteAddress();
+        }
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        if (client == null){
+            return InetSocketAddress.createUnresolved(NetUtils.getLocalHost(), 0);
+        } else {
+            return client.getLocalAddress();
+        }
+    }
+
+    public ChannelHandler getChannelHandler() {
+        checkClient();
+        return client.getChannelHandler();
+    }
+
+    public ExchangeHandler getExchangeHandler() {
+        return requestHandler;
+    }
+
+    public boolean isConnected() {
+        return client != null && client.isConnected();
+    }
+
+    public void send(Object message) throws RemotingException {
+        initClient();
+        client.send(message);
+    }
+
+    public void send(Object message, boolean sent) throws RemotingException {
+        initClient();
+        client.send(message, sent);
+    }
+
+    public boolean isClosed() {
+        if (client != null)
+            return client.isClosed();
+        else
+            return closed;
+    }
+
+    public void close() {
+        closed = true;
+        if (client != null)
+            client.close();
+    }
+
+    public void close(int timeout) {
+        closed = true;
+        if (client != null)
+            client.close(timeout);
+    }
+
+    public void reset(URL url) {
+        checkClient();
+        client.reset(url);
+    }
+
+    @Deprecated
+    public void reset(Parameters parameters){
+        reset(getUrl().addParameters(parameters.getParameters()));
+    }
+
+    public void reconnect() throws RemotingException {
+        if (client == null) {
+            initClient();
+        } else {
+            client.reconnect();
+        }
+    }
+
+    public Object getAttribute(String key) {
+        if (client == null){
+            return null;
+        } else {
+            return client.getAttribute(key);
+        }
+    }
+
+    public void setAttribute(String key, Object value) {
+        checkClient();
+        client.setAttribute(key, value);
+    }
+
+    public void removeAttribute(String key) {
+        checkClient();
+        client.removeAttribute(key);
+    }
+
+    public boolean hasAttribute(String key) {
+        if (client == null){
+            return false;
+        } else {
+            return client.hasAttribute(key);
+        }
+    }
+
+    private void checkClient() {
+        if (client == null) {
+            throw new IllegalStateException(
+                    "AsyncConnectExchangeClient state error. the client has not connected yet .url:" + url);
+        }
+    }
+}
\ No newline at end of file
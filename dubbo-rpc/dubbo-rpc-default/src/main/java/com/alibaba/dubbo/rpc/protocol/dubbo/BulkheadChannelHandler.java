@@ -0,0 +1,231 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.store.DataStore;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable.ChannelState;
+import com.alibaba.dubbo.remoting.transport.dispatcher.all.AllChannelHandler;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.support.ProtocolUtils;
+
+/**
+ * 请求按服务分到各自的线程池，服务下配置了方法级executes的方法再单独一个线程池。
+ * 线程数取executes，没有配置时取bulkhead.threads（默认20），其它参数（threadpool、queues）和服务的配置相同。
+ * 服务线程池是在端口共享的线程池之外另建的，它们的线程数之和另外以端口的threads为上限，
+ * 即端口最多有2倍threads个业务线程，超出上限后新的服务不再单独建线程池。
+ * 连接事件、找不到服务和没有单独线程池的请求仍使用端口共享的线程池。
+ * 服务下线时关闭它的线程池，端口关闭时关闭所有线程池。线程池登记在DataStore中，status页面和telnet status命令都能看到。
+ *
+ * @see BulkheadDispatcher
+ */
+public class BulkheadChannelHandler extends AllChannelHandler {
+
+    // 打开着的handler，服务下线时要关闭各端口上它的线程池，端口关闭时移除
+    private static final Set<BulkheadChannelHandler> HANDLERS = new ConcurrentHashSet<BulkheadChannelHandler>();
+
+    private final ConcurrentMap<String, ExecutorService> bulkheads = new ConcurrentHashMap<String, ExecutorService>();
+
+    // 以下在lock中修改，创建线程池和占用线程数在同一个临界区中，并发创建也不会超过maxThreads
+    private final Object lock = new Object();
+
+    private final Map<String, Integer> bulkheadThreads = new HashMap<String, Integer>();
+
+    // 所有服务线程池的线程数之和
+    private int usedThreads;
+
+    private boolean closed;
+
+    private final int maxThreads;
+
+    // 因线程数超限没有单独线程池的服务，只告警一次
+    private final Set<String> exhausted = new ConcurrentHashSet<String>();
+
+    public BulkheadChannelHandler(ChannelHandler handler, URL url) {
+        super(handler, url);
+        maxThreads = url.getParameter(Constants.THREADS_KEY, Constants.DEFAULT_THREADS);
+        HANDLERS.add(this);
+    }
+
+    /**
+     * 服务下线时调用，关闭该服务及其方法的线程池.
+     */
+    static void removeBulkheads(String serviceKey) {
+        for (BulkheadChannelHandler handler : HANDLERS) {
+            handler.remove(serviceKey);
+        }
+    }
+
+    /**
+     * 端口关闭时调用，关闭这个端口上的handler及其所有线程池.
+     * 
+     * @param address 端口的host:port
+     */
+    static void removeHandlers(String address) {
+        for (BulkheadChannelHandler handler : HANDLERS) {
+            if (address.equals(handler.url.getAddress())) {
+                handler.close();
+            }
+        }
+    }
+
+    public void received(Channel channel, Object message) throws RemotingException {
+        ExecutorService bulkhead = getBulkhead(channel, message);
+        if (bulkhead != null) {
+            ChannelEventRunnable runnable = new ChannelEventRunnable(channel, handler, ChannelState.RECEIVED, message);
+            try {
+                bulkhead.execute(runnable);
+            } catch (RejectedExecutionException e) {
+                // 只是这个服务满了，直接回复过载，不影响连接
+                runnable.shed();
+            }
+            return;
+        }
+        super.received(channel, message);
+    }
+
+    @Override
+    public void close() {
+        HANDLERS.remove(this);
+        super.close();
+        synchronized (lock) {
+            closed = true;
+            for (String key : bulkheads.keySet()) {
+                removeBulkhead(key);
+            }
+        }
+    }
+
+    private void remove(String serviceKey) {
+        synchronized (lock) {
+            for (Iterator<String> it = bulkheads.keySet().iterator(); it.hasNext(); ) {
+                String key = it.next();
+                if (key.equals(serviceKey) || key.startsWith(serviceKey + "#")) {
+                    removeBulkhead(key);
+                }
+            }
+        }
+    }
+
+    // 持有lock时调用
+    private void removeBulkhead(String key) {
+        ExecutorService bulkhead = bulkheads.remove(key);
+        if (bulkhead == null) {
+            return;
+        }
+        ExtensionLoader.getExtensionLoader(DataStore.class).getDefaultExtension()
+                .remove(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, key);
+        bulkhead.shutdown();
+        usedThreads -= bulkheadThreads.remove(key);
+    }
+
+    /**
+     * @return 所有服务的线程池，key为服务（和方法）
+     */
+    public Map<String, ExecutorService> getBulkheads() {
+        return bulkheads;
+    }
+
+    private ExecutorService getBulkhead(Channel channel, Object message) {
+        if (! (message instanceof Request) || ((Request) message).isEvent()) {
+            return null;
+        }
+        Request request = (Request) message;
+        if (request.getData() instanceof DecodeableRpcInvocation) {
+            DecodeableRpcInvocation inv = (DecodeableRpcInvocation) request.getData();
+            if (! inv.isReceived()) {
+                // 分片还没收完，在IO线程中解码会阻塞，交给共享线程池
+                return null;
+            }
+            // 要根据服务选线程池，不能等到线程池里再解码
+            try {
+                inv.decode();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        if (request.isBroken() || ! (request.getData() instanceof Invocation)) {
+            return null;
+        }
+        Invocation inv = (Invocation) request.getData();
+        URL serviceUrl;
+        try {
+            serviceUrl = DubboProtocol.getDubboProtocol().getInvoker(channel, inv).getUrl();
+        } catch (RemotingException e) {
+            // 由共享线程池回复找不到服务
+            return null;
+        }
+        String methodName = inv.getMethodName();
+        int methodExecutes = serviceUrl.getParameter(methodName + "." + Constants.EXECUTES_KEY, 0);
+        String key = ProtocolUtils.serviceKey(serviceUrl);
+        if (methodExecutes > 0) {
+            key = key + "#" + methodName;
+        }
+        ExecutorService bulkhead = bulkheads.get(key);
+        if (bulkhead != null) {
+            return bulkhead;
+        }
+        int count = methodExecutes > 0 ? methodExecutes : serviceUrl.getParameter(Constants.EXECUTES_KEY, 0);
+        if (count <= 0) {
+            count = serviceUrl.getParameter(Constants.BULKHEAD_THREADS_KEY, Constants.DEFAULT_BULKHEAD_THREADS);
+        }
+        synchronized (lock) {
+            bulkhead = bulkheads.get(key);
+            if (bulkhead != null || closed) {
+                return bulkhead;
+            }
+            if (usedThreads + count > maxThreads) {
+                if (exhausted.add(key) && logger.isWarnEnabled()) {
+                    logger.warn("Bulkhead threads exhausted, " + key + " needs " + count + ", used " + usedThreads
+                            + " of " + maxThreads + ", run it on the shared thread pool");
+                }
+                return null;
+            }
+            URL bulkheadUrl = serviceUrl.addParameter(Constants.THREADS_KEY, count)
+                    .addParameter(Constants.THREAD_NAME_KEY, "DubboBulkhead-" + key);
+            bulkhead = (ExecutorService) ExtensionLoader.getExtensionLoader(ThreadPool.class)
+                    .getAdaptiveExtension().getExecutor(bulkheadUrl);
+            bulkheads.put(key, bulkhead);
+            bulkheadThreads.put(key, count);
+            usedThreads += count;
+            ExtensionLoader.getExtensionLoader(DataStore.class).getDefaultExtension()
+                    .put(Constants.EXECUTOR_SERVICE_COMPONENT_KEY, key, bulkhead);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Create bulkhead thread pool for " + key + ", threads: " + count);
+        }
+        return bulkhead;
+    }
+
+}
\ No newline at end of file
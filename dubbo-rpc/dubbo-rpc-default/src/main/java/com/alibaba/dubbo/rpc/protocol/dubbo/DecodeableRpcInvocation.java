@@ -37,6 +37,7 @@ import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.Codec;
 import com.alibaba.dubbo.remoting.Decodeable;
 import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.codec.ChunkInputStream;
 import com.alibaba.dubbo.remoting.transport.CodecSupport;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 
@@ -57,6 +58,9 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
 
     private volatile boolean hasDecoded;
 
+    // 在IO线程收到请求的时间，剩余超时时间从这里开始算
+    private final long  receivedTime;
+
     public DecodeableRpcInvocation(Channel channel, Request request, InputStream is, byte id) {
         Assert.notNull(channel, "channel == null");
         Assert.notNull(request, "request == null");
@@ -65,6 +69,7 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
         this.request = request;
         this.inputStream = is;
         this.serializationType = id;
+        this.receivedTime = System.currentTimeMillis();
     }
 
     public void decode() throws Exception {
@@ -79,10 +84,39 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
                 request.setData(e);
             } finally {
                 hasDecoded = true;
+                if (inputStream instanceof ChunkInputStream) {
+                    // 没读完的分片不再需要，后续分片到达时直接丢弃
+                    ((ChunkInputStream) inputStream).close();
+                }
             }
         }
     }
 
+    /**
+     * 消息体是否已全部收到。分片消息边收边读时，收完之前在IO线程中解码会阻塞IO线程.
+     */
+    public boolean isReceived() {
+        return ! (inputStream instanceof ChunkInputStream) || ((ChunkInputStream) inputStream).isFinished();
+    }
+
+    /**
+     * @return 按本地时钟的截止时间，调用方没有传剩余超时时间时为0
+     */
+    public long getDeadline() {
+        return request.getDeadline();
+    }
+
+    private void setDeadline(String remaining) {
+        if (remaining == null || remaining.length() == 0) {
+            return;
+        }
+        try {
+            request.setDeadline(receivedTime + Long.parseLong(remaining));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid " + Constants.TIMEOUT_REMAINING_KEY + " attachment: " + remaining);
+        }
+    }
+
     public void encode(Channel channel, OutputStream output, Object message) throws IOException {
         throw new UnsupportedOperationException();
     }
@@ -159,6 +193,7 @@ public class DecodeableRpcInvocation extends RpcInvocation implements Codec, Dec
                     }
                     attachment.putAll(map);
                     setAttachments(attachment);
+                    setDeadline(map.get(Constants.TIMEOUT_REMAINING_KEY));
                 }
                 //decode argument ,may be callback
                 for (int i = 0; i < args.length; i++) {
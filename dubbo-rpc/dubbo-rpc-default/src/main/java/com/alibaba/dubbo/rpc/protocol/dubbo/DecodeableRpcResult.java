@@ -31,6 +31,7 @@ import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.Codec;
 import com.alibaba.dubbo.remoting.Decodeable;
 import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.codec.ChunkInputStream;
 import com.alibaba.dubbo.remoting.transport.CodecSupport;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.RpcResult;
@@ -123,6 +124,10 @@ public class DecodeableRpcResult extends RpcResult implements Codec, Decodeable
                 response.setErrorMessage(StringUtils.toString(e));
             } finally {
                 hasDecoded = true;
+                if (inputStream instanceof ChunkInputStream) {
+                    // 没读完的分片不再需要，后续分片到达时直接丢弃
+                    ((ChunkInputStream) inputStream).close();
+                }
             }
         }
     }
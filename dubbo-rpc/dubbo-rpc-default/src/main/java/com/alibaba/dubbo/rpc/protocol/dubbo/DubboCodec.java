@@ -35,6 +35,7 @@ import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.Codec2;
 import com.alibaba.dubbo.remoting.exchange.Request;
 import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.codec.ChunkInputStream;
 import com.alibaba.dubbo.remoting.exchange.codec.ExchangeCodec;
 import com.alibaba.dubbo.remoting.transport.CodecSupport;
 import com.alibaba.dubbo.rpc.Invocation;
@@ -94,12 +95,11 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
                                 Constants.DECODE_IN_IO_THREAD_KEY,
                                 Constants.DEFAULT_DECODE_IN_IO_THREAD)) {
                             result = new DecodeableRpcResult(channel, res, is,
-                                    (Invocation)getRequestData(id), proto);
+                                    (Invocation)getRequestData(channel, id), proto);
                             result.decode();
                         } else {
-                            result = new DecodeableRpcResult(channel, res,
-                                    new UnsafeByteArrayInputStream(readMessageData(is)),
-                                    (Invocation) getRequestData(id), proto);
+                            result = new DecodeableRpcResult(channel, res, detach(is),
+                                    (Invocation) getRequestData(channel, id), proto);
                         }
                         data = result;
                     }
@@ -137,8 +137,7 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
                         inv = new DecodeableRpcInvocation(channel, req, is, proto);
                         inv.decode();
                     } else {
-                        inv = new DecodeableRpcInvocation(channel, req,
-                                new UnsafeByteArrayInputStream(readMessageData(is)), proto);
+                        inv = new DecodeableRpcInvocation(channel, req, detach(is), proto);
                     }
                     data = inv;
                 }
@@ -155,11 +154,30 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
         }
     }
 
+    @Override
+    protected boolean isStreamingDecode(Channel channel, byte[] header) {
+        // 事件和异常响应在IO线程中解码
+        byte flag = header[2];
+        if ((flag & FLAG_EVENT) != 0 || (flag & FLAG_REQUEST) == 0 && header[3] != Response.OK) {
+            return false;
+        }
+        return ! channel.getUrl().getParameter(
+                Constants.DECODE_IN_IO_THREAD_KEY, Constants.DEFAULT_DECODE_IN_IO_THREAD);
+    }
+
     private ObjectInput deserialize(Serialization serialization, URL url, InputStream is)
             throws IOException {
         return serialization.deserialize(url, is);
     }
 
+    // 分片或解压后的消息体已从读缓冲区拷出，直接交给业务线程反序列化，不必再拷贝一次
+    private InputStream detach(InputStream is) throws IOException {
+        if (is instanceof ChunkInputStream || is instanceof UnsafeByteArrayInputStream) {
+            return is;
+        }
+        return new UnsafeByteArrayInputStream(readMessageData(is));
+    }
+
     private byte[] readMessageData(InputStream is) throws IOException {
         if (is.available() > 0) {
             byte[] result = new byte[is.available()];
@@ -191,4 +209,57 @@ public class DubboCodec extends ExchangeCodec implements Codec2 {
         Object[] args = inv.getArguments();
         if (args != null)
             for (int i = 0; i < args.length; i++){
-                out.writeObject(en                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                 
\ No newline at end of file
+                out.writeObject(encodeInvocationArgument(channel, inv, i));
+            }
+        out.writeObject(inv.getAttachments());
+    }
+
+    @Override
+    protected void encodeResponseData(Channel channel, ObjectOutput out, Object data) throws IOException {
+        Result result = (Result) data;
+
+        Throwable th = result.getException();
+        if (th == null) {
+            Object ret = result.getValue();
+            if (ret == null) {
+                out.writeByte(RESPONSE_NULL_VALUE);
+            } else {
+                out.writeByte(RESPONSE_VALUE);
+                out.writeObject(ret);
+            }
+        } else {
+            out.writeByte(RESPONSE_WITH_EXCEPTION);
+            out.writeObject(th);
+        }
+    }
+
+    @Override
+    protected String getRequestSizeKey(Object data) {
+        if (data instanceof RpcInvocation) {
+            RpcInvocation inv = (RpcInvocation) data;
+            return inv.getAttachment(Constants.PATH_KEY) + "." + inv.getMethodName();
+        }
+        return super.getRequestSizeKey(data);
+    }
+
+    @Override
+    protected String getResponseSizeKey(Object result) {
+        if (result instanceof Result) {
+            // 服务端不知道对应的方法，按返回值类型区分
+            Result r = (Result) result;
+            Object value = r.getException() != null ? r.getException() : r.getValue();
+            return value == null ? null : value.getClass().getName();
+        }
+        return super.getResponseSizeKey(result);
+    }
+
+    // workaround for the serialization of the complex argument types
+    private boolean containComplexArguments(RpcInvocation invocation) {
+        for (int i = 0; i < invocation.getParameterTypes().length; i++) {
+            if (invocation.getArguments()[i] == null || invocation.getParameterTypes()[i] != invocation.getArguments()[i].getClass()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
\ No newline at end of file
@@ -40,13 +40,16 @@ public final class DubboCountCodec implements Codec2 {
     }
 
     public Object decode(Channel channel, ChannelBuffer buffer) throws IOException {
-        int save = buffer.readerIndex();
+        int start = buffer.readerIndex(), save = start;
         MultiMessage result = MultiMessage.create();
         do {
             Object obj = codec.decode(channel, buffer);
             if (Codec2.DecodeResult.NEED_MORE_INPUT == obj) {
                 buffer.readerIndex(save);
                 break;
+            } else if (obj == null) {
+                // 只读入了分片帧
+                save = buffer.readerIndex();
             } else {
                 result.addMessage(obj);
                 logMessageLength(obj, buffer.readerIndex() - save);
@@ -54,7 +57,8 @@ public final class DubboCountCodec implements Codec2 {
             }
         } while (true);
         if (result.isEmpty()) {
-            return Codec2.DecodeResult.NEED_MORE_INPUT;
+            // 读入过分片时不能回退读指针
+            return save > start ? null : Codec2.DecodeResult.NEED_MORE_INPUT;
         }
         if (result.size() == 1) {
             return result.get(0);
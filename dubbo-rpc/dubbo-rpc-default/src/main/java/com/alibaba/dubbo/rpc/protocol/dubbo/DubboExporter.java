@@ -15,7 +15,12 @@
  */
 package com.alibaba.dubbo.rpc.protocol.dubbo;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+
+import com.alibaba.dubbo.common.Constants;
 
 import com.alibaba.dubbo.rpc.Exporter;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -32,16 +37,31 @@ public class DubboExporter<T> extends AbstractExporter<T> {
 
     private final Map<String, Exporter<?>> exporterMap;
 
+    // 导出的方法名，自适应分发时判断请求的方法是否导出，只解析一次
+    private volatile Set<String>                methods;
+
     public DubboExporter(Invoker<T> invoker, String key, Map<String, Exporter<?>> exporterMap){
         super(invoker);
         this.key = key;
         this.exporterMap = exporterMap;
     }
 
+    Set<String> getMethods() {
+        Set<String> m = methods;
+        if (m == null) {
+            m = new HashSet<String>();
+            Collections.addAll(m, Constants.COMMA_SPLIT_PATTERN.split(getInvoker().getUrl().getParameter(Constants.METHODS_KEY, "")));
+            methods = m;
+        }
+        return m;
+    }
+
     @Override
     public void unexport() {
         super.unexport();
         exporterMap.remove(key);
+        // bulkhead分发时关闭该服务的线程池
+        BulkheadChannelHandler.removeBulkheads(key);
     }
 
 }
\ No newline at end of file
@@ -20,7 +20,6 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
-import com.alibaba.dubbo.common.utils.AtomicPositiveInteger;
 import com.alibaba.dubbo.remoting.RemotingException;
 import com.alibaba.dubbo.remoting.TimeoutException;
 import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
@@ -33,6 +32,7 @@ import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.protocol.AbstractInvoker;
+import com.alibaba.dubbo.rpc.support.RpcDeadline;
 import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
@@ -45,7 +45,7 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
 
     private final ExchangeClient[]      clients;
 
-    private final AtomicPositiveInteger index = new AtomicPositiveInteger();
+    private final ExchangeClientSelector selector;
 
     private final String                version;
     
@@ -58,42 +58,70 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
     }
     
     public DubboInvoker(Class<T> serviceType, URL url, ExchangeClient[] clients, Set<Invoker<?>> invokers){
-        super(serviceType, url, new String[] {Constants.INTERFACE_KEY, Constants.GROUP_KEY, Constants.TOKEN_KEY, Constants.TIMEOUT_KEY});
+        super(serviceType, url, getAttachmentKeys(url));
         this.clients = clients;
+        this.selector = new ExchangeClientSelector(clients);
         // get version.
         this.version = url.getParameter(Constants.VERSION_KEY, "0.0.0");
         this.invokers = invokers; 
     }
 
+    private static String[] getAttachmentKeys(URL url) {
+        // 只有服务端用fair派发器按应用排队时才需要带上应用名
+        if (FairDispatcher.NAME.equals(url.getParameter(Constants.DISPATCHER_KEY,
+                url.getParameter("dispather", url.getParameter(Constants.CHANNEL_HANDLER_KEY))))) {
+            return new String[] {Constants.INTERFACE_KEY, Constants.GROUP_KEY, Constants.TOKEN_KEY, Constants.TIMEOUT_KEY, Constants.APPLICATION_KEY};
+        }
+        return new String[] {Constants.INTERFACE_KEY, Constants.GROUP_KEY, Constants.TOKEN_KEY, Constants.TIMEOUT_KEY};
+    }
+
     @Override
     protected Result doInvoke(final Invocation invocation) throws Throwable {
         RpcInvocation inv = (RpcInvocation) invocation;
         final String methodName = RpcUtils.getMethodName(invocation);
         inv.setAttachment(Constants.PATH_KEY, getUrl().getPath());
         inv.setAttachment(Constants.VERSION_KEY, version);
-        
-        ExchangeClient currentClient;
-        if (clients.length == 1) {
-            currentClient = clients[0];
-        } else {
-            currentClient = clients[index.getAndIncrement() % clients.length];
+        // 消费端方法配置的优先级优先，没有配置时使用调用时在RpcContext中指定的
+        String priority = getUrl().getMethodParameter(methodName, Constants.PRIORITY_KEY);
+        if (priority != null && priority.length() > 0) {
+            inv.setAttachment(Constants.PRIORITY_KEY, priority);
         }
+        
+        int current = selector.select();
+        ExchangeClient currentClient = selector.get(current);
         try {
             boolean isAsync = RpcUtils.isAsync(getUrl(), invocation);
             boolean isOneway = RpcUtils.isOneway(getUrl(), invocation);
             int timeout = getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY,Constants.DEFAULT_TIMEOUT);
+            // 在服务端处理请求时发起的嵌套调用，不能超过上游剩余的时间
+            long remaining = RpcDeadline.getRemaining();
+            if (remaining <= 0) {
+                throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Invoke remote method timeout. method: " + invocation.getMethodName() + ", provider: " + getUrl() + ", cause: the caller's deadline has passed " + (- remaining) + "ms ago");
+            }
+            if (remaining < timeout) {
+                timeout = (int) remaining;
+            }
             if (isOneway) {
+                inv.getAttachments().remove(Constants.TIMEOUT_REMAINING_KEY);
             	boolean isSent = getUrl().getMethodParameter(methodName, Constants.SENT_KEY, false);
                 currentClient.send(inv, isSent);
                 RpcContext.getContext().setFuture(null);
                 return new RpcResult();
-            } else if (isAsync) {
+            }
+            inv.setAttachment(Constants.TIMEOUT_REMAINING_KEY, String.valueOf(timeout));
+            if (isAsync) {
             	ResponseFuture future = currentClient.request(inv, timeout) ;
                 RpcContext.getContext().setFuture(new FutureAdapter<Object>(future));
                 return new RpcResult();
             } else {
             	RpcContext.getContext().setFuture(null);
-                return (Result) currentClient.request(inv, timeout).get();
+                long start = System.nanoTime();
+                try {
+                    return (Result) currentClient.request(inv, timeout).get();
+                } finally {
+                    // 超时也计入，慢连接会被暂时摘除
+                    selector.record(current, methodName, (System.nanoTime() - start) / 1000);
+                }
             }
         } catch (TimeoutException e) {
             throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Invoke remote method timeout. method: " + invocation.getMethodName() + ", provider: " + getUrl() + ", cause: " + e.getMessage(), e);
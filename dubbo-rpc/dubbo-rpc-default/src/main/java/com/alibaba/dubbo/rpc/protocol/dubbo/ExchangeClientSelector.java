@@ -0,0 +1,146 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.AtomicPositiveInteger;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.support.InFlightTable;
+import com.alibaba.dubbo.remoting.transport.PendingWriteCounter;
+
+/**
+ * 多连接时选择负载最小的连接：先比较连接上未完成的请求数，再比较待写出的字节数，
+ * 相同时按轮询顺序。同一方法的平均响应时间明显慢于其它连接的，摘除一段时间后再重新参与选择。
+ * 响应时间按方法分别统计，避免慢方法恰好落在某个连接上时把该连接误判为慢连接。
+ */
+final class ExchangeClientSelector {
+
+    private static final Logger         logger             = LoggerFactory.getLogger(ExchangeClientSelector.class);
+
+    // 响应时间超过最快连接的倍数时摘除
+    static final int                    DEGRADE_FACTOR     = 4;
+
+    // 响应时间低于此值(微秒)不摘除，避免毫秒内的抖动
+    static final long                   DEGRADE_MIN_MICROS = 10 * 1000;
+
+    static final long                   RETIRE_MILLIS      = 5 * 1000;
+
+    private final ExchangeClient[]      clients;
+
+    private final AtomicPositiveInteger index              = new AtomicPositiveInteger();
+
+    // 方法名 -> 各连接上该方法响应时间的指数移动平均(微秒)，0表示还没有样本
+    private final ConcurrentMap<String, AtomicLongArray> latencies = new ConcurrentHashMap<String, AtomicLongArray>();
+
+    private final AtomicLongArray       retiredUntil;
+
+    ExchangeClientSelector(ExchangeClient[] clients) {
+        this.clients = clients;
+        this.retiredUntil = new AtomicLongArray(clients.length);
+    }
+
+    int select() {
+        int n = clients.length;
+        int start = index.getAndIncrement();
+        if (n == 1) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int best = -1;
+        long bestLoad = Long.MAX_VALUE;
+        for (int i = 0; i < n; i ++) {
+            int k = (start + i) % n;
+            if (retiredUntil.get(k) > now) {
+                continue;
+            }
+            long load = load(clients[k]);
+            if (load < bestLoad) {
+                best = k;
+                bestLoad = load;
+                if (load == 0) {
+                    break;
+                }
+            }
+        }
+        // 全部被摘除时退回轮询
+        return best < 0 ? start % n : best;
+    }
+
+    ExchangeClient get(int i) {
+        return clients[i];
+    }
+
+    void record(int i, String method, long micros) {
+        int n = clients.length;
+        if (n == 1 || micros <= 0) {
+            return;
+        }
+        AtomicLongArray latencies = this.latencies.get(method);
+        if (latencies == null) {
+            this.latencies.putIfAbsent(method, new AtomicLongArray(n));
+            latencies = this.latencies.get(method);
+        }
+        long old = latencies.get(i);
+        long latency = old == 0 ? micros : old + ((micros - old) >> 3);
+        latencies.set(i, latency);
+        if (latency < DEGRADE_MIN_MICROS) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long fastest = Long.MAX_VALUE;
+        for (int k = 0; k < n; k ++) {
+            long l = latencies.get(k);
+            if (k != i && l > 0 && retiredUntil.get(k) <= now && l < fastest) {
+                fastest = l;
+            }
+        }
+        if (fastest != Long.MAX_VALUE && latency > fastest * DEGRADE_FACTOR) {
+            retiredUntil.set(i, now + RETIRE_MILLIS);
+            // 重新参与选择时各方法都从头统计
+            for (AtomicLongArray l : this.latencies.values()) {
+                l.set(i, 0);
+            }
+            if (logger.isWarnEnabled()) {
+                logger.warn("Retire connection " + clients[i] + " for " + RETIRE_MILLIS + "ms, average response time of "
+                        + method + " " + latency / 1000 + "ms, fastest connection " + fastest / 1000 + "ms");
+            }
+        }
+    }
+
+    boolean isRetired(int i) {
+        return retiredUntil.get(i) > System.currentTimeMillis();
+    }
+
+    private static long load(ExchangeClient client) {
+        long inFlight = 0;
+        Object table = client.getAttribute(InFlightTable.KEY);
+        if (table instanceof InFlightTable) {
+            inFlight = ((InFlightTable) table).size();
+        }
+        long pending = 0;
+        Object counter = client.getAttribute(PendingWriteCounter.KEY);
+        if (counter instanceof PendingWriteCounter) {
+            pending = Math.min(((PendingWriteCounter) counter).getPendingBytes(), Integer.MAX_VALUE);
+        }
+        return (inFlight << 31) + pending;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.threadpool.support.fair.FairThreadPoolExecutor;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable.ChannelState;
+import com.alibaba.dubbo.remoting.transport.dispatcher.all.AllChannelHandler;
+import com.alibaba.dubbo.rpc.Invocation;
+
+/**
+ * 请求按消费方应用提交到{@link FairThreadPoolExecutor}，应用名取调用的application附加参数，
+ * 老版本的消费方不带应用名，按消费方的IP区分。
+ * 某个应用排队满了只给它回复过载，其它应用不受影响。
+ * 应用名要在入队前取到，收完的请求总是在IO线程中解码，decode.in.io=false对这个分发不起作用；
+ * 分片还没收完的请求不等解码，按消费方的IP排队。
+ * 线程池不是fair时同all分发。
+ *
+ * @see FairDispatcher
+ */
+public class FairChannelHandler extends AllChannelHandler {
+
+    public FairChannelHandler(ChannelHandler handler, URL url) {
+        super(handler, url);
+        if (! url.getParameter(Constants.DECODE_IN_IO_THREAD_KEY, Constants.DEFAULT_DECODE_IN_IO_THREAD)) {
+            logger.warn("The fair dispatcher decodes requests in the IO thread to get the application, "
+                    + Constants.DECODE_IN_IO_THREAD_KEY + "=false is ignored on " + url.getAddress());
+        }
+    }
+
+    public void received(Channel channel, Object message) throws RemotingException {
+        ExecutorService cexecutor = getExecutorService();
+        if (cexecutor instanceof FairThreadPoolExecutor && message instanceof Request && ! ((Request) message).isEvent()) {
+            ChannelEventRunnable runnable = new ChannelEventRunnable(channel, handler, ChannelState.RECEIVED, message);
+            String application = getApplication(channel, (Request) message);
+            try {
+                ((FairThreadPoolExecutor) cexecutor).execute(application, runnable);
+            } catch (RejectedExecutionException e) {
+                // 只是这个应用排满了，直接回复过载，不影响连接
+                runnable.shed("Server overloaded, request of application " + application + " shed by the thread pool of "
+                        + channel.getLocalAddress() + ": " + e.getMessage());
+            }
+            return;
+        }
+        super.received(channel, message);
+    }
+
+    private String getApplication(Channel channel, Request request) {
+        if (request.getData() instanceof DecodeableRpcInvocation) {
+            DecodeableRpcInvocation inv = (DecodeableRpcInvocation) request.getData();
+            if (! inv.isReceived()) {
+                // 分片还没收完，在IO线程中解码会阻塞，按来源地址排队
+                return channel.getRemoteAddress().getAddress().getHostAddress();
+            }
+            // 应用名在附加参数里，不能等到线程池里再解码，不管decode.in.io的配置
+            try {
+                inv.decode();
+            } catch (Exception e) {
+                // 解码失败由线程池里回复
+            }
+        }
+        if (! request.isBroken() && request.getData() instanceof Invocation) {
+            String application = ((Invocation) request.getData()).getAttachment(Constants.APPLICATION_KEY);
+            if (application != null && application.length() > 0) {
+                return application;
+            }
+        }
+        return channel.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+}
\ No newline at end of file
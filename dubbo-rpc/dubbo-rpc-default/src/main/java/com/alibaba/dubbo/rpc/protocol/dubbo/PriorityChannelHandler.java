@@ -0,0 +1,105 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.threadpool.support.priority.PriorityThreadPoolExecutor;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable.ChannelState;
+import com.alibaba.dubbo.remoting.transport.dispatcher.all.AllChannelHandler;
+import com.alibaba.dubbo.rpc.Invocation;
+
+/**
+ * 请求按优先级提交到{@link PriorityThreadPoolExecutor}，优先级依次取：
+ * 调用的priority附加参数，服务端方法配置的priority，都没有时为normal。
+ * 事件请求和回声测试（健康检查）总是high。
+ * 某个优先级排队满了只给这个请求回复过载，其它优先级不受影响。
+ * 优先级要在入队前取到，收完的请求总是在IO线程中解码，decode.in.io=false对这个分发不起作用；
+ * 分片还没收完的请求不等解码，按normal排队。
+ * 线程池不是priority时同all分发。
+ *
+ * @see PriorityDispatcher
+ */
+public class PriorityChannelHandler extends AllChannelHandler {
+
+    public PriorityChannelHandler(ChannelHandler handler, URL url) {
+        super(handler, url);
+        if (! url.getParameter(Constants.DECODE_IN_IO_THREAD_KEY, Constants.DEFAULT_DECODE_IN_IO_THREAD)) {
+            logger.warn("The priority dispatcher decodes requests in the IO thread to get the priority, "
+                    + Constants.DECODE_IN_IO_THREAD_KEY + "=false is ignored on " + url.getAddress());
+        }
+    }
+
+    public void received(Channel channel, Object message) throws RemotingException {
+        ExecutorService cexecutor = getExecutorService();
+        if (cexecutor instanceof PriorityThreadPoolExecutor && message instanceof Request) {
+            ChannelEventRunnable runnable = new ChannelEventRunnable(channel, handler, ChannelState.RECEIVED, message);
+            try {
+                ((PriorityThreadPoolExecutor) cexecutor).execute(getLane(channel, (Request) message), runnable);
+            } catch (RejectedExecutionException e) {
+                // 只是这个优先级排满了，直接回复过载，不影响连接
+                runnable.shed();
+            }
+            return;
+        }
+        super.received(channel, message);
+    }
+
+    private int getLane(Channel channel, Request request) {
+        if (request.isEvent()) {
+            return PriorityThreadPoolExecutor.HIGH;
+        }
+        if (request.getData() instanceof DecodeableRpcInvocation) {
+            DecodeableRpcInvocation inv = (DecodeableRpcInvocation) request.getData();
+            if (! inv.isReceived()) {
+                // 分片还没收完，在IO线程中解码会阻塞，按普通优先级排队
+                return PriorityThreadPoolExecutor.NORMAL;
+            }
+            // 优先级在附加参数和方法配置里，不能等到线程池里再解码，不管decode.in.io的配置
+            try {
+                inv.decode();
+            } catch (Exception e) {
+                // 解码失败由线程池里回复
+            }
+        }
+        if (request.isBroken() || ! (request.getData() instanceof Invocation)) {
+            return PriorityThreadPoolExecutor.NORMAL;
+        }
+        Invocation inv = (Invocation) request.getData();
+        if (Constants.$ECHO.equals(inv.getMethodName())) {
+            return PriorityThreadPoolExecutor.HIGH;
+        }
+        String priority = inv.getAttachment(Constants.PRIORITY_KEY);
+        if (priority == null || priority.length() == 0) {
+            try {
+                priority = DubboProtocol.getDubboProtocol().getInvoker(channel, inv).getUrl()
+                        .getMethodParameter(inv.getMethodName(), Constants.PRIORITY_KEY);
+            } catch (RemotingException e) {
+                // 由线程池里回复找不到服务
+            }
+        }
+        return PriorityThreadPoolExecutor.getLane(priority);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo.status;
+
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.common.status.StatusChecker;
+import com.alibaba.dubbo.remoting.compress.CompressorSupport;
+
+/**
+ * CompressStatusChecker
+ */
+@Activate
+public class CompressStatusChecker implements StatusChecker {
+
+    public Status check() {
+        return new Status(Status.Level.OK, "compressed:" + CompressorSupport.getCompressCount()
+                + ",ratio:" + String.format("%.2f", CompressorSupport.getCompressRatio())
+                + ",compress:" + CompressorSupport.getCompressMillis() + "ms"
+                + ",decompressed:" + CompressorSupport.getDecompressCount()
+                + ",decompress:" + CompressorSupport.getDecompressMillis() + "ms");
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo.status;
+
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.common.status.StatusChecker;
+import com.alibaba.dubbo.remoting.transport.ReconnectScheduler;
+
+/**
+ * ReconnectStatusChecker
+ */
+@Activate
+public class ReconnectStatusChecker implements StatusChecker {
+
+    public Status check() {
+        int disconnected = ReconnectScheduler.getDisconnectedCount();
+        Status.Level level = disconnected > 0 ? Status.Level.WARN : Status.Level.OK;
+        return new Status(level, "disconnected:" + disconnected
+                + ",attempts:" + ReconnectScheduler.getAttemptCount()
+                + ",failures:" + ReconnectScheduler.getFailureCount()
+                + ",queued:" + ReconnectScheduler.getQueuedCount());
+    }
+
+}
\ No newline at end of file
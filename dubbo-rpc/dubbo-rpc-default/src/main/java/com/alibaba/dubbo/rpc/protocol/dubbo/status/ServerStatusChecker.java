@@ -20,7 +20,9 @@ import java.util.Collection;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.status.Status;
 import com.alibaba.dubbo.common.status.StatusChecker;
+import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.transport.PendingWriteCounter;
 import com.alibaba.dubbo.rpc.protocol.dubbo.DubboProtocol;
 
 /**
@@ -49,8 +51,22 @@ public class ServerStatusChecker implements StatusChecker {
                 buf.append(",");
             }
             buf.append(server.getLocalAddress());
+            Collection<Channel> channels = server.getChannels();
+            long pending = 0;
+            for (Channel channel : channels) {
+                PendingWriteCounter counter = (PendingWriteCounter) channel.getAttribute(PendingWriteCounter.KEY);
+                if (counter != null) {
+                    pending += counter.getPendingBytes();
+                    // 有客户端读得慢，响应写不出去
+                    if (! counter.isWritable() && level == Status.Level.OK) {
+                        level = Status.Level.WARN;
+                    }
+                }
+            }
             buf.append("(clients:");
-            buf.append(server.getChannels().size());
+            buf.append(channels.size());
+            buf.append(",pending:");
+            buf.append(pending);
             buf.append(")");
         }
         return new Status(level, buf.toString());
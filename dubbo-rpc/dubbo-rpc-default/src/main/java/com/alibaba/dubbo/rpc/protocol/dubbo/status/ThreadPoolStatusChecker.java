@@ -25,6 +25,9 @@ import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.status.Status;
 import com.alibaba.dubbo.common.status.StatusChecker;
 import com.alibaba.dubbo.common.store.DataStore;
+import com.alibaba.dubbo.common.threadpool.support.codel.CoDelThreadPoolExecutor;
+import com.alibaba.dubbo.common.threadpool.support.fair.FairThreadPoolExecutor;
+import com.alibaba.dubbo.common.threadpool.support.priority.PriorityThreadPoolExecutor;
 
 /**
  * ThreadPoolStatusChecker
@@ -48,6 +51,9 @@ public class ThreadPoolStatusChecker implements StatusChecker {
                 ThreadPoolExecutor tp = (ThreadPoolExecutor) executor;
                 boolean ok = tp.getActiveCount() < tp.getMaximumPoolSize() - 1;
                 Status.Level lvl = Status.Level.OK;
+                if (tp instanceof CoDelThreadPoolExecutor && ((CoDelThreadPoolExecutor) tp).isOverloaded()) {
+                    ok = false;
+                }
                 if(!ok) {
                     level = Status.Level.WARN;
                     lvl = Status.Level.WARN;
@@ -61,8 +67,29 @@ public class ThreadPoolStatusChecker implements StatusChecker {
                         + ", core:" + tp.getCorePoolSize()
                         + ", largest:" + tp.getLargestPoolSize()
                         + ", active:" + tp.getActiveCount()
-                        + ", task:" + tp.getTaskCount()
-                        + ", service port: " + port);
+                        + ", task:" + tp.getTaskCount());
+                if (tp instanceof CoDelThreadPoolExecutor) {
+                    CoDelThreadPoolExecutor codel = (CoDelThreadPoolExecutor) tp;
+                    msg.append(", queue:" + tp.getQueue().size()
+                            + ", queue time min:" + codel.getMinQueueTime()
+                            + "ms, avg:" + String.format("%.2f", codel.getAverageQueueTime())
+                            + "ms, max:" + codel.getMaxQueueTime()
+                            + "ms, shed:" + codel.getShedCount());
+                }
+                if (tp instanceof FairThreadPoolExecutor) {
+                    msg.append(", queue:" + tp.getQueue().size());
+                    for (Map.Entry<String, Integer> queue : ((FairThreadPoolExecutor) tp).getQueueSizes().entrySet()) {
+                        msg.append(", app " + queue.getKey() + " queue:" + queue.getValue());
+                    }
+                }
+                if (tp instanceof PriorityThreadPoolExecutor) {
+                    for (Map.Entry<String, Integer> lane : ((PriorityThreadPoolExecutor) tp).getQueueSizes().entrySet()) {
+                        msg.append(", " + lane.getKey() + " queue:" + lane.getValue());
+                    }
+                    msg.append(", aged:" + ((PriorityThreadPoolExecutor) tp).getAgedCount());
+                }
+                // 端口共享的线程池以端口为key，bulkhead分发的线程池以服务为key
+                msg.append(port.indexOf(':') >= 0 ? ", bulkhead: " + port : ", service port: " + port);
             }
         }
         return msg.length() == 0 ? new Status(Status.Level.UNKNOWN) : new Status(level, msg.toString());
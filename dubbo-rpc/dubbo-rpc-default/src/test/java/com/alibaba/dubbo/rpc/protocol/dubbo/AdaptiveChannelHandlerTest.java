@@ -0,0 +1,194 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.transport.ChannelHandlerAdapter;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+public class AdaptiveChannelHandlerTest {
+
+    private int                         port;
+
+    private Exporter<?>                 exporter;
+
+    private AdaptiveChannelHandler      adaptiveHandler;
+
+    private MockedChannel               channel;
+
+    private final BlockingQueue<String> threads = new LinkedBlockingQueue<String>();
+
+    private volatile long               sleep;
+
+    private static class ServiceInvoker implements Invoker<Runnable> {
+
+        private final URL url;
+
+        ServiceInvoker(URL url) {
+            this.url = url;
+        }
+
+        public Class<Runnable> getInterface() {
+            return Runnable.class;
+        }
+
+        public Result invoke(Invocation invocation) throws RpcException {
+            return new RpcResult();
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public boolean isAvailable() {
+            return true;
+        }
+
+        public void destroy() {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        port = NetUtils.getAvailablePort();
+        exporter = DubboProtocol.getDubboProtocol().export(new ServiceInvoker(
+                URL.valueOf("dubbo://127.0.0.1:" + port + "/adaptive.CacheService?methods=get,load")));
+        channel = new MockedChannel(port);
+        adaptiveHandler = newHandler(Constants.DEFAULT_ADAPTIVE_RETRY);
+    }
+
+    private AdaptiveChannelHandler newHandler(int retry) {
+        return new AdaptiveChannelHandler(new ChannelHandlerAdapter() {
+            @Override
+            public void received(Channel channel, Object message) throws RemotingException {
+                try {
+                    if (sleep > 0) {
+                        Thread.sleep(sleep);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                threads.add(Thread.currentThread().getName());
+            }
+        }, URL.valueOf("dubbo://127.0.0.1:" + port + "/adaptive?" + Constants.ADAPTIVE_THRESHOLD_KEY + "=5000&"
+                + Constants.ADAPTIVE_BLOCKING_KEY + "=20000&" + Constants.ADAPTIVE_RETRY_KEY + "=" + retry));
+    }
+
+    @After
+    public void tearDown() {
+        adaptiveHandler.close();
+        exporter.unexport();
+    }
+
+    private boolean receivedOnIoThread(String method) throws Exception {
+        Map<String, String> attachments = new HashMap<String, String>();
+        attachments.put(Constants.PATH_KEY, "adaptive.CacheService");
+        Request request = new Request();
+        request.setData(new RpcInvocation(method, new Class<?>[0], new Object[0], attachments));
+        adaptiveHandler.received(channel, request);
+        String thread = threads.poll(5, TimeUnit.SECONDS);
+        // 线程池里执行完才记录耗时，等记录完再发下一个请求
+        Thread.sleep(1);
+        return Thread.currentThread().getName().equals(thread);
+    }
+
+    private boolean promote(String method) throws Exception {
+        for (int i = 0; i < 50; i ++) {
+            if (receivedOnIoThread(method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testFastMethodOnIoThread() throws Exception {
+        assertFalse(receivedOnIoThread("get"));
+        assertTrue(promote("get"));
+        assertTrue(receivedOnIoThread("get"));
+        assertEquals(1, adaptiveHandler.getDirectMethods().size());
+        assertTrue(adaptiveHandler.getDirectMethods().iterator().next().endsWith("#get"));
+    }
+
+    @Test
+    public void testSlowMethodInThreadPool() throws Exception {
+        sleep = 10;
+        for (int i = 0; i < 25; i ++) {
+            assertFalse(receivedOnIoThread("load"));
+        }
+        assertTrue(adaptiveHandler.getDirectMethods().isEmpty());
+    }
+
+    @Test
+    public void testDemoteBlockingMethod() throws Exception {
+        assertTrue(promote("get"));
+        sleep = 30;
+        assertTrue(receivedOnIoThread("get"));
+        sleep = 0;
+        for (int i = 0; i < 50; i ++) {
+            assertFalse(receivedOnIoThread("get"));
+        }
+        assertTrue(adaptiveHandler.getDirectMethods().isEmpty());
+    }
+
+    @Test
+    public void testRetryAfterDemotion() throws Exception {
+        adaptiveHandler.close();
+        adaptiveHandler = newHandler(100);
+        assertTrue(promote("get"));
+        sleep = 30;
+        assertTrue(receivedOnIoThread("get"));
+        sleep = 0;
+        assertFalse(receivedOnIoThread("get"));
+        Thread.sleep(150);
+        assertTrue(promote("get"));
+    }
+
+    @Test
+    public void testUnexportedMethodNotTracked() throws Exception {
+        for (int i = 0; i < 50; i ++) {
+            assertFalse(receivedOnIoThread("method" + i));
+        }
+        assertFalse(promote("unknown"));
+        assertTrue(adaptiveHandler.getDirectMethods().isEmpty());
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,234 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.store.DataStore;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.transport.ChannelHandlerAdapter;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.protocol.dubbo.status.ThreadPoolStatusChecker;
+
+public class BulkheadChannelHandlerTest {
+
+    private int                          port;
+
+    private Exporter<?>                  slowExporter;
+
+    private Exporter<?>                  fastExporter;
+
+    private BulkheadChannelHandler       bulkheadHandler;
+
+    private MockedChannel                channel;
+
+    private final BlockingQueue<String>  threads = new LinkedBlockingQueue<String>();
+
+    private volatile CountDownLatch      block   = new CountDownLatch(0);
+
+    private static class ServiceInvoker implements Invoker<Runnable> {
+
+        private final URL url;
+
+        ServiceInvoker(URL url) {
+            this.url = url;
+        }
+
+        public Class<Runnable> getInterface() {
+            return Runnable.class;
+        }
+
+        public Result invoke(Invocation invocation) throws RpcException {
+            return new RpcResult();
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public boolean isAvailable() {
+            return true;
+        }
+
+        public void destroy() {
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        port = NetUtils.getAvailablePort();
+        slowExporter = DubboProtocol.getDubboProtocol().export(new ServiceInvoker(
+                URL.valueOf("dubbo://127.0.0.1:" + port + "/bulkhead.SlowService?threads=4&slow.executes=1")));
+        fastExporter = DubboProtocol.getDubboProtocol().export(new ServiceInvoker(
+                URL.valueOf("dubbo://127.0.0.1:" + port + "/bulkhead.FastService?executes=2")));
+        bulkheadHandler = new BulkheadChannelHandler(new ChannelHandlerAdapter() {
+            @Override
+            public void received(Channel channel, Object message) throws RemotingException {
+                threads.add(Thread.currentThread().getName());
+                try {
+                    block.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, URL.valueOf("dubbo://127.0.0.1:" + port + "/bulkhead.SlowService"));
+        channel = new MockedChannel(port);
+    }
+
+    @After
+    public void tearDown() {
+        block.countDown();
+        bulkheadHandler.close();
+        slowExporter.unexport();
+        fastExporter.unexport();
+    }
+
+    private static Request newRequest(String path, String method) {
+        Map<String, String> attachments = new HashMap<String, String>();
+        attachments.put(Constants.PATH_KEY, path);
+        Request request = new Request();
+        request.setData(new RpcInvocation(method, new Class<?>[0], new Object[0], attachments));
+        return request;
+    }
+
+    private String receivedBy(String path, String method) throws Exception {
+        bulkheadHandler.received(channel, newRequest(path, method));
+        return threads.poll(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSelectBulkhead() throws Exception {
+        String slow = receivedBy("bulkhead.SlowService", "slow");
+        assertTrue(slow, slow.startsWith("DubboBulkhead-bulkhead.SlowService:" + port + "#slow"));
+        String other = receivedBy("bulkhead.SlowService", "other");
+        assertTrue(other, other.startsWith("DubboBulkhead-bulkhead.SlowService:" + port + "-"));
+        String fast = receivedBy("bulkhead.FastService", "fast");
+        assertTrue(fast, fast.startsWith("DubboBulkhead-bulkhead.FastService:" + port + "-"));
+        String unknown = receivedBy("bulkhead.UnknownService", "fast");
+        assertFalse(unknown, unknown.startsWith("DubboBulkhead"));
+
+        assertEquals(3, bulkheadHandler.getBulkheads().size());
+        DataStore dataStore = ExtensionLoader.getExtensionLoader(DataStore.class).getDefaultExtension();
+        assertTrue(dataStore.get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY).containsKey("bulkhead.FastService:" + port));
+        String status = new ThreadPoolStatusChecker().check().getMessage();
+        assertTrue(status, status.contains("bulkhead: bulkhead.SlowService:" + port + "#slow"));
+
+        bulkheadHandler.close();
+        assertFalse(dataStore.get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY).containsKey("bulkhead.FastService:" + port));
+    }
+
+    @Test
+    public void testFullBulkheadRepliesOverloaded() throws Exception {
+        block = new CountDownLatch(1);
+        receivedBy("bulkhead.SlowService", "slow");
+        Request rejected = newRequest("bulkhead.SlowService", "slow");
+        bulkheadHandler.received(channel, rejected);
+        Response response = (Response) channel.getSent().poll(5, TimeUnit.SECONDS);
+        assertEquals(rejected.getId(), response.getId());
+        assertEquals(Response.SERVER_OVERLOADED, response.getStatus());
+
+        // 其它方法不受影响
+        String other = receivedBy("bulkhead.SlowService", "other");
+        assertTrue(other, other.startsWith("DubboBulkhead-bulkhead.SlowService:" + port + "-"));
+    }
+
+    @Test
+    public void testUnexportRemovesBulkhead() throws Exception {
+        receivedBy("bulkhead.FastService", "fast");
+        receivedBy("bulkhead.SlowService", "slow");
+        assertEquals(2, bulkheadHandler.getBulkheads().size());
+
+        fastExporter.unexport();
+        assertEquals(1, bulkheadHandler.getBulkheads().size());
+        assertFalse(bulkheadHandler.getBulkheads().containsKey("bulkhead.FastService:" + port));
+        DataStore dataStore = ExtensionLoader.getExtensionLoader(DataStore.class).getDefaultExtension();
+        assertFalse(dataStore.get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY).containsKey("bulkhead.FastService:" + port));
+    }
+
+    @Test
+    public void testPortCloseRemovesHandler() throws Exception {
+        receivedBy("bulkhead.FastService", "fast");
+        assertEquals(1, bulkheadHandler.getBulkheads().size());
+
+        BulkheadChannelHandler.removeHandlers("127.0.0.1:" + port);
+        assertTrue(bulkheadHandler.getBulkheads().isEmpty());
+        DataStore dataStore = ExtensionLoader.getExtensionLoader(DataStore.class).getDefaultExtension();
+        assertFalse(dataStore.get(Constants.EXECUTOR_SERVICE_COMPONENT_KEY).containsKey("bulkhead.FastService:" + port));
+        // 关闭后不再建线程池
+        String fast = receivedBy("bulkhead.FastService", "fast");
+        assertFalse(fast, fast.startsWith("DubboBulkhead"));
+    }
+
+    @Test
+    public void testThreadsCap() throws Exception {
+        bulkheadHandler.close();
+        // slow方法1个、FastService 2个，正好用完
+        bulkheadHandler = new BulkheadChannelHandler(new ChannelHandlerAdapter() {
+            @Override
+            public void received(Channel channel, Object message) throws RemotingException {
+                threads.add(Thread.currentThread().getName());
+            }
+        }, URL.valueOf("dubbo://127.0.0.1:" + port + "/bulkhead.SlowService?threads=3"));
+        String slow = receivedBy("bulkhead.SlowService", "slow");
+        assertTrue(slow, slow.startsWith("DubboBulkhead-bulkhead.SlowService:" + port + "#slow"));
+        String fast = receivedBy("bulkhead.FastService", "fast");
+        assertTrue(fast, fast.startsWith("DubboBulkhead-bulkhead.FastService:" + port + "-"));
+        // 默认的服务线程数已经放不下，使用共享线程池
+        String other = receivedBy("bulkhead.SlowService", "other");
+        assertFalse(other, other.startsWith("DubboBulkhead"));
+        assertEquals(2, bulkheadHandler.getBulkheads().size());
+
+        // 服务下线后线程数归还
+        fastExporter.unexport();
+        String again = receivedBy("bulkhead.SlowService", "other");
+        assertFalse(again, again.startsWith("DubboBulkhead"));
+        URL url = URL.valueOf("dubbo://127.0.0.1:" + port + "/bulkhead.OtherService?executes=2");
+        Exporter<?> otherExporter = DubboProtocol.getDubboProtocol().export(new ServiceInvoker(url));
+        try {
+            String otherService = receivedBy("bulkhead.OtherService", "any");
+            assertTrue(otherService, otherService.startsWith("DubboBulkhead-bulkhead.OtherService:" + port + "-"));
+        } finally {
+            otherExporter.unexport();
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.protocol.dubbo.support.ProtocolUtils;
+
+/**
+ * dubbo protocol async connect test
+ */
+public class DubboAsyncConnectTest {
+
+    @After
+    public void tearDown() {
+        ProtocolUtils.closeAll();
+    }
+
+    @Test
+    public void testReferUnreachable() {
+        URL url = URL.valueOf("dubbo://127.0.0.1:9090/hi?" + Constants.CONNECT_ASYNC_KEY + "=true");
+        Invoker<?> invoker = ProtocolUtils.referInvoker(IDemoService.class, url);
+        Assert.assertFalse(invoker.isAvailable());
+        invoker.destroy();
+    }
+
+    @Test
+    public void testAvailableAfterConnect() throws Exception {
+        int port = NetUtils.getAvailablePort();
+        URL url = URL.valueOf("dubbo://127.0.0.1:" + port + "/hi?" + Constants.CONNECT_ASYNC_KEY + "=true&"
+                + Constants.CONNECT_ASYNC_THREADS_KEY + "=4");
+        ProtocolUtils.export(new DemoServiceImpl(), IDemoService.class, url);
+
+        Invoker<?> invoker = ProtocolUtils.referInvoker(IDemoService.class, url);
+        for (int i = 0; i < 100 && !invoker.isAvailable(); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(invoker.isAvailable());
+
+        IDemoService service = (IDemoService) ProtocolUtils.proxy.getProxy(invoker);
+        Assert.assertEquals("ok", service.get());
+    }
+
+    @Test
+    public void testRetryUntilProviderStarts() throws Exception {
+        int port = NetUtils.getAvailablePort();
+        URL url = URL.valueOf("dubbo://127.0.0.1:" + port + "/hi?" + Constants.CONNECT_ASYNC_KEY + "=true&"
+                + Constants.RECONNECT_KEY + "=100&" + Constants.RECONNECT_MAX_PERIOD_KEY + "=200");
+        Invoker<?> invoker = ProtocolUtils.referInvoker(IDemoService.class, url);
+        Thread.sleep(300);
+        Assert.assertFalse(invoker.isAvailable());
+
+        ProtocolUtils.export(new DemoServiceImpl(), IDemoService.class, url);
+        for (int i = 0; i < 100 && !invoker.isAvailable(); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(invoker.isAvailable());
+        invoker.destroy();
+    }
+
+    @Test
+    public void testRequestBeforeConnected() {
+        int port = NetUtils.getAvailablePort();
+        URL url = URL.valueOf("dubbo://127.0.0.1:" + port + "/hi?" + Constants.CONNECT_ASYNC_KEY + "=true");
+        ProtocolUtils.export(new DemoServiceImpl(), IDemoService.class, url);
+
+        IDemoService service = (IDemoService) ProtocolUtils.refer(IDemoService.class, url);
+        Assert.assertEquals("ok", service.get());
+    }
+
+    public interface IDemoService {
+        public String get();
+    }
+
+    public class DemoServiceImpl implements IDemoService {
+        public String get() {
+            return "ok";
+        }
+    }
+}
\ No newline at end of file
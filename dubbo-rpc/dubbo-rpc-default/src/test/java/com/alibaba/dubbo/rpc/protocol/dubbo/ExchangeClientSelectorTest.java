@@ -0,0 +1,93 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.support.InFlightTable;
+import com.alibaba.dubbo.remoting.transport.PendingWriteCounter;
+
+public class ExchangeClientSelectorTest {
+
+    private static ExchangeClient mockClient(Object inFlight, Object pendingWrites) {
+        ExchangeClient client = EasyMock.createMock(ExchangeClient.class);
+        EasyMock.expect(client.getAttribute(InFlightTable.KEY)).andReturn(inFlight).anyTimes();
+        EasyMock.expect(client.getAttribute(PendingWriteCounter.KEY)).andReturn(pendingWrites).anyTimes();
+        EasyMock.replay(client);
+        return client;
+    }
+
+    @Test
+    public void test_roundRobinWhenIdle() {
+        ExchangeClientSelector selector = new ExchangeClientSelector(new ExchangeClient[] {
+                mockClient(null, null), mockClient(null, null), mockClient(null, null) });
+        assertEquals(0, selector.select());
+        assertEquals(1, selector.select());
+        assertEquals(2, selector.select());
+        assertEquals(0, selector.select());
+    }
+
+    @Test
+    public void test_leastPendingBytes() {
+        PendingWriteCounter busy = new PendingWriteCounter(1000, 500);
+        busy.increment(100);
+        PendingWriteCounter idle = new PendingWriteCounter(1000, 500);
+        idle.increment(10);
+        ExchangeClientSelector selector = new ExchangeClientSelector(new ExchangeClient[] {
+                mockClient(null, busy), mockClient(null, idle) });
+        for (int i = 0; i < 4; i ++) {
+            assertEquals(1, selector.select());
+        }
+        busy.decrement(100);
+        idle.decrement(10);
+    }
+
+    @Test
+    public void test_retireSlowConnection() {
+        ExchangeClientSelector selector = new ExchangeClientSelector(new ExchangeClient[] {
+                mockClient(null, null), mockClient(null, null) });
+        selector.record(0, "a", 5 * 1000);
+        selector.record(1, "a", 5 * 1000);
+        assertFalse(selector.isRetired(1));
+        selector.record(1, "a", 1000 * 1000);
+        assertTrue(selector.isRetired(1));
+        assertFalse(selector.isRetired(0));
+        for (int i = 0; i < 4; i ++) {
+            assertEquals(0, selector.select());
+        }
+    }
+
+    @Test
+    public void test_slowMethodNotRetireConnection() {
+        ExchangeClientSelector selector = new ExchangeClientSelector(new ExchangeClient[] {
+                mockClient(null, null), mockClient(null, null) });
+        // 连接0上只跑了快方法，连接1上只跑了慢方法，不能据此判定连接1慢
+        selector.record(0, "fast", 5 * 1000);
+        selector.record(1, "slow", 1000 * 1000);
+        assertFalse(selector.isRetired(1));
+        selector.record(0, "slow", 1000 * 1000);
+        selector.record(1, "slow", 1000 * 1000);
+        assertFalse(selector.isRetired(0));
+        assertFalse(selector.isRetired(1));
+    }
+
+}
\ No newline at end of file
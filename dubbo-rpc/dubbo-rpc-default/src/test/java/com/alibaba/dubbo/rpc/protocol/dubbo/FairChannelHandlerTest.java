@@ -0,0 +1,113 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.threadpool.support.fair.FairThreadPoolExecutor;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.transport.ChannelHandlerAdapter;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.protocol.dubbo.status.ThreadPoolStatusChecker;
+
+public class FairChannelHandlerTest {
+
+    private FairChannelHandler          fairHandler;
+
+    private MockedChannel               channel;
+
+    private final BlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+
+    private final CountDownLatch        block    = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        int port = NetUtils.getAvailablePort();
+        fairHandler = new FairChannelHandler(new ChannelHandlerAdapter() {
+            @Override
+            public void received(Channel channel, Object message) throws RemotingException {
+                received.add(message);
+                try {
+                    block.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, URL.valueOf("dubbo://127.0.0.1:" + port + "/fair.DemoService?threadpool=fair&threads=1&queues=1"));
+        channel = new MockedChannel(port);
+    }
+
+    @After
+    public void tearDown() {
+        block.countDown();
+        fairHandler.close();
+    }
+
+    private static Request newRequest(String application) {
+        Map<String, String> attachments = new HashMap<String, String>();
+        if (application != null) {
+            attachments.put(Constants.APPLICATION_KEY, application);
+        }
+        Request request = new Request();
+        request.setData(new RpcInvocation("sayHello", new Class<?>[0], new Object[0], attachments));
+        return request;
+    }
+
+    @Test
+    public void testQueuePerApplication() throws Exception {
+        fairHandler.received(channel, newRequest("busy"));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        fairHandler.received(channel, newRequest("busy"));
+        Request rejected = newRequest("busy");
+        fairHandler.received(channel, rejected);
+        Response response = (Response) channel.getSent().poll(5, TimeUnit.SECONDS);
+        assertEquals(rejected.getId(), response.getId());
+        assertEquals(Response.SERVER_OVERLOADED, response.getStatus());
+        assertTrue(response.getErrorMessage(), response.getErrorMessage().contains("application busy"));
+
+        // 其它应用和不带应用名的老消费方各自排队
+        fairHandler.received(channel, newRequest("quiet"));
+        fairHandler.received(channel, newRequest(null));
+        assertNull(channel.getSent().poll(100, TimeUnit.MILLISECONDS));
+        Map<String, Integer> queues = ((FairThreadPoolExecutor) fairHandler.getExecutor()).getQueueSizes();
+        assertEquals(Integer.valueOf(1), queues.get("busy"));
+        assertEquals(Integer.valueOf(1), queues.get("quiet"));
+        assertEquals(Integer.valueOf(1), queues.get("127.0.0.1"));
+        String status = new ThreadPoolStatusChecker().check().getMessage();
+        assertTrue(status, status.contains("app quiet queue:1"));
+    }
+
+}
\ No newline at end of file
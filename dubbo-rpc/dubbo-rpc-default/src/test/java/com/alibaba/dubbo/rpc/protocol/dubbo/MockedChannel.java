@@ -0,0 +1,96 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+
+/**
+ * 服务端本地端口为port的连接，记录发出的消息
+ */
+public class MockedChannel implements Channel {
+
+    private final int                   port;
+
+    private final BlockingQueue<Object> sent = new LinkedBlockingQueue<Object>();
+
+    public MockedChannel(int port) {
+        this.port = port;
+    }
+
+    public BlockingQueue<Object> getSent() {
+        return sent;
+    }
+
+    public URL getUrl() {
+        return URL.valueOf("dubbo://127.0.0.1:" + port);
+    }
+
+    public ChannelHandler getChannelHandler() {
+        return null;
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        return new InetSocketAddress("127.0.0.1", port);
+    }
+
+    public InetSocketAddress getRemoteAddress() {
+        return new InetSocketAddress("127.0.0.1", 54321);
+    }
+
+    public void send(Object message) throws RemotingException {
+        sent.add(message);
+    }
+
+    public void send(Object message, boolean sent) throws RemotingException {
+        send(message);
+    }
+
+    public void close() {
+    }
+
+    public void close(int timeout) {
+    }
+
+    public boolean isClosed() {
+        return false;
+    }
+
+    public boolean isConnected() {
+        return true;
+    }
+
+    public boolean hasAttribute(String key) {
+        return false;
+    }
+
+    public Object getAttribute(String key) {
+        return null;
+    }
+
+    public void setAttribute(String key, Object value) {
+    }
+
+    public void removeAttribute(String key) {
+    }
+
+}
\ No newline at end of file
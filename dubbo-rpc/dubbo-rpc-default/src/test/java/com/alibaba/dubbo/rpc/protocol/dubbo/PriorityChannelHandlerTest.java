@@ -0,0 +1,150 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.threadpool.support.priority.PriorityThreadPoolExecutor;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.transport.ChannelHandlerAdapter;
+import com.alibaba.dubbo.rpc.Exporter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.protocol.dubbo.status.ThreadPoolStatusChecker;
+
+public class PriorityChannelHandlerTest {
+
+    private Exporter<?>                 exporter;
+
+    private PriorityChannelHandler      priorityHandler;
+
+    private MockedChannel               channel;
+
+    private final BlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+
+    private final CountDownLatch        block    = new CountDownLatch(1);
+
+    private static class ServiceInvoker implements Invoker<Runnable> {
+
+        private final URL url;
+
+        ServiceInvoker(URL url) {
+            this.url = url;
+        }
+
+        public Class<Runnable> getInterface() {
+            return Runnable.class;
+        }
+
+        public Result invoke(Invocation invocation) throws RpcException {
+            return new RpcResult();
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public boolean isAvailable() {
+            return true;
+        }
+
+        public void destroy() {
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        int port = NetUtils.getAvailablePort();
+        exporter = DubboProtocol.getDubboProtocol().export(new ServiceInvoker(
+                URL.valueOf("dubbo://127.0.0.1:" + port + "/priority.BatchService?batch.priority=low&admin.priority=high")));
+        priorityHandler = new PriorityChannelHandler(new ChannelHandlerAdapter() {
+            @Override
+            public void received(Channel channel, Object message) throws RemotingException {
+                received.add(message);
+                try {
+                    block.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, URL.valueOf("dubbo://127.0.0.1:" + port + "/priority.BatchService?threadpool=priority&threads=1&queues=2"));
+        channel = new MockedChannel(port);
+    }
+
+    @After
+    public void tearDown() {
+        block.countDown();
+        priorityHandler.close();
+        exporter.unexport();
+    }
+
+    private static Request newRequest(String method, String priority) {
+        Map<String, String> attachments = new HashMap<String, String>();
+        attachments.put(Constants.PATH_KEY, "priority.BatchService");
+        if (priority != null) {
+            attachments.put(Constants.PRIORITY_KEY, priority);
+        }
+        Request request = new Request();
+        request.setData(new RpcInvocation(method, new Class<?>[0], new Object[0], attachments));
+        return request;
+    }
+
+    @Test
+    public void testSelectLane() throws Exception {
+        priorityHandler.received(channel, newRequest("other", null));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        priorityHandler.received(channel, newRequest("batch", null));
+        priorityHandler.received(channel, newRequest("other", null));
+        priorityHandler.received(channel, newRequest("admin", null));
+        priorityHandler.received(channel, newRequest(Constants.$ECHO, null));
+        Request rejected = newRequest("other", "high");
+        priorityHandler.received(channel, rejected);
+        Response response = (Response) channel.getSent().poll(5, TimeUnit.SECONDS);
+        assertEquals(rejected.getId(), response.getId());
+        assertEquals(Response.SERVER_OVERLOADED, response.getStatus());
+        // 附加参数指定的优先级优先于方法配置
+        priorityHandler.received(channel, newRequest("batch", "normal"));
+
+        Map<String, Integer> queues = ((PriorityThreadPoolExecutor) priorityHandler.getExecutor()).getQueueSizes();
+        assertEquals("{high=2, normal=2, low=1}", queues.toString());
+        String status = new ThreadPoolStatusChecker().check().getMessage();
+        assertTrue(status, status.contains("high queue:2, normal queue:2, low queue:1, aged:0"));
+    }
+
+}
\ No newline at end of file